@@ -0,0 +1,139 @@
+package de.ganzer.core.files;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The BufferPool class keeps direct byte buffers for reuse.
+ * <p>
+ * Allocating direct buffers is expensive and their memory is released late
+ * by the garbage collector. A pool that is shared by all copy jobs of an
+ * application allocates buffers only until enough of them are available.
+ * <p>
+ * The capacities of the buffers are powers of two, so that a buffer can be
+ * reused for all requests of the same size class. A released buffer is kept
+ * only while the capacity of all kept buffers does not exceed the retain
+ * limit of the pool; otherwise, it is left to the garbage collector.
+ * <p>
+ * All methods of this class are thread-safe.
+ */
+@SuppressWarnings("unused")
+public class BufferPool {
+    private static final int MIN_CAPACITY = 4 * 1024;
+    private static final BufferPool DEFAULT = new BufferPool(64 * 1024 * 1024);
+
+    private final Map<Integer, Queue<ByteBuffer>> buffers = new ConcurrentHashMap<>();
+    private final AtomicLong retainedBytes = new AtomicLong();
+    private final long maxRetainedBytes;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxRetainedBytes The maximum number of bytes of all buffers
+     *                         that are kept for reuse.
+     * @throws IllegalArgumentException maxRetainedBytes is negative.
+     */
+    public BufferPool(long maxRetainedBytes) {
+        if (maxRetainedBytes < 0)
+            throw new IllegalArgumentException("maxRetainedBytes");
+
+        this.maxRetainedBytes = maxRetainedBytes;
+    }
+
+    /**
+     * Gets the pool that is used by default by {@link FileCopy}.
+     *
+     * @return The default pool. It keeps up to 64 MB.
+     */
+    public static BufferPool getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Gets the maximum number of bytes of all buffers that are kept for
+     * reuse.
+     *
+     * @return The retain limit in bytes.
+     */
+    public long getMaxRetainedBytes() {
+        return maxRetainedBytes;
+    }
+
+    /**
+     * Gets the number of bytes of all buffers that are currently kept for
+     * reuse.
+     *
+     * @return The number of kept bytes.
+     */
+    public long getRetainedBytes() {
+        return retainedBytes.get();
+    }
+
+    /**
+     * Gets a cleared direct buffer.
+     *
+     * @param minCapacity The minimum capacity of the buffer.
+     * @return A buffer with a capacity of at least minCapacity. Its
+     * capacity is a power of two and at least 4 KB.
+     * @throws IllegalArgumentException minCapacity is less than 1 or
+     *                                  greater than 1 GB.
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        if (minCapacity < 1 || minCapacity > 1 << 30)
+            throw new IllegalArgumentException("minCapacity");
+
+        int capacity = Math.max(MIN_CAPACITY, Integer.highestOneBit(minCapacity - 1) << 1);
+        ByteBuffer buffer = getQueue(capacity).poll();
+
+        if (buffer == null)
+            return ByteBuffer.allocateDirect(capacity);
+
+        retainedBytes.addAndGet(-capacity);
+
+        return buffer.clear();
+    }
+
+    /**
+     * Returns a buffer to the pool.
+     * <p>
+     * The buffer must not be used after it is released.
+     *
+     * @param buffer The buffer to release. This should be a buffer that is
+     *               acquired from this pool.
+     * @throws NullPointerException buffer is {@code null}.
+     */
+    public void release(ByteBuffer buffer) {
+        Objects.requireNonNull(buffer, "buffer");
+
+        int capacity = buffer.capacity();
+
+        if (!buffer.isDirect() || Integer.bitCount(capacity) != 1 || capacity < MIN_CAPACITY)
+            return;
+
+        if (retainedBytes.addAndGet(capacity) > maxRetainedBytes) {
+            retainedBytes.addAndGet(-capacity);
+            return;
+        }
+
+        getQueue(capacity).offer(buffer);
+    }
+
+    /**
+     * Releases all kept buffers.
+     */
+    public void clear() {
+        buffers.forEach((capacity, queue) -> {
+            while (queue.poll() != null)
+                retainedBytes.addAndGet(-capacity);
+        });
+    }
+
+    private Queue<ByteBuffer> getQueue(int capacity) {
+        return buffers.computeIfAbsent(capacity, c -> new ConcurrentLinkedQueue<>());
+    }
+}
@@ -0,0 +1,37 @@
+package de.ganzer.core.files;
+
+/**
+ * Defines the status of the progress when comparing files with {@link FileCompare}.
+ */
+public enum CompareProgressStatus {
+    /**
+     * Reports that a directory is going to be compared. The progress
+     * function is called once for each directory that exists in both trees.
+     */
+    COMPARE_DIRECTORY,
+
+    /**
+     * Reports that a file is going to be compared. The progress function is
+     * called once for each file that exists in both trees.
+     */
+    COMPARE_FILE,
+
+    /**
+     * Reports the progress of comparing the content of a large file. The
+     * progress function is called several times for each file whose content
+     * is compared in chunks.
+     */
+    COMPARING_FILE,
+
+    /**
+     * Reports a found difference. {@link FileCompare.ProgressInfo#getDifference()}
+     * contains the difference.
+     */
+    DIFFERENCE,
+
+    /**
+     * This status reports that all files are compared or that the operation
+     * is aborted either by the user or by an error.
+     */
+    FINISHED
+}
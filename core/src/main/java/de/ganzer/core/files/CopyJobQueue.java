@@ -0,0 +1,643 @@
+package de.ganzer.core.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileStore;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * The CopyJobQueue class runs copy jobs by their priority and limits the
+ * number of jobs that use the same file store at the same time.
+ * <p>
+ * Each job is mapped to the file stores of its sources and its target. A
+ * job is started when each of its stores runs less than
+ * {@link #getMaxJobsPerStore()} jobs; until then it is queued. The queued
+ * jobs are started by their priority; jobs with the same priority are
+ * started in the order in which they are submitted. The priority of a
+ * queued job rises by one for each {@link #getAgingInterval()} that it
+ * waits, so that jobs with a low priority are started in the end, too.
+ * <p>
+ * A job is a large job if the average size of its files is not less than
+ * {@link #getLargeFileSize()}; otherwise, it is a small job. If a store can
+ * run more than one job, a job cannot use the last free job of the store
+ * while a job of the other kind waits for the store, so that a burst of
+ * small files is not delayed by large files and large files are not
+ * delayed by a burst of small files. Directories are scanned by the
+ * executor, so that submitting a job never waits for a scan; a job is not
+ * started before its kind is known.
+ * <p>
+ * The jobs are run by {@link FileCopy#startAsync} with the executor of the
+ * queue. The handle of a job is returned when the job is submitted; a job
+ * that is canceled while it is queued is not started and is completed with
+ * {@link FileError#CANCELED}. All methods of this class are thread-safe.
+ */
+@SuppressWarnings("unused")
+public class CopyJobQueue {
+    /**
+     * The StoreMetrics class contains the state and the throughput of a
+     * single file store. Instances of this class are immutable.
+     */
+    public static final class StoreMetrics {
+        private final FileStore store;
+        private final int runningJobs;
+        private final int queuedJobs;
+        private final long completedJobs;
+        private final long bytesCopied;
+        private final Duration busyTime;
+
+        private StoreMetrics(FileStore store, int runningJobs, int queuedJobs, long completedJobs, long bytesCopied, Duration busyTime) {
+            this.store = store;
+            this.runningJobs = runningJobs;
+            this.queuedJobs = queuedJobs;
+            this.completedJobs = completedJobs;
+            this.bytesCopied = bytesCopied;
+            this.busyTime = busyTime;
+        }
+
+        /**
+         * Gets the file store.
+         *
+         * @return The file store.
+         */
+        public FileStore getStore() {
+            return store;
+        }
+
+        /**
+         * Gets the number of running jobs that use the store.
+         *
+         * @return The number of running jobs.
+         */
+        public int getRunningJobs() {
+            return runningJobs;
+        }
+
+        /**
+         * Gets the number of queued jobs that use the store.
+         *
+         * @return The number of queued jobs.
+         */
+        public int getQueuedJobs() {
+            return queuedJobs;
+        }
+
+        /**
+         * Gets the number of finished jobs that used the store.
+         *
+         * @return The number of finished jobs.
+         */
+        public long getCompletedJobs() {
+            return completedJobs;
+        }
+
+        /**
+         * Gets the number of bytes that are copied by the finished jobs that
+         * used the store.
+         *
+         * @return The copied bytes.
+         */
+        public long getBytesCopied() {
+            return bytesCopied;
+        }
+
+        /**
+         * Gets the time in which at least one job used the store.
+         *
+         * @return The busy time.
+         */
+        public Duration getBusyTime() {
+            return busyTime;
+        }
+
+        /**
+         * Gets the throughput of the store.
+         *
+         * @return The copied bytes divided by the busy time in seconds or 0
+         * if the store was not busy yet.
+         */
+        public double getBytesPerSecond() {
+            long nanos = busyTime.toNanos();
+            return nanos > 0 ? bytesCopied * 1e9 / nanos : 0;
+        }
+    }
+
+    private static final class Job {
+        final FileCopy copy;
+        final List<String> sources;
+        final String target;
+        final boolean suppressInit;
+        final int priority;
+        final long sequence;
+        final long submitNanos;
+        final Set<Store> stores;
+        final FileJob<FileCopy.ProgressInfo> handle;
+        boolean classified;
+        boolean large;
+
+        Job(FileCopy copy, List<String> sources, String target, boolean suppressInit, int priority, long sequence, Set<Store> stores, FileJob<FileCopy.ProgressInfo> handle) {
+            this.copy = copy;
+            this.sources = sources;
+            this.target = target;
+            this.suppressInit = suppressInit;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.submitNanos = System.nanoTime();
+            this.stores = stores;
+            this.handle = handle;
+        }
+    }
+
+    private static final class Store {
+        final FileStore store;
+        int runningJobs;
+        int runningLargeJobs;
+        int queuedJobs;
+        int queuedLargeJobs;
+        int queuedSmallJobs;
+        long completedJobs;
+        long bytesCopied;
+        long busyNanos;
+        long busySince;
+
+        Store(FileStore store) {
+            this.store = store;
+        }
+
+        long getBusyNanos(long now) {
+            return runningJobs > 0 ? busyNanos + now - busySince : busyNanos;
+        }
+    }
+
+    private final Object lock = new Object();
+    private final Executor executor;
+    private final List<Job> queue = new ArrayList<>();
+    private final Map<FileStore, Store> stores = new HashMap<>();
+    private long nextSequence;
+    private int runningJobs;
+    private volatile int maxJobsPerStore = 2;
+    private volatile long largeFileSize = 64 * 1024 * 1024;
+    private volatile Duration agingInterval = Duration.ofSeconds(10);
+    private volatile DirectoryStats directoryStats;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param executor The executor that runs the jobs. The executor must be
+     *                 able to run the jobs of all stores at the same time.
+     * @throws NullPointerException executor is {@code null}.
+     */
+    public CopyJobQueue(Executor executor) {
+        this.executor = Objects.requireNonNull(executor, "executor");
+    }
+
+    /**
+     * Gets the maximum number of jobs that use the same file store at the
+     * same time.
+     *
+     * @return The maximum number of jobs per store. The default value is 2.
+     */
+    public int getMaxJobsPerStore() {
+        return maxJobsPerStore;
+    }
+
+    /**
+     * Sets the maximum number of jobs that use the same file store at the
+     * same time. Queued jobs are started at once if the limit is raised.
+     *
+     * @param maxJobsPerStore The maximum number of jobs per store.
+     * @throws IllegalArgumentException maxJobsPerStore is less than 1.
+     */
+    public void setMaxJobsPerStore(int maxJobsPerStore) {
+        if (maxJobsPerStore < 1)
+            throw new IllegalArgumentException("maxJobsPerStore");
+
+        this.maxJobsPerStore = maxJobsPerStore;
+        dispatch();
+    }
+
+    /**
+     * Gets the average file size from which a job is a large job.
+     *
+     * @return The size in bytes. The default value is 64 MB.
+     */
+    public long getLargeFileSize() {
+        return largeFileSize;
+    }
+
+    /**
+     * Sets the average file size from which a job is a large job. The size
+     * applies to the jobs that are submitted afterwards.
+     *
+     * @param largeFileSize The size in bytes.
+     * @throws IllegalArgumentException largeFileSize is less than 1.
+     */
+    public void setLargeFileSize(long largeFileSize) {
+        if (largeFileSize < 1)
+            throw new IllegalArgumentException("largeFileSize");
+
+        this.largeFileSize = largeFileSize;
+    }
+
+    /**
+     * Gets the time after which the priority of a queued job rises by one.
+     *
+     * @return The aging interval. The default value is 10 seconds.
+     */
+    public Duration getAgingInterval() {
+        return agingInterval;
+    }
+
+    /**
+     * Sets the time after which the priority of a queued job rises by one.
+     *
+     * @param agingInterval The aging interval.
+     * @throws NullPointerException     agingInterval is {@code null}.
+     * @throws IllegalArgumentException agingInterval is zero or negative.
+     */
+    public void setAgingInterval(Duration agingInterval) {
+        Objects.requireNonNull(agingInterval, "agingInterval");
+
+        if (agingInterval.isZero() || agingInterval.isNegative())
+            throw new IllegalArgumentException("agingInterval");
+
+        this.agingInterval = agingInterval;
+    }
+
+    /**
+     * Gets the scanner that counts the files of the submitted directories.
+     *
+     * @return The used scanner or {@code null} if directories are not
+     * scanned.
+     */
+    public DirectoryStats getDirectoryStats() {
+        return directoryStats;
+    }
+
+    /**
+     * Sets the scanner that counts the files of the submitted directories.
+     * <p>
+     * The average file size of a job is known only for the files that are
+     * submitted. Without a scanner, a job that copies a directory is a small
+     * job. The directories are scanned by the executor of the queue.
+     *
+     * @param directoryStats The scanner to use or {@code null} to not scan
+     *                       directories.
+     */
+    public void setDirectoryStats(DirectoryStats directoryStats) {
+        this.directoryStats = directoryStats;
+    }
+
+    /**
+     * Gets the number of queued jobs.
+     *
+     * @return The number of jobs that are submitted but not started.
+     */
+    public int getQueueDepth() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    /**
+     * Gets the number of running jobs.
+     *
+     * @return The number of jobs that are started but not finished.
+     */
+    public int getRunningJobs() {
+        synchronized (lock) {
+            return runningJobs;
+        }
+    }
+
+    /**
+     * Gets the metrics of all file stores that were used by the submitted
+     * jobs.
+     *
+     * @return The unmodifiable list of the metrics.
+     */
+    public List<StoreMetrics> getStoreMetrics() {
+        long now = System.nanoTime();
+        var metrics = new ArrayList<StoreMetrics>();
+
+        synchronized (lock) {
+            for (Store store : stores.values()) {
+                metrics.add(new StoreMetrics(store.store, store.runningJobs, store.queuedJobs, store.completedJobs,
+                        store.bytesCopied, Duration.ofNanos(store.getBusyNanos(now))));
+            }
+        }
+
+        return Collections.unmodifiableList(metrics);
+    }
+
+    /**
+     * Submits a job that copies the specified file or directory.
+     *
+     * @param copy         The engine that runs the job.
+     * @param source       The absolute or relative path to the file or
+     *                     directory to copy.
+     * @param target       The absolute or relative path to the directory where
+     *                     to copy into.
+     * @param suppressInit The counting of all bytes to copy is suppressed if
+     *                     this is {@code true}.
+     * @param priority     The priority of the job. Jobs with a higher priority
+     *                     are started first.
+     * @return The handle of the job.
+     * @throws NullPointerException copy, source or target is {@code null}.
+     * @see #submit(FileCopy, List, String, boolean, int)
+     */
+    public FileJob<FileCopy.ProgressInfo> submit(FileCopy copy, String source, String target, boolean suppressInit, int priority) {
+        Objects.requireNonNull(source, "source");
+        return submit(copy, Collections.singletonList(source), target, suppressInit, priority);
+    }
+
+    /**
+     * Submits a job that copies the specified files or directories.
+     * <p>
+     * The engine must not be used for another job until the returned job is
+     * done. If the file store of a path cannot be determined or if a
+     * directory cannot be scanned, the result of the handle is completed
+     * exceptionally with the {@link IOException}.
+     *
+     * @param copy         The engine that runs the job.
+     * @param sources      The absolute or relative paths to the files or
+     *                     directories to copy.
+     * @param target       The absolute or relative path to the directory where
+     *                     to copy into.
+     * @param suppressInit The counting of all bytes to copy is suppressed if
+     *                     this is {@code true}.
+     * @param priority     The priority of the job. Jobs with a higher priority
+     *                     are started first.
+     * @return The handle of the job.
+     * @throws NullPointerException copy, sources or target is {@code null}.
+     */
+    public FileJob<FileCopy.ProgressInfo> submit(FileCopy copy, List<String> sources, String target, boolean suppressInit, int priority) {
+        Objects.requireNonNull(copy, "copy");
+        Objects.requireNonNull(sources, "sources");
+        Objects.requireNonNull(target, "target");
+
+        var handle = new FileJob<FileCopy.ProgressInfo>();
+        var fileStores = new LinkedHashSet<FileStore>();
+
+        try {
+            for (String source : sources)
+                fileStores.add(getFileStore(new File(source)));
+
+            fileStores.add(getFileStore(new File(target)));
+        } catch (IOException e) {
+            handle.completeExceptionally(e);
+            return handle;
+        }
+
+        Job job;
+
+        synchronized (lock) {
+            var jobStores = new LinkedHashSet<Store>();
+
+            for (FileStore fileStore : fileStores) {
+                Store store = stores.computeIfAbsent(fileStore, Store::new);
+
+                ++store.queuedJobs;
+                jobStores.add(store);
+            }
+
+            job = new Job(copy, List.copyOf(sources), target, suppressInit, priority, nextSequence++, jobStores, handle);
+            queue.add(job);
+        }
+
+        // Canceling the future of a queued job removes the job:
+        handle.getResult().whenComplete((error, e) -> {
+            if (handle.getResult().isCancelled())
+                dispatch();
+        });
+
+        classify(job, directoryStats, largeFileSize);
+
+        return handle;
+    }
+
+    private static FileStore getFileStore(File file) throws IOException {
+        Path path = file.toPath().toAbsolutePath().normalize();
+
+        // A target that does not exist yet is created in the store of its
+        // nearest existing parent:
+        while (path.getParent() != null && !Files.exists(path))
+            path = path.getParent();
+
+        return Files.getFileStore(path);
+    }
+
+    private void classify(Job job, DirectoryStats directoryStats, long largeFileSize) {
+        Runnable classifier = () -> {
+            try {
+                setKind(job, isLarge(job.sources, directoryStats, largeFileSize));
+            } catch (IOException e) {
+                job.handle.completeExceptionally(e);
+                dispatch();
+            }
+        };
+
+        // Only a scan is run by the executor; the sizes of files are read at
+        // once:
+        if (directoryStats == null || job.sources.stream().noneMatch(source -> new File(source).isDirectory())) {
+            classifier.run();
+            return;
+        }
+
+        try {
+            executor.execute(classifier);
+        } catch (RejectedExecutionException e) {
+            classifier.run();
+        }
+    }
+
+    private static boolean isLarge(List<String> sources, DirectoryStats directoryStats, long largeFileSize) throws IOException {
+        long size = 0;
+        long fileCount = 0;
+
+        for (String source : sources) {
+            var file = new File(source);
+
+            if (file.isDirectory()) {
+                if (directoryStats == null)
+                    return false;
+
+                DirectoryStats.Summary summary = directoryStats.scan(file);
+                size += summary.getSize();
+                fileCount += summary.getFileCount();
+            } else {
+                size += file.length();
+                ++fileCount;
+            }
+        }
+
+        return fileCount > 0 && size / fileCount >= largeFileSize;
+    }
+
+    private void setKind(Job job, boolean large) {
+        synchronized (lock) {
+            // A job that is already removed from the queue is not counted:
+            if (queue.contains(job)) {
+                for (Store store : job.stores) {
+                    if (large)
+                        ++store.queuedLargeJobs;
+                    else
+                        ++store.queuedSmallJobs;
+                }
+            }
+
+            job.large = large;
+            job.classified = true;
+        }
+
+        dispatch();
+    }
+
+    private void dispatch() {
+        var startable = new ArrayList<Job>();
+
+        synchronized (lock) {
+            long now = System.nanoTime();
+            long agingNanos = agingInterval.toNanos();
+
+            queue.sort(Comparator.comparingLong((Job job) -> -getEffectivePriority(job, now, agingNanos))
+                    .thenComparingLong(job -> job.sequence));
+
+            for (var it = queue.iterator(); it.hasNext(); ) {
+                Job job = it.next();
+
+                if (job.handle.isCanceled() || job.handle.isDone()) {
+                    it.remove();
+                    dequeue(job);
+                    startable.add(job);
+                } else if (canStart(job)) {
+                    it.remove();
+                    dequeue(job);
+                    acquire(job, now);
+                    startable.add(job);
+                }
+            }
+        }
+
+        for (Job job : startable) {
+            if (job.handle.isCanceled() || job.handle.isDone())
+                job.handle.complete(FileError.CANCELED);
+            else
+                start(job);
+        }
+    }
+
+    private static long getEffectivePriority(Job job, long now, long agingNanos) {
+        return job.priority + (now - job.submitNanos) / agingNanos;
+    }
+
+    private boolean canStart(Job job) {
+        if (!job.classified)
+            return false;
+
+        int maxJobs = maxJobsPerStore;
+
+        for (Store store : job.stores) {
+            if (store.runningJobs >= maxJobs)
+                return false;
+
+            // The last job of the store is kept for a waiting job of the
+            // other kind:
+            int runningOfKind = job.large ? store.runningLargeJobs : store.runningJobs - store.runningLargeJobs;
+            int queuedOfOtherKind = job.large ? store.queuedSmallJobs : store.queuedLargeJobs;
+
+            if (maxJobs > 1 && queuedOfOtherKind > 0 && runningOfKind >= maxJobs - 1)
+                return false;
+        }
+
+        return true;
+    }
+
+    private void dequeue(Job job) {
+        for (Store store : job.stores) {
+            --store.queuedJobs;
+
+            if (job.classified && job.large)
+                --store.queuedLargeJobs;
+            else if (job.classified)
+                --store.queuedSmallJobs;
+        }
+    }
+
+    private void acquire(Job job, long now) {
+        ++runningJobs;
+
+        for (Store store : job.stores) {
+            if (store.runningJobs++ == 0)
+                store.busySince = now;
+
+            if (job.large)
+                ++store.runningLargeJobs;
+        }
+    }
+
+    private void release(Job job) {
+        CopyStatistics statistics = job.copy.getStatistics();
+        long bytesCopied = statistics != null ? statistics.getBytesCopied() : 0;
+        long now = System.nanoTime();
+
+        synchronized (lock) {
+            --runningJobs;
+
+            for (Store store : job.stores) {
+                if (--store.runningJobs == 0)
+                    store.busyNanos += now - store.busySince;
+
+                if (job.large)
+                    --store.runningLargeJobs;
+
+                ++store.completedJobs;
+                store.bytesCopied += bytesCopied;
+            }
+        }
+    }
+
+    private void start(Job job) {
+        // The job is released when its thread is finished, which may be
+        // later than its result if its future is canceled:
+        Executor jobExecutor = command -> {
+            try {
+                executor.execute(() -> {
+                    try {
+                        command.run();
+                    } finally {
+                        finish(job);
+                    }
+                });
+            } catch (RuntimeException e) {
+                finish(job);
+                throw e;
+            }
+        };
+
+        try {
+            job.copy.startAsync(job.handle, job.sources, job.target, job.suppressInit, jobExecutor);
+        } catch (IllegalStateException e) {
+            // The engine runs another job:
+            finish(job);
+            job.handle.completeExceptionally(e);
+        }
+    }
+
+    private void finish(Job job) {
+        release(job);
+        dispatch();
+    }
+}
@@ -0,0 +1,452 @@
+package de.ganzer.core.files;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.*;
+
+/**
+ * The CopyJournal class records the state of a copy job on disk, so that the
+ * job can be resumed by {@link FileCopy#resume(CopyJournal)} if it is
+ * interrupted.
+ * <p>
+ * The journal records the sources and the target of the job, the files that
+ * are completely copied and the number of bytes that are written to the file
+ * that is currently copied. Records are collected in memory and written in
+ * batches: A batch is written if either the batch size is reached or the
+ * flush interval has passed since the last batch. Therefore, a resumed job
+ * may copy the files again that were completed within the last batch.
+ * <p>
+ * Batches are handed over to the operating system but are not forced to the
+ * storage device; a journal survives the termination of the JVM but not
+ * necessarily a crash of the operating system.
+ * <p>
+ * The journal is deleted when the job has finished without an error. A
+ * journal must not be used by more than one job at the same time.
+ */
+@SuppressWarnings("unused")
+public class CopyJournal {
+    private static final String HEADER = "FileCopyJournal 1";
+
+    private final File file;
+    private int batchSize = 256;
+    private Duration flushInterval = Duration.ofSeconds(1);
+
+    private final List<String> sources = new ArrayList<>();
+    private String target;
+    private boolean suppressInit;
+    private final Set<String> completed = new HashSet<>();
+    private final Set<String> started = new HashSet<>();
+    private final Map<String, Checkpoint> checkpoints = new HashMap<>();
+    private final Map<String, Checkpoint> dirtyCheckpoints = new LinkedHashMap<>();
+    private final List<String> pendingRecords = new ArrayList<>();
+    private BufferedWriter writer;
+    private long lastFlushNanos;
+    private boolean reopened;
+
+    /**
+     * The state of a file that is copied.
+     */
+    private static class Checkpoint {
+        private final String writePath;
+        private final long size;
+        private final long lastModified;
+        private final long offset;
+
+        Checkpoint(String writePath, long size, long lastModified, long offset) {
+            this.writePath = writePath;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.offset = offset;
+        }
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param file The file that contains the journal.
+     * @throws NullPointerException file is {@code null}.
+     */
+    public CopyJournal(File file) {
+        Objects.requireNonNull(file, "file");
+        this.file = file;
+    }
+
+    /**
+     * Gets the file that contains the journal.
+     *
+     * @return The file of the journal.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets a value indicating whether the journal file exists and thus an
+     * interrupted job can be resumed.
+     *
+     * @return {@code true} if the journal file exists.
+     */
+    public boolean exists() {
+        return file.isFile();
+    }
+
+    /**
+     * Gets the number of records that are collected before they are
+     * written.
+     *
+     * @return The batch size. The default value is 256.
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Sets the number of records that are collected before they are
+     * written.
+     *
+     * @param batchSize The batch size to set.
+     * @throws IllegalArgumentException batchSize is less than 1.
+     */
+    public void setBatchSize(int batchSize) {
+        if (batchSize < 1)
+            throw new IllegalArgumentException("batchSize");
+
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Gets the maximum time that records are collected before they are
+     * written.
+     *
+     * @return The flush interval. The default value is one second.
+     */
+    public Duration getFlushInterval() {
+        return flushInterval;
+    }
+
+    /**
+     * Sets the maximum time that records are collected before they are
+     * written.
+     *
+     * @param flushInterval The flush interval to set.
+     * @throws NullPointerException     flushInterval is {@code null}.
+     * @throws IllegalArgumentException flushInterval is negative.
+     */
+    public void setFlushInterval(Duration flushInterval) {
+        Objects.requireNonNull(flushInterval, "flushInterval");
+
+        if (flushInterval.isNegative())
+            throw new IllegalArgumentException("flushInterval");
+
+        this.flushInterval = flushInterval;
+    }
+
+    List<String> getSources() {
+        return sources;
+    }
+
+    String getTarget() {
+        return target;
+    }
+
+    boolean isSuppressInit() {
+        return suppressInit;
+    }
+
+    /**
+     * Creates a new journal file for a job and writes its definition.
+     */
+    synchronized void create(List<String> sources, String target, boolean suppressInit) throws IOException {
+        clear();
+
+        this.sources.addAll(sources);
+        this.target = target;
+        this.suppressInit = suppressInit;
+
+        writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+
+        writeRecord(HEADER);
+        writeRecord(format("T", target, Boolean.toString(suppressInit)));
+
+        for (var source : sources)
+            writeRecord(format("S", source));
+
+        writer.flush();
+        lastFlushNanos = System.nanoTime();
+    }
+
+    /**
+     * Reads the journal file and opens it to append the records of the
+     * resumed job.
+     */
+    synchronized void open() throws IOException {
+        clear();
+
+        reopened = true;
+
+        String content = Files.readString(file.toPath(), StandardCharsets.UTF_8);
+
+        // A record that is not terminated was torn by the interruption:
+        int end = content.lastIndexOf('\n');
+        String[] lines = end < 0 ? new String[0] : content.substring(0, end).split("\n", -1);
+
+        if (lines.length == 0 || !lines[0].equals(HEADER))
+            throw new IOException("Invalid journal: " + file);
+
+        for (int i = 1; i < lines.length; ++i)
+            readRecord(parse(lines[i]));
+
+        if (target == null)
+            throw new IOException("Invalid journal: " + file);
+
+        // The torn record is removed, so that the appended ones start on a
+        // line of their own:
+        if (end + 1 < content.length()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE)) {
+                channel.truncate(content.substring(0, end + 1).getBytes(StandardCharsets.UTF_8).length);
+            }
+        }
+
+        writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8,
+                StandardOpenOption.APPEND, StandardOpenOption.WRITE);
+        lastFlushNanos = System.nanoTime();
+    }
+
+    private void readRecord(String[] fields) throws IOException {
+        try {
+            switch (fields[0]) {
+                case "T":
+                    target = fields[1];
+                    suppressInit = Boolean.parseBoolean(fields[2]);
+                    break;
+
+                case "S":
+                    sources.add(fields[1]);
+                    break;
+
+                case "D":
+                    started.add(fields[1]);
+                    break;
+
+                case "P":
+                    started.add(fields[1]);
+                    checkpoints.put(fields[1], new Checkpoint(fields[2], Long.parseLong(fields[3]), Long.parseLong(fields[4]), Long.parseLong(fields[5])));
+                    break;
+
+                case "C":
+                    completed.add(fields[1]);
+                    checkpoints.remove(fields[1]);
+                    break;
+
+                default:
+                    throw new IOException("Invalid journal: " + file);
+            }
+        } catch (IndexOutOfBoundsException | NumberFormatException e) {
+            throw new IOException("Invalid journal: " + file, e);
+        }
+    }
+
+    /**
+     * Writes all collected records and closes the journal. The journal file
+     * is deleted if the job is finished.
+     */
+    synchronized void close(boolean finished) throws IOException {
+        if (writer == null)
+            return;
+
+        try {
+            if (!finished)
+                flush();
+        } finally {
+            writer.close();
+            writer = null;
+        }
+
+        if (finished)
+            Files.deleteIfExists(file.toPath());
+    }
+
+    /**
+     * Gets a value indicating whether the journal was opened to resume an
+     * interrupted job.
+     */
+    synchronized boolean isReopened() {
+        return reopened;
+    }
+
+    synchronized boolean isCompleted(String sourcePath) {
+        return completed.contains(sourcePath);
+    }
+
+    /**
+     * Gets a value indicating whether writing to the target of the
+     * specified source was already decided by the interrupted job.
+     */
+    synchronized boolean isStarted(String sourcePath) {
+        return started.contains(sourcePath);
+    }
+
+    /**
+     * Gets the number of bytes that can be kept from the file that was
+     * written when the job was interrupted.
+     *
+     * @return The number of bytes to keep or -1 if the file must be copied
+     * from the beginning.
+     */
+    synchronized long getResumeOffset(FileTreeEntry source, File writeFile) {
+        Checkpoint checkpoint = checkpoints.get(source.getPath());
+
+        if (checkpoint == null
+                || !checkpoint.writePath.equals(writeFile.getAbsolutePath())
+                || checkpoint.size != source.getSize()
+                || checkpoint.lastModified != source.getLastModified()
+                || checkpoint.offset > source.getSize()
+                || !writeFile.isFile()
+                || writeFile.length() < checkpoint.offset)
+            return -1;
+
+        return checkpoint.offset;
+    }
+
+    synchronized void directoryStarted(String sourcePath) throws IOException {
+        started.add(sourcePath);
+        addRecord(format("D", sourcePath));
+    }
+
+    synchronized void fileProgress(FileTreeEntry source, File writeFile, long offset) throws IOException {
+        var checkpoint = new Checkpoint(writeFile.getAbsolutePath(), source.getSize(), source.getLastModified(), offset);
+
+        checkpoints.put(source.getPath(), checkpoint);
+        dirtyCheckpoints.put(source.getPath(), checkpoint);
+
+        flushIfDue();
+    }
+
+    synchronized void fileCompleted(String sourcePath) throws IOException {
+        completed.add(sourcePath);
+        checkpoints.remove(sourcePath);
+        dirtyCheckpoints.remove(sourcePath);
+
+        addRecord(format("C", sourcePath));
+    }
+
+    private void addRecord(String record) throws IOException {
+        pendingRecords.add(record);
+        flushIfDue();
+    }
+
+    private void flushIfDue() throws IOException {
+        if (pendingRecords.size() + dirtyCheckpoints.size() >= batchSize
+                || System.nanoTime() - lastFlushNanos >= flushInterval.toNanos())
+            flush();
+    }
+
+    private void flush() throws IOException {
+        if (writer == null)
+            return;
+
+        for (var record : pendingRecords)
+            writeRecord(record);
+
+        for (var entry : dirtyCheckpoints.entrySet()) {
+            Checkpoint checkpoint = entry.getValue();
+
+            writeRecord(format("P", entry.getKey(), checkpoint.writePath,
+                    Long.toString(checkpoint.size), Long.toString(checkpoint.lastModified), Long.toString(checkpoint.offset)));
+        }
+
+        pendingRecords.clear();
+        dirtyCheckpoints.clear();
+
+        writer.flush();
+        lastFlushNanos = System.nanoTime();
+    }
+
+    private void writeRecord(String record) throws IOException {
+        writer.write(record);
+        writer.write('\n');
+    }
+
+    private void clear() {
+        sources.clear();
+        target = null;
+        suppressInit = false;
+        completed.clear();
+        started.clear();
+        checkpoints.clear();
+        dirtyCheckpoints.clear();
+        pendingRecords.clear();
+        reopened = false;
+    }
+
+    private static String format(String type, String... fields) {
+        var sb = new StringBuilder(type);
+
+        for (var field : fields) {
+            sb.append('\t');
+
+            for (int i = 0; i < field.length(); ++i) {
+                char c = field.charAt(i);
+
+                switch (c) {
+                    case '\\':
+                        sb.append("\\\\");
+                        break;
+
+                    case '\t':
+                        sb.append("\\t");
+                        break;
+
+                    case '\n':
+                        sb.append("\\n");
+                        break;
+
+                    case '\r':
+                        sb.append("\\r");
+                        break;
+
+                    default:
+                        sb.append(c);
+                }
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static String[] parse(String record) {
+        String[] fields = record.split("\t", -1);
+
+        for (int i = 0; i < fields.length; ++i) {
+            String field = fields[i];
+
+            if (field.indexOf('\\') < 0)
+                continue;
+
+            var sb = new StringBuilder(field.length());
+
+            for (int j = 0; j < field.length(); ++j) {
+                char c = field.charAt(j);
+
+                if (c != '\\' || j + 1 == field.length()) {
+                    sb.append(c);
+                    continue;
+                }
+
+                c = field.charAt(++j);
+                sb.append(c == 't' ? '\t' : c == 'n' ? '\n' : c == 'r' ? '\r' : c);
+            }
+
+            fields[i] = sb.toString();
+        }
+
+        return fields;
+    }
+}
@@ -0,0 +1,37 @@
+package de.ganzer.core.files;
+
+/**
+ * Defines how {@link FileCopy} moves the data of a single file from the
+ * source to the target.
+ */
+public enum CopyMethod {
+    /**
+     * The data is read into a buffer and written from there into the
+     * target. The size of the buffer is defined by
+     * {@link FileCopy#setCopyBufferSize}.
+     */
+    BUFFERED,
+
+    /**
+     * The data is transferred by {@link java.nio.channels.FileChannel#transferTo}
+     * without copying it into the heap. Depending on the platform, the
+     * transfer is done completely in the kernel. If the channel transfer is
+     * not supported, the data is copied like {@link #BUFFERED}.
+     * <p>
+     * Because a failed transfer does not tell which of both files caused
+     * it, a failure is reported as {@link FileError#WRITE_FILE} only if the
+     * exception names the target; otherwise it is reported as
+     * {@link FileError#READ_FILE} of the source.
+     */
+    CHANNEL,
+
+    /**
+     * The data is read by a separate reader thread into a ring of buffers
+     * while the copying thread writes the filled buffers into the target,
+     * so that reading and writing overlap. This is useful if the source and
+     * the target are located on different devices. The size of each buffer
+     * is defined by {@link FileCopy#setCopyBufferSize} and the number of
+     * buffers by {@link FileCopy#setPipelineDepth}.
+     */
+    PIPELINED
+}
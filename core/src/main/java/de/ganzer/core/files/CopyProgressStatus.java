@@ -44,6 +44,22 @@ public enum CopyProgressStatus {
      */
     COPYING_FILE,
 
+    /**
+     * Reports that a file is not copied because the target is up to date
+     * (see {@link FileCopy#setSyncMode}). The progress function is called
+     * once for each skipped file instead of {@link #START_FILE}. The size of
+     * the file is counted as copied and as skipped.
+     */
+    SKIPPED_FILE,
+
+    /**
+     * Reports that a file or directory is deleted from the target because
+     * it does not exist in the source anymore (see
+     * {@link FileCopy#setDeleteOrphans}). The progress function is called
+     * once for each deleted root of such an entry.
+     */
+    DELETE_ORPHAN,
+
     /**
      * This status reports that all files are copied or that the operation is
      * aborted either by the user or by an error.
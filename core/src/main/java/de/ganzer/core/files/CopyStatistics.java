@@ -0,0 +1,258 @@
+package de.ganzer.core.files;
+
+import java.time.Duration;
+import java.util.Arrays;
+
+/**
+ * The CopyStatistics class contains the measured performance of a copy job.
+ * <p>
+ * The rates are smoothed by an exponentially weighted moving average, so
+ * that single slow or fast buffers do not make them jump. Bytes and files
+ * that are skipped (for example by {@link FileCopy#setSyncMode}) are not
+ * counted as copied.
+ * <p>
+ * The latency histogram counts the copied files by the time that was needed
+ * to copy them, including opening, closing and renaming: Bucket 0 counts the
+ * files that took less than 1 ms, bucket {@code n} counts the files that took
+ * at least 2<sup>n - 1</sup> ms and less than 2<sup>n</sup> ms. The last
+ * bucket counts all files that took longer.
+ * <p>
+ * Instances of this class are immutable.
+ */
+@SuppressWarnings("unused")
+public class CopyStatistics {
+    /**
+     * The number of buckets of the latency histogram.
+     */
+    public static final int LATENCY_BUCKETS = 24;
+
+    private final Duration elapsedTime;
+    private final long bytesCopied;
+    private final long filesCopied;
+    private final double bytesPerSecond;
+    private final double filesPerSecond;
+    private final Duration remainingTime;
+    private final long[] latencyHistogram;
+
+    private CopyStatistics(Duration elapsedTime, long bytesCopied, long filesCopied, double bytesPerSecond, double filesPerSecond, Duration remainingTime, long[] latencyHistogram) {
+        this.elapsedTime = elapsedTime;
+        this.bytesCopied = bytesCopied;
+        this.filesCopied = filesCopied;
+        this.bytesPerSecond = bytesPerSecond;
+        this.filesPerSecond = filesPerSecond;
+        this.remainingTime = remainingTime;
+        this.latencyHistogram = latencyHistogram;
+    }
+
+    /**
+     * Gets the time since the job was started.
+     *
+     * @return The elapsed time.
+     */
+    public Duration getElapsedTime() {
+        return elapsedTime;
+    }
+
+    /**
+     * Gets the number of bytes that are copied. This does not include the
+     * skipped bytes.
+     *
+     * @return The copied bytes.
+     */
+    public long getBytesCopied() {
+        return bytesCopied;
+    }
+
+    /**
+     * Gets the number of files that are copied. This does not include the
+     * skipped files.
+     *
+     * @return The copied files.
+     */
+    public long getFilesCopied() {
+        return filesCopied;
+    }
+
+    /**
+     * Gets the smoothed number of bytes that are copied per second.
+     *
+     * @return The current throughput in bytes per second.
+     */
+    public double getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Gets the smoothed number of files that are copied per second.
+     *
+     * @return The current file rate.
+     */
+    public double getFilesPerSecond() {
+        return filesPerSecond;
+    }
+
+    /**
+     * Gets the estimated time that is needed to copy the remaining bytes
+     * with the current throughput.
+     *
+     * @return The remaining time or {@code null} if it cannot be estimated
+     * because the bytes to copy are not counted or nothing is copied yet.
+     */
+    public Duration getRemainingTime() {
+        return remainingTime;
+    }
+
+    /**
+     * Gets the latency histogram.
+     *
+     * @return A new array with {@link #LATENCY_BUCKETS} elements that
+     * contain the number of files in each bucket.
+     */
+    public long[] getLatencyHistogram() {
+        return latencyHistogram.clone();
+    }
+
+    /**
+     * Gets the latency that is not exceeded by the specified part of the
+     * copied files.
+     *
+     * @param percentile The part of the files in percent.
+     * @return The upper bound of the bucket that contains the percentile or
+     * {@code null} if no file is copied yet. The last bucket has no upper
+     * bound; in this case its lower bound is returned.
+     * @throws IllegalArgumentException percentile is less than 0 or greater
+     *                                  than 100.
+     */
+    public Duration getLatencyPercentile(double percentile) {
+        if (percentile < 0 || percentile > 100)
+            throw new IllegalArgumentException("percentile");
+
+        long count = 0;
+
+        for (long n : latencyHistogram)
+            count += n;
+
+        if (count == 0)
+            return null;
+
+        long limit = Math.max(1, (long)Math.ceil(count * percentile / 100));
+
+        for (int i = 0; i < LATENCY_BUCKETS - 1; ++i) {
+            limit -= latencyHistogram[i];
+
+            if (limit <= 0)
+                return Duration.ofMillis(1L << i);
+        }
+
+        return Duration.ofMillis(1L << (LATENCY_BUCKETS - 2));
+    }
+
+    /**
+     * Measures a job and creates snapshots of its statistics. All methods
+     * are thread-safe.
+     */
+    static final class Recorder {
+        private static final long SAMPLE_NANOS = 200_000_000L;
+        private static final double SMOOTHING_SECONDS = 5;
+
+        private final long[] latencyHistogram = new long[LATENCY_BUCKETS];
+        private long startNanos;
+        private long lastSampleNanos;
+        private long lastSampleBytes;
+        private long lastSampleFiles;
+        private long filesCopied;
+        private double bytesPerSecond;
+        private double filesPerSecond;
+        private boolean sampled;
+        private volatile long nextSampleNanos;
+
+        synchronized void reset() {
+            startNanos = System.nanoTime();
+            lastSampleNanos = startNanos;
+            lastSampleBytes = 0;
+            lastSampleFiles = 0;
+            filesCopied = 0;
+            bytesPerSecond = 0;
+            filesPerSecond = 0;
+            sampled = false;
+            nextSampleNanos = startNanos + SAMPLE_NANOS;
+
+            Arrays.fill(latencyHistogram, 0);
+        }
+
+        /**
+         * Updates the rates if the sample interval has passed.
+         *
+         * @param bytesCopied The number of bytes that are copied since the
+         *                    job was started.
+         */
+        void sample(long bytesCopied) {
+            long now = System.nanoTime();
+
+            if (now - nextSampleNanos < 0)
+                return;
+
+            synchronized (this) {
+                if (now - lastSampleNanos < SAMPLE_NANOS)
+                    return;
+
+                double seconds = (now - lastSampleNanos) / 1e9;
+                double byteRate = (bytesCopied - lastSampleBytes) / seconds;
+                double fileRate = (filesCopied - lastSampleFiles) / seconds;
+
+                if (sampled) {
+                    double alpha = 1 - Math.exp(-seconds / SMOOTHING_SECONDS);
+
+                    bytesPerSecond += alpha * (byteRate - bytesPerSecond);
+                    filesPerSecond += alpha * (fileRate - filesPerSecond);
+                } else {
+                    bytesPerSecond = byteRate;
+                    filesPerSecond = fileRate;
+                    sampled = true;
+                }
+
+                lastSampleNanos = now;
+                lastSampleBytes = bytesCopied;
+                lastSampleFiles = filesCopied;
+                nextSampleNanos = now + SAMPLE_NANOS;
+            }
+        }
+
+        synchronized void fileCopied(long latencyNanos) {
+            long millis = latencyNanos / 1_000_000;
+            int bucket = millis == 0 ? 0 : 64 - Long.numberOfLeadingZeros(millis);
+
+            ++latencyHistogram[Math.min(bucket, LATENCY_BUCKETS - 1)];
+            ++filesCopied;
+        }
+
+        /**
+         * Creates a snapshot of the statistics.
+         *
+         * @param bytesCopied    The number of bytes that are copied.
+         * @param bytesRemaining The number of bytes that are still to copy
+         *                       or -1 if they are not known.
+         */
+        synchronized CopyStatistics snapshot(long bytesCopied, long bytesRemaining) {
+            long elapsedNanos = System.nanoTime() - startNanos;
+            double byteRate = bytesPerSecond;
+            double fileRate = filesPerSecond;
+
+            // Until the first sample is taken, the average is the best guess:
+            if (!sampled && elapsedNanos > 0) {
+                byteRate = bytesCopied * 1e9 / elapsedNanos;
+                fileRate = filesCopied * 1e9 / elapsedNanos;
+            }
+
+            Duration remainingTime = null;
+
+            if (bytesRemaining == 0)
+                remainingTime = Duration.ZERO;
+            else if (bytesRemaining > 0 && byteRate > 0)
+                remainingTime = Duration.ofNanos((long)Math.min(Long.MAX_VALUE, bytesRemaining / byteRate * 1e9));
+
+            return new CopyStatistics(Duration.ofNanos(elapsedNanos), bytesCopied, filesCopied,
+                    byteRate, fileRate, remainingTime, latencyHistogram.clone());
+        }
+    }
+}
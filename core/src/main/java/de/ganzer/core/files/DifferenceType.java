@@ -0,0 +1,29 @@
+package de.ganzer.core.files;
+
+/**
+ * Defines the kinds of differences that are found by {@link FileCompare}.
+ * <p>
+ * The differences describe the changes that make the target equal to the
+ * source.
+ */
+public enum DifferenceType {
+    /**
+     * The entry exists only in the source and is missing in the target.
+     */
+    ADDED,
+
+    /**
+     * The entry exists only in the target.
+     */
+    REMOVED,
+
+    /**
+     * The entry is a file in both trees, but the files differ.
+     */
+    CHANGED,
+
+    /**
+     * The entry is a file in one tree and a directory in the other one.
+     */
+    TYPE_CHANGED
+}
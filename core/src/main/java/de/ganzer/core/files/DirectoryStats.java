@@ -0,0 +1,282 @@
+package de.ganzer.core.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * The DirectoryStats class counts the bytes, files and directories of
+ * directory trees.
+ * <p>
+ * The directories of a tree are scanned in parallel. The result of each
+ * directory is cached together with the modification time of the directory,
+ * so that a later scan of the same tree only reads the attributes of the
+ * directories: A directory whose modification time is unchanged is not
+ * listed again and the attributes of its files are not read again.
+ * <p>
+ * The modification time of a directory changes only if an entry is added,
+ * removed or renamed. A file that is changed in place keeps the cached size
+ * until an entry of its directory is added, removed or renamed or until
+ * {@link #clear()} is called. To prevent that a change in the same tick of
+ * the clock is missed, directories that were modified within the last
+ * two seconds are not cached.
+ * <p>
+ * Like {@link FileCopy} and {@link FileDelete}, the scanner follows symbolic
+ * links. All methods of this class are thread-safe.
+ */
+@SuppressWarnings("unused")
+public class DirectoryStats {
+    /**
+     * The Summary class contains the counts of a tree. Instances of this
+     * class are immutable.
+     */
+    public static final class Summary {
+        private final long size;
+        private final long fileCount;
+        private final long directoryCount;
+
+        private Summary(long size, long fileCount, long directoryCount) {
+            this.size = size;
+            this.fileCount = fileCount;
+            this.directoryCount = directoryCount;
+        }
+
+        /**
+         * Gets the sum of the sizes of all files.
+         *
+         * @return The number of bytes.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Gets the number of files.
+         *
+         * @return The number of files.
+         */
+        public long getFileCount() {
+            return fileCount;
+        }
+
+        /**
+         * Gets the number of directories including the scanned one.
+         *
+         * @return The number of directories.
+         */
+        public long getDirectoryCount() {
+            return directoryCount;
+        }
+
+        private Summary add(Summary other) {
+            return new Summary(size + other.size, fileCount + other.fileCount, directoryCount + other.directoryCount);
+        }
+    }
+
+    private static final DirectoryStats DEFAULT = new DirectoryStats();
+    private static final long RACY_MILLIS = 2000;
+
+    /**
+     * The cached content of a single directory.
+     */
+    private static final class Node {
+        final long lastModified;
+        final long size;
+        final long fileCount;
+        final List<String> directories;
+
+        Node(long lastModified, long size, long fileCount, List<String> directories) {
+            this.lastModified = lastModified;
+            this.size = size;
+            this.fileCount = fileCount;
+            this.directories = directories;
+        }
+    }
+
+    private final Map<Path, Node> cache = new ConcurrentHashMap<>();
+    private volatile int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Gets the shared instance.
+     *
+     * @return The instance that is shared by all jobs that do not use their
+     * own instance.
+     */
+    public static DirectoryStats getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * Gets the number of workers that scan the directories of a tree.
+     *
+     * @return The number of workers. The default value is the number of
+     * available processors.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of workers that scan the directories of a tree.
+     *
+     * @param parallelism The number of workers to use.
+     * @throws IllegalArgumentException parallelism is less than 1.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism");
+
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets the number of cached directories.
+     *
+     * @return The number of directories in the cache.
+     */
+    public int getCachedDirectoryCount() {
+        return cache.size();
+    }
+
+    /**
+     * Removes all directories from the cache.
+     */
+    public void clear() {
+        cache.clear();
+    }
+
+    /**
+     * Counts the bytes, files and directories of the specified file or
+     * directory.
+     *
+     * @param root The file or directory to scan.
+     * @return The counts. If root is a file, the summary contains its size
+     * and one file.
+     * @throws NullPointerException root is {@code null}.
+     * @throws IOException          A file or directory cannot be read. The
+     *                              exception is a
+     *                              {@link java.nio.file.FileSystemException}
+     *                              that contains the failed path if it is
+     *                              known.
+     */
+    public Summary scan(File root) throws IOException {
+        Objects.requireNonNull(root, "root");
+
+        Path path = root.toPath().toAbsolutePath().normalize();
+        BasicFileAttributes attributes = readAttributes(path);
+
+        if (!attributes.isDirectory())
+            return new Summary(attributes.size(), 1, 0);
+
+        var pool = new ForkJoinPool(parallelism);
+
+        try {
+            return pool.invoke(new ScanTask(path, attributes));
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private class ScanTask extends RecursiveTask<Summary> {
+        private final Path dir;
+        private final BasicFileAttributes attributes;
+
+        ScanTask(Path dir, BasicFileAttributes attributes) {
+            this.dir = dir;
+            this.attributes = attributes;
+        }
+
+        @Override
+        protected Summary compute() {
+            try {
+                Node node = getNode(dir, attributes);
+                var tasks = new ArrayList<ScanTask>(node.directories.size());
+
+                for (var name : node.directories) {
+                    Path subdir = dir.resolve(name);
+
+                    try {
+                        tasks.add(new ScanTask(subdir, readAttributes(subdir)));
+                    } catch (NoSuchFileException e) {
+                        // The directory is removed since it was cached.
+                    }
+                }
+
+                var summary = new Summary(node.size, node.fileCount, 1);
+
+                for (var task : ForkJoinTask.invokeAll(tasks))
+                    summary = summary.add(task.join());
+
+                return summary;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    private Node getNode(Path dir, BasicFileAttributes attributes) throws IOException {
+        long lastModified = attributes.lastModifiedTime().toMillis();
+        Node node = cache.get(dir);
+
+        if (node != null && node.lastModified == lastModified)
+            return node;
+
+        long size = 0;
+        long fileCount = 0;
+        var directories = new ArrayList<String>();
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(dir)) {
+            for (Path entry : entries) {
+                BasicFileAttributes entryAttributes;
+
+                try {
+                    entryAttributes = readAttributes(entry);
+                } catch (NoSuchFileException e) {
+                    // The entry is removed while it is listed.
+                    continue;
+                }
+
+                if (entryAttributes.isDirectory()) {
+                    directories.add(entry.getFileName().toString());
+                } else {
+                    size += entryAttributes.size();
+                    ++fileCount;
+                }
+            }
+        }
+
+        node = new Node(lastModified, size, fileCount, directories);
+
+        if (System.currentTimeMillis() - lastModified >= RACY_MILLIS)
+            cache.put(dir, node);
+        else
+            cache.remove(dir);
+
+        return node;
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            // A broken link is handled like a file:
+            return Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+        }
+    }
+}
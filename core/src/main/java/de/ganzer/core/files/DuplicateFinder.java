@@ -0,0 +1,942 @@
+package de.ganzer.core.files;
+
+import de.ganzer.core.internals.CoreMessages;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * The DuplicateFinder class finds files with the same content in directory
+ * trees with progress and error information.
+ * <p>
+ * The files are filtered in stages, so that most files are never read
+ * completely:
+ * <ol>
+ *     <li>The trees are scanned and the files are grouped by their size.
+ *     Files with a unique size are dropped without reading them.</li>
+ *     <li>The first and the last {@link #getPartialSize()} bytes of the
+ *     remaining files are hashed. Files with a unique partial hash are
+ *     dropped. If the partial hash covers the whole file, the file is not
+ *     read again.</li>
+ *     <li>The remaining files are hashed completely. Files with the same
+ *     size and the same hash are duplicates.</li>
+ * </ol>
+ * The files are hashed in parallel by {@link #getParallelism()} threads.
+ * Optionally, each duplicate is replaced by a hard link to the first file
+ * of its group, so that the data is stored only once.
+ * <p>
+ * Like {@link FileCopy}, the scanner follows symbolic links. Files that are
+ * already hard links to the same data are reported as duplicates, too, but
+ * are not linked again.
+ */
+@SuppressWarnings("unused")
+public class DuplicateFinder extends FileErrorProvider {
+    /**
+     * The ProgressInfo class encapsulates progress information.
+     */
+    @SuppressWarnings("unused")
+    public static class ProgressInfo {
+        private final DuplicateFinder machine;
+        private DuplicateProgressStatus status;
+        private String path = "";
+        private long filesScanned;
+        private long filesAvail;
+        private long filesHashed;
+        private long bytesHashed;
+        private long filesLinked;
+
+        private ProgressInfo(DuplicateFinder machine) {
+            this.machine = machine;
+        }
+
+        /**
+         * Gets the machine that has generated the progress report.
+         *
+         * @return The machine that has generated the report.
+         */
+        public DuplicateFinder getMachine() {
+            return machine;
+        }
+
+        /**
+         * Gets the status of the progress.
+         *
+         * @return The current status.
+         */
+        public DuplicateProgressStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * Gets the path to the directory that is scanned, to the file that is
+         * hashed or to the duplicate that is replaced.
+         *
+         * @return The current path or an empty string if {@link #getStatus()}
+         * is {@link DuplicateProgressStatus#FINISHED}.
+         */
+        public String getPath() {
+            return path;
+        }
+
+        /**
+         * Gets the number of files that are found by scanning the trees.
+         *
+         * @return The number of scanned files.
+         */
+        public long getFilesScanned() {
+            return filesScanned;
+        }
+
+        /**
+         * Gets the number of files that are hashed by the current stage.
+         *
+         * @return The number of files to hash or 0 if {@link #getStatus()}
+         * is {@link DuplicateProgressStatus#SCANNING}.
+         */
+        public long getFilesAvail() {
+            return filesAvail;
+        }
+
+        /**
+         * Gets the number of files that are hashed by the current stage so
+         * far.
+         *
+         * @return The number of hashed files.
+         */
+        public long getFilesHashed() {
+            return filesHashed;
+        }
+
+        /**
+         * Gets the number of bytes that are read by all stages.
+         *
+         * @return The number of hashed bytes.
+         */
+        public long getBytesHashed() {
+            return bytesHashed;
+        }
+
+        /**
+         * Gets the number of duplicates that are replaced by hard links.
+         *
+         * @return The number of linked files.
+         */
+        public long getFilesLinked() {
+            return filesLinked;
+        }
+    }
+
+    /**
+     * The DuplicateGroup class contains files with the same content.
+     * Instances of this class are immutable.
+     */
+    public static final class DuplicateGroup {
+        private final long size;
+        private final byte[] digest;
+        private final List<File> files;
+        private final List<Candidate> candidates;
+
+        private DuplicateGroup(long size, byte[] digest, List<File> files, List<Candidate> candidates) {
+            this.size = size;
+            this.digest = digest;
+            this.files = files;
+            this.candidates = candidates;
+        }
+
+        /**
+         * Gets the size of each file.
+         *
+         * @return The size in bytes.
+         */
+        public long getSize() {
+            return size;
+        }
+
+        /**
+         * Gets the hash of the content of the files.
+         *
+         * @return The hash that is computed by the algorithm that is set by
+         * {@link DuplicateFinder#setHashAlgorithm}.
+         */
+        public byte[] getDigest() {
+            return digest.clone();
+        }
+
+        /**
+         * Gets the files with the same content.
+         *
+         * @return The unmodifiable list of the files ordered by their paths.
+         * The list contains at least two files.
+         */
+        public List<File> getFiles() {
+            return files;
+        }
+
+        /**
+         * Gets the number of bytes that are stored more than once.
+         *
+         * @return The size multiplied by the number of files minus one.
+         */
+        public long getWastedBytes() {
+            return size * (files.size() - 1);
+        }
+    }
+
+    /**
+     * The interface to a function that is called to report the progress.
+     */
+    public interface ProgressFunction {
+        /**
+         * The called function.
+         * <p>
+         * {@link CopyProgressContinuation#SKIP} skips the directory that is
+         * reported by {@link DuplicateProgressStatus#SCANNING} and keeps the
+         * duplicate that is reported by {@link DuplicateProgressStatus#LINK_FILE}.
+         * It is ignored for all other reports.
+         *
+         * @param info The information about the progress.
+         * @return One of the {@link CopyProgressContinuation} values.
+         */
+        CopyProgressContinuation report(ProgressInfo info);
+    }
+
+    private static final int HASH_BUFFER_SIZE = 1024 * 1024;
+
+    /**
+     * A file that may have duplicates.
+     */
+    private static final class Candidate {
+        final File file;
+        final long size;
+        final long lastModified;
+        byte[] digest;
+
+        Candidate(FileTreeEntry entry) {
+            this.file = entry.getFile();
+            this.size = entry.getSize();
+            this.lastModified = entry.getLastModified();
+        }
+    }
+
+    private final ProgressFunction progressFunction;
+    private final FileCopy.QueryErrorAction queryErrorAction;
+    private final ProgressInfo progress = new ProgressInfo(this);
+    private final Set<FileError> ignoredErrors = EnumSet.noneOf(FileError.class);
+    private final List<DuplicateGroup> duplicates = new ArrayList<>();
+    private BufferPool bufferPool = BufferPool.getDefault();
+    private String hashAlgorithm = "SHA-256";
+    private long minSize = 1;
+    private int partialSize = 4096;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private boolean hardLinking;
+    private PathFilter pathFilter;
+    private boolean ignoreAllErrors;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param progressFunction The function to call to report progress. If this
+     *                         is {@code null}, no progress is reported.
+     */
+    public DuplicateFinder(ProgressFunction progressFunction) {
+        this(progressFunction, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param progressFunction The function to call to report progress. If this
+     *                         is {@code null}, no progress is reported.
+     * @param queryErrorAction The function to call when an error occurred.
+     *                         If this is {@code null}, each error aborts
+     *                         finding. The source is the file or directory
+     *                         that cannot be read or the first file of a
+     *                         group; the target is the duplicate that cannot
+     *                         be replaced by a hard link or {@code null}.
+     */
+    public DuplicateFinder(ProgressFunction progressFunction, FileCopy.QueryErrorAction queryErrorAction) {
+        this.progressFunction = progressFunction;
+        this.queryErrorAction = queryErrorAction;
+    }
+
+    /**
+     * Gets the algorithm that hashes the content of the files.
+     *
+     * @return The name of the algorithm. The default value is "SHA-256".
+     */
+    public String getHashAlgorithm() {
+        return hashAlgorithm;
+    }
+
+    /**
+     * Sets the algorithm that hashes the content of the files.
+     * <p>
+     * Files are duplicates if their hashes are equal. Before a duplicate is
+     * replaced by a hard link, its content is compared byte by byte, so that
+     * a collision of a weak algorithm like "CRC32C" never replaces a
+     * different file.
+     *
+     * @param hashAlgorithm "CRC32C" or the name of an algorithm that is
+     *                      supported by {@link java.security.MessageDigest}
+     *                      like "SHA-256".
+     * @throws NullPointerException     hashAlgorithm is {@code null}.
+     * @throws IllegalArgumentException The algorithm is not available.
+     */
+    public void setHashAlgorithm(String hashAlgorithm) {
+        Objects.requireNonNull(hashAlgorithm, "hashAlgorithm");
+
+        try {
+            FileDigest.create(hashAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("hashAlgorithm", e);
+        }
+
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    /**
+     * Gets the size below which files are ignored.
+     *
+     * @return The minimum size in bytes. The default value is 1, so that
+     * empty files are ignored.
+     */
+    public long getMinSize() {
+        return minSize;
+    }
+
+    /**
+     * Sets the size below which files are ignored.
+     *
+     * @param minSize The minimum size in bytes.
+     * @throws IllegalArgumentException minSize is negative.
+     */
+    public void setMinSize(long minSize) {
+        if (minSize < 0)
+            throw new IllegalArgumentException("minSize");
+
+        this.minSize = minSize;
+    }
+
+    /**
+     * Gets the number of bytes at the start and at the end of the files that
+     * are hashed by the partial hash.
+     *
+     * @return The number of bytes. The default value is 4096.
+     */
+    public int getPartialSize() {
+        return partialSize;
+    }
+
+    /**
+     * Sets the number of bytes at the start and at the end of the files that
+     * are hashed by the partial hash.
+     *
+     * @param partialSize The number of bytes.
+     * @throws IllegalArgumentException partialSize is less than 1 or greater
+     *                                  than 1 MB.
+     */
+    public void setPartialSize(int partialSize) {
+        if (partialSize < 1 || partialSize > HASH_BUFFER_SIZE)
+            throw new IllegalArgumentException("partialSize");
+
+        this.partialSize = partialSize;
+    }
+
+    /**
+     * Gets the number of threads that hash the files.
+     *
+     * @return The number of threads. The default value is the number of
+     * available processors.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of threads that hash the files.
+     *
+     * @param parallelism The number of threads.
+     * @throws IllegalArgumentException parallelism is less than 1.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism");
+
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets a value indicating whether the duplicates are replaced by hard
+     * links.
+     *
+     * @return {@code true} if the duplicates are replaced. The default value
+     * is {@code false}.
+     */
+    public boolean isHardLinking() {
+        return hardLinking;
+    }
+
+    /**
+     * Sets a value indicating whether the duplicates are replaced by hard
+     * links.
+     * <p>
+     * Each file of a group but the first one is replaced by a hard link to
+     * the first one. The link is created as a temporary file with the suffix
+     * {@code ~} that is renamed to the duplicate, so that the duplicate is
+     * never missing; if a file with this name already exists, the duplicate
+     * is not replaced and an error is reported. A file that has changed since
+     * it was scanned or whose content differs from the first file is not
+     * replaced. Hard links can only be created within the same file system.
+     *
+     * @param hardLinking {@code true} to replace the duplicates.
+     */
+    public void setHardLinking(boolean hardLinking) {
+        this.hardLinking = hardLinking;
+    }
+
+    /**
+     * Gets the filter that selects the scanned entries by their path.
+     *
+     * @return The used filter or {@code null} if all entries are scanned.
+     */
+    public PathFilter getPathFilter() {
+        return pathFilter;
+    }
+
+    /**
+     * Sets the filter that selects the scanned entries by their path. The
+     * paths are relative to the scanned roots; directories that are not
+     * accepted are not scanned.
+     *
+     * @param pathFilter The filter to use or {@code null} to scan all
+     *                   entries.
+     */
+    public void setPathFilter(PathFilter pathFilter) {
+        this.pathFilter = pathFilter;
+    }
+
+    /**
+     * Gets the pool that provides the buffers for hashing.
+     *
+     * @return The used pool. The default value is {@link BufferPool#getDefault()}.
+     */
+    public BufferPool getBufferPool() {
+        return bufferPool;
+    }
+
+    /**
+     * Sets the pool that provides the buffers for hashing.
+     *
+     * @param bufferPool The pool to use.
+     * @throws NullPointerException bufferPool is {@code null}.
+     */
+    public void setBufferPool(BufferPool bufferPool) {
+        this.bufferPool = Objects.requireNonNull(bufferPool, "bufferPool");
+    }
+
+    /**
+     * Gets the duplicates that are found by the last run.
+     *
+     * @return The unmodifiable list of the groups of duplicates ordered by
+     * their wasted bytes, the largest first.
+     */
+    public List<DuplicateGroup> getDuplicates() {
+        return Collections.unmodifiableList(duplicates);
+    }
+
+    /**
+     * Finds the duplicates in the specified file or directory.
+     *
+     * @param root The absolute or relative path to the file or directory to
+     *             scan.
+     * @return {@code true} on success; otherwise, {@code false} is returned.
+     * Use {@link #getDuplicates()} to get the result.
+     *
+     * @throws NullPointerException root is {@code null}.
+     */
+    public boolean start(String root) {
+        Objects.requireNonNull(root, "root");
+        return start(Collections.singletonList(root));
+    }
+
+    /**
+     * Finds the duplicates in the specified files or directories.
+     *
+     * @param roots The absolute or relative paths to the files or directories
+     *              to scan. A file that is contained in more than one root
+     *              is counted once.
+     * @return {@code true} on success; otherwise, {@code false} is returned.
+     * Use {@link #getDuplicates()} to get the result.
+     *
+     * @throws NullPointerException roots is {@code null}.
+     */
+    public boolean start(List<String> roots) {
+        Objects.requireNonNull(roots, "roots");
+
+        clearError();
+
+        ignoreAllErrors = false;
+        ignoredErrors.clear();
+        duplicates.clear();
+        progress.filesScanned = 0;
+        progress.filesAvail = 0;
+        progress.filesHashed = 0;
+        progress.bytesHashed = 0;
+        progress.filesLinked = 0;
+
+        ExecutorService pool = null;
+
+        try {
+            var bySize = new HashMap<Long, List<Candidate>>();
+            var paths = new HashSet<String>();
+
+            for (String root : roots)
+                scanRoot(new File(root).getAbsoluteFile(), bySize, paths);
+
+            pool = Executors.newFixedThreadPool(parallelism);
+
+            // The partial hash of small files covers the whole content:
+            List<List<Candidate>> groups = refine(pool, getGroups(bySize.values()), false);
+            var complete = new ArrayList<List<Candidate>>();
+            var partial = new ArrayList<List<Candidate>>();
+
+            for (var group : groups)
+                (group.get(0).size <= 2L * partialSize ? complete : partial).add(group);
+
+            complete.addAll(refine(pool, partial, true));
+
+            for (var group : complete)
+                duplicates.add(createGroup(group));
+
+            duplicates.sort(Comparator.comparingLong(DuplicateGroup::getWastedBytes).reversed()
+                    .thenComparing(group -> group.getFiles().get(0).getPath()));
+
+            if (hardLinking) {
+                for (var group : duplicates)
+                    linkGroup(group);
+            }
+        } catch (ErrorInfo info) {
+            setErrorInfo(info.getError(), info.getErrorDescription());
+        } finally {
+            if (pool != null)
+                pool.shutdownNow();
+        }
+
+        reportFinished();
+
+        return getError() == FileError.NONE;
+    }
+
+    private static class ErrorInfo extends RuntimeException {
+        private final boolean queryHandling;
+        private final FileError error;
+
+        public ErrorInfo(FileError error, String errorDescription, boolean queryHandling) {
+            super(errorDescription);
+
+            this.queryHandling = queryHandling;
+            this.error = error;
+        }
+
+        public boolean doNotQuery() {
+            return !queryHandling;
+        }
+
+        public FileError getError() {
+            return error;
+        }
+
+        public String getErrorDescription() {
+            return getMessage();
+        }
+    }
+
+    private void scanRoot(File root, Map<Long, List<Candidate>> bySize, Set<String> paths) throws ErrorInfo {
+        while (true) {
+            try {
+                if (!Files.exists(root.toPath(), LinkOption.NOFOLLOW_LINKS))
+                    throw new ErrorInfo(FileError.SOURCE_NOT_EXIST, String.format(CoreMessages.get("sourceFileDoesNotExist"), root.getPath()), true);
+
+                scanEntry(FileTreeEntry.of(root), bySize, paths);
+                return;
+            } catch (AccessDeniedException | SecurityException e) {
+                if (!handleError(new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), root.getPath()), true), root, null))
+                    return;
+            } catch (IOException e) {
+                if (!handleError(new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), root.getPath()), true), root, null))
+                    return;
+            } catch (ErrorInfo info) {
+                if (!handleError(info, root, null))
+                    return;
+            }
+        }
+    }
+
+    private void scanEntry(FileTreeEntry entry, Map<Long, List<Candidate>> bySize, Set<String> paths) throws ErrorInfo {
+        if (!entry.isDirectory()) {
+            if (entry.getSize() >= minSize && paths.add(entry.getPath())) {
+                ++progress.filesScanned;
+                bySize.computeIfAbsent(entry.getSize(), size -> new ArrayList<>()).add(new Candidate(entry));
+            }
+
+            return;
+        }
+
+        progress.status = DuplicateProgressStatus.SCANNING;
+        progress.path = entry.getPath();
+
+        if (report() == CopyProgressContinuation.SKIP)
+            return;
+
+        List<FileTreeEntry> entries = listEntries(entry);
+
+        if (entries == null)
+            return;
+
+        for (var child : entries)
+            scanEntry(child, bySize, paths);
+    }
+
+    /**
+     * @return The entries or {@code null} if the error is ignored.
+     */
+    private List<FileTreeEntry> listEntries(FileTreeEntry dir) throws ErrorInfo {
+        while (true) {
+            try {
+                return dir.getEntries(null, pathFilter);
+            } catch (AccessDeniedException | SecurityException e) {
+                if (!handleError(new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), dir.getPath()), true), dir.getFile(), null))
+                    return null;
+            } catch (IOException e) {
+                if (!handleError(new ErrorInfo(FileError.READ_DIR, String.format(CoreMessages.get("cannotReadDir"), dir.getPath()), true), dir.getFile(), null))
+                    return null;
+            }
+        }
+    }
+
+    private static List<List<Candidate>> getGroups(Iterable<List<Candidate>> candidates) {
+        var groups = new ArrayList<List<Candidate>>();
+
+        for (var group : candidates) {
+            if (group.size() > 1)
+                groups.add(group);
+        }
+
+        return groups;
+    }
+
+    /**
+     * Hashes the files of the groups in parallel and splits each group by
+     * the hashes.
+     *
+     * @return The groups with more than one file.
+     */
+    private List<List<Candidate>> refine(ExecutorService pool, List<List<Candidate>> groups, boolean full) throws ErrorInfo {
+        CompletionService<Candidate> hashes = new ExecutorCompletionService<>(pool);
+        var futures = new HashMap<Future<Candidate>, Candidate>();
+
+        progress.status = full ? DuplicateProgressStatus.FULL_HASH : DuplicateProgressStatus.PARTIAL_HASH;
+        progress.filesAvail = 0;
+        progress.filesHashed = 0;
+
+        for (var group : groups) {
+            for (var candidate : group) {
+                futures.put(hashes.submit(() -> hash(candidate, full)), candidate);
+                ++progress.filesAvail;
+            }
+        }
+
+        var hashed = new HashSet<Candidate>();
+
+        while (!futures.isEmpty()) {
+            Future<Candidate> future;
+
+            try {
+                future = hashes.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ErrorInfo(FileError.CANCELED, CoreMessages.get("operationCanceled"), false);
+            }
+
+            Candidate candidate = futures.remove(future);
+
+            try {
+                future.get();
+                hashed.add(candidate);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ErrorInfo(FileError.CANCELED, CoreMessages.get("operationCanceled"), false);
+            } catch (ExecutionException e) {
+                var info = e.getCause() instanceof AccessDeniedException || e.getCause() instanceof SecurityException
+                        ? new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), candidate.file.getPath()), true)
+                        : new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), candidate.file.getPath()), true);
+
+                // A file whose error is ignored is dropped:
+                if (handleError(info, candidate.file, null))
+                    futures.put(hashes.submit(() -> hash(candidate, full)), candidate);
+
+                continue;
+            }
+
+            ++progress.filesHashed;
+            progress.path = candidate.file.getPath();
+            report();
+        }
+
+        var result = new ArrayList<List<Candidate>>();
+
+        for (var group : groups) {
+            var byDigest = new LinkedHashMap<ByteBuffer, List<Candidate>>();
+
+            for (var candidate : group) {
+                if (hashed.contains(candidate))
+                    byDigest.computeIfAbsent(ByteBuffer.wrap(candidate.digest), digest -> new ArrayList<>()).add(candidate);
+            }
+
+            result.addAll(getGroups(byDigest.values()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Hashes the file of the candidate. This is called by the threads of the
+     * pool.
+     */
+    private Candidate hash(Candidate candidate, boolean full) throws IOException {
+        FileDigest digest;
+
+        try {
+            digest = FileDigest.create(hashAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            // The algorithm is verified when it is set:
+            throw new IllegalStateException(e);
+        }
+
+        ByteBuffer buffer = bufferPool.acquire(HASH_BUFFER_SIZE);
+        long bytesRead = 0;
+
+        try (FileChannel in = FileChannel.open(candidate.file.toPath(), StandardOpenOption.READ)) {
+            if (full) {
+                bytesRead += hashRange(in, buffer, digest, 0, candidate.size);
+            } else {
+                // The head and the tail do not overlap:
+                long head = Math.min(partialSize, candidate.size);
+                long tail = Math.max(head, candidate.size - partialSize);
+
+                bytesRead += hashRange(in, buffer, digest, 0, head);
+                bytesRead += hashRange(in, buffer, digest, tail, candidate.size);
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+
+        candidate.digest = digest.digest();
+
+        synchronized (progress) {
+            progress.bytesHashed += bytesRead;
+        }
+
+        return candidate;
+    }
+
+    private static long hashRange(FileChannel in, ByteBuffer buffer, FileDigest digest, long start, long end) throws IOException {
+        long position = start;
+
+        while (position < end) {
+            buffer.clear().limit((int)Math.min(buffer.capacity(), end - position));
+
+            int bytesRead = in.read(buffer, position);
+
+            // A file that is truncated meanwhile gets a different hash:
+            if (bytesRead == -1)
+                break;
+
+            digest.update(buffer.flip());
+            position += bytesRead;
+        }
+
+        return position - start;
+    }
+
+    private static DuplicateGroup createGroup(List<Candidate> candidates) {
+        var sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparing(candidate -> candidate.file.getPath()));
+
+        var files = new ArrayList<File>(sorted.size());
+
+        for (var candidate : sorted)
+            files.add(candidate.file);
+
+        Candidate first = sorted.get(0);
+
+        return new DuplicateGroup(first.size, first.digest, Collections.unmodifiableList(files), sorted);
+    }
+
+    private void linkGroup(DuplicateGroup group) throws ErrorInfo {
+        Candidate original = group.candidates.get(0);
+
+        for (int i = 1; i < group.candidates.size(); ++i) {
+            Candidate duplicate = group.candidates.get(i);
+
+            progress.status = DuplicateProgressStatus.LINK_FILE;
+            progress.path = duplicate.file.getPath();
+
+            if (report() == CopyProgressContinuation.SKIP)
+                continue;
+
+            while (true) {
+                try {
+                    if (link(original, duplicate))
+                        ++progress.filesLinked;
+
+                    break;
+                } catch (ErrorInfo info) {
+                    if (!handleError(info, original.file, duplicate.file))
+                        break;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return {@code false} if the duplicate is not replaced because it is
+     * already linked, because a file has changed or because the content
+     * differs despite the equal hashes.
+     */
+    private boolean link(Candidate original, Candidate duplicate) throws ErrorInfo {
+        Path originalPath = original.file.toPath();
+        Path duplicatePath = duplicate.file.toPath();
+        Path linkPath = Path.of(duplicate.file.getPath() + "~");
+        boolean linkCreated = false;
+
+        try {
+            if (isChanged(original) || isChanged(duplicate) || Files.isSameFile(originalPath, duplicatePath))
+                return false;
+
+            // A hash collision must not replace a different file:
+            if (Files.mismatch(originalPath, duplicatePath) != -1)
+                return false;
+
+            // An existing file with the temporary name is not overwritten:
+            Files.createLink(linkPath, originalPath);
+            linkCreated = true;
+
+            Files.move(linkPath, duplicatePath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            return true;
+        } catch (AccessDeniedException | SecurityException e) {
+            if (linkCreated)
+                deleteLink(linkPath);
+
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), duplicate.file.getPath()), true);
+        } catch (IOException | UnsupportedOperationException e) {
+            if (linkCreated)
+                deleteLink(linkPath);
+
+            throw new ErrorInfo(FileError.CREATE_FILE, String.format(CoreMessages.get("cannotLinkFile"), duplicate.file.getPath()), true);
+        }
+    }
+
+    private static boolean isChanged(Candidate candidate) {
+        return candidate.file.length() != candidate.size || candidate.file.lastModified() != candidate.lastModified;
+    }
+
+    private static void deleteLink(Path linkPath) {
+        try {
+            Files.deleteIfExists(linkPath);
+        } catch (IOException e) {
+            // The temporary link is left.
+        }
+    }
+
+    /**
+     * @return {@code true} if the error shall be retried and {@code false} if
+     * it shall be ignored.
+     */
+    private boolean handleError(ErrorInfo info, File source, File target) throws ErrorInfo {
+        if (queryErrorAction == null || info.doNotQuery())
+            throw info;
+
+        if (ignoreAllErrors || ignoredErrors.contains(info.getError()))
+            return false;
+
+        switch (queryErrorAction.query(info.getError(), info.getErrorDescription(), source, target)) {
+            case RETRY:
+                return true;
+
+            case IGNORE:
+                return false;
+
+            case IGNORE_ALL_THIS:
+                ignoredErrors.add(info.getError());
+                return false;
+
+            case IGNORE_ALL:
+                ignoreAllErrors = true;
+                return false;
+
+            default:
+                throw new ErrorInfo(info.getError(), info.getErrorDescription(), false);
+        }
+    }
+
+    private CopyProgressContinuation report() throws ErrorInfo {
+        if (progressFunction == null)
+            return CopyProgressContinuation.CONTINUE;
+
+        CopyProgressContinuation result;
+
+        // The hashing threads update the hashed bytes:
+        synchronized (progress) {
+            result = progressFunction.report(progress);
+        }
+
+        if (result == CopyProgressContinuation.CANCEL)
+            cancel();
+
+        return result;
+    }
+
+    private void reportFinished() {
+        progress.status = DuplicateProgressStatus.FINISHED;
+        progress.path = "";
+
+        // The result is ignored because there is nothing left to cancel:
+        if (progressFunction != null) {
+            synchronized (progress) {
+                progressFunction.report(progress);
+            }
+        }
+    }
+
+    private void cancel() throws ErrorInfo {
+        throw new ErrorInfo(FileError.CANCELED, CoreMessages.get("operationCanceled"), false);
+    }
+}
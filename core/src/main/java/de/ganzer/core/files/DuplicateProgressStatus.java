@@ -0,0 +1,39 @@
+package de.ganzer.core.files;
+
+/**
+ * Defines the status of the progress when finding duplicate files with
+ * {@link DuplicateFinder}.
+ */
+public enum DuplicateProgressStatus {
+    /**
+     * Reports that a directory is going to be scanned. The progress function
+     * is called once for each directory.
+     */
+    SCANNING,
+
+    /**
+     * Reports that the head and the tail of a file are hashed. The progress
+     * function is called once for each file that has the same size as
+     * another file.
+     */
+    PARTIAL_HASH,
+
+    /**
+     * Reports that a file is completely hashed. The progress function is
+     * called once for each file whose partial hash is the same as the one of
+     * another file.
+     */
+    FULL_HASH,
+
+    /**
+     * Reports that a duplicate is going to be replaced by a hard link. The
+     * progress function is called once for each replaced file.
+     */
+    LINK_FILE,
+
+    /**
+     * This status reports that all duplicates are found or that the
+     * operation is aborted either by the user or by an error.
+     */
+    FINISHED
+}
@@ -0,0 +1,36 @@
+package de.ganzer.core.files;
+
+/**
+ * Defines how {@link FileCopy} forces the copied files to the storage
+ * device.
+ * <p>
+ * With a policy other than {@link #NONE}, each file is written into a
+ * temporary file with the suffix {@code ~} that is renamed to the target
+ * only after its data is forced, so that a crash never leaves a partial
+ * file under the name of the target. The directories that contain renamed
+ * files or created directories are forced at the latest when the directory
+ * is finished, so that the renames survive a crash, too. Forcing a directory
+ * is not supported by all platforms; if it fails, it is skipped.
+ */
+public enum DurabilityPolicy {
+    /**
+     * The files are not forced. The data is written to the storage device
+     * whenever the operating system decides to do so.
+     */
+    NONE,
+
+    /**
+     * Each file is forced before it is renamed. This is the safest and
+     * slowest policy.
+     */
+    PER_FILE,
+
+    /**
+     * The copied files are kept as temporary files and forced together
+     * whenever the size of the kept files reaches the batch size (see
+     * {@link FileCopy#setSyncBatchSize}), when a directory is finished and
+     * when the job ends. After the files are forced, they are renamed and
+     * their directories are forced.
+     */
+    BATCHED
+}
@@ -0,0 +1,801 @@
+package de.ganzer.core.files;
+
+import de.ganzer.core.internals.CoreMessages;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
+
+/**
+ * The FileCompare class compares files and directory trees with progress
+ * and error information.
+ * <p>
+ * The result of a comparison is a list of {@link FileDifference} objects
+ * that describe the changes that make the target equal to the source.
+ * Entries that exist in only one tree are not descended into. Files with
+ * different sizes are changed without reading them; files with the same
+ * size are compared by their modification time or, if
+ * {@link #isContentCompared()} is {@code true}, by their content. The
+ * content of files that are not smaller than {@link #getParallelThreshold()}
+ * is mapped into memory in chunks that are compared in parallel; smaller
+ * files are compared by {@link Files#mismatch}. The comparison of a file
+ * stops at the first different byte.
+ * <p>
+ * Like {@link FileCopy}, the comparison follows symbolic links.
+ */
+@SuppressWarnings("unused")
+public class FileCompare extends FileErrorProvider {
+    /**
+     * The ProgressInfo class encapsulates progress information.
+     */
+    @SuppressWarnings("unused")
+    public static class ProgressInfo {
+        private final FileCompare machine;
+        private CompareProgressStatus status;
+        private String sourcePath = "";
+        private String targetPath = "";
+        private long fileBytesAvail;
+        private long fileBytesCompared;
+        private long entriesCompared;
+        private FileDifference difference;
+
+        private ProgressInfo(FileCompare machine) {
+            this.machine = machine;
+        }
+
+        /**
+         * Gets the machine that has generated the progress report.
+         *
+         * @return The machine that has generated the report.
+         */
+        public FileCompare getMachine() {
+            return machine;
+        }
+
+        /**
+         * Gets the status of the progress.
+         *
+         * @return The current status.
+         */
+        public CompareProgressStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * Gets the path to the file or directory in the source tree that is
+         * currently compared.
+         *
+         * @return The path to the current source or an empty string if
+         * {@link #getStatus()} is {@link CompareProgressStatus#FINISHED}.
+         */
+        public String getSourcePath() {
+            return sourcePath;
+        }
+
+        /**
+         * Gets the path to the file or directory in the target tree that is
+         * currently compared.
+         *
+         * @return The path to the current target or an empty string if
+         * {@link #getStatus()} is {@link CompareProgressStatus#FINISHED}.
+         */
+        public String getTargetPath() {
+            return targetPath;
+        }
+
+        /**
+         * Gets the number of bytes of the current file.
+         *
+         * @return The size of the current file or 0 if no file is compared.
+         */
+        public long getFileBytesAvail() {
+            return fileBytesAvail;
+        }
+
+        /**
+         * Gets the number of bytes of the current file that are compared.
+         *
+         * @return The compared bytes of the current file.
+         */
+        public long getFileBytesCompared() {
+            return fileBytesCompared;
+        }
+
+        /**
+         * Gets the number of entries that are compared. This counts each
+         * file and directory that exists in both trees.
+         *
+         * @return The number of compared entries.
+         */
+        public long getEntriesCompared() {
+            return entriesCompared;
+        }
+
+        /**
+         * Gets the found difference.
+         *
+         * @return The difference if {@link #getStatus()} is
+         * {@link CompareProgressStatus#DIFFERENCE}; otherwise, {@code null}
+         * is returned.
+         */
+        public FileDifference getDifference() {
+            return difference;
+        }
+    }
+
+    /**
+     * The interface to a function that is called to report the progress.
+     */
+    public interface ProgressFunction {
+        /**
+         * The called function.
+         * <p>
+         * {@link CopyProgressContinuation#SKIP} skips the entry that is
+         * reported by {@link CompareProgressStatus#COMPARE_DIRECTORY} or
+         * {@link CompareProgressStatus#COMPARE_FILE}; skipped entries are
+         * handled as equal. It is ignored for all other reports.
+         *
+         * @param info The information about the progress.
+         * @return One of the {@link CopyProgressContinuation} values.
+         */
+        CopyProgressContinuation report(ProgressInfo info);
+    }
+
+    private static final int DEFAULT_PARALLELISM = Math.min(4, Runtime.getRuntime().availableProcessors());
+    private static final long DEFAULT_PARALLEL_THRESHOLD = 64 * 1024 * 1024;
+    private static final long DEFAULT_CHUNK_SIZE = 16 * 1024 * 1024;
+    private static final ExecutorService CHUNK_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        var thread = new Thread(runnable, "FileCompare chunk");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    private final ProgressFunction progressFunction;
+    private final FileCopy.QueryErrorAction queryErrorAction;
+    private final ProgressInfo progress = new ProgressInfo(this);
+    private final Set<FileError> ignoredErrors = EnumSet.noneOf(FileError.class);
+    private final List<FileDifference> differences = new ArrayList<>();
+    private boolean contentCompared = true;
+    private long parallelThreshold = DEFAULT_PARALLEL_THRESHOLD;
+    private long chunkSize = DEFAULT_CHUNK_SIZE;
+    private int parallelism = DEFAULT_PARALLELISM;
+    private PathFilter pathFilter;
+    private boolean ignoreAllErrors;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param progressFunction The function to call to report progress. If this
+     *                         is {@code null}, no progress is reported.
+     */
+    public FileCompare(ProgressFunction progressFunction) {
+        this(progressFunction, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param progressFunction The function to call to report progress. If this
+     *                         is {@code null}, no progress is reported.
+     * @param queryErrorAction The function to call when an error occurred.
+     *                         If this is {@code null}, each error aborts
+     *                         comparing.
+     */
+    public FileCompare(ProgressFunction progressFunction, FileCopy.QueryErrorAction queryErrorAction) {
+        this.progressFunction = progressFunction;
+        this.queryErrorAction = queryErrorAction;
+    }
+
+    /**
+     * Gets a value indicating whether files with the same size are compared
+     * by their content.
+     *
+     * @return {@code true} if the content is compared; {@code false} if the
+     * modification time is compared. The default value is {@code true}.
+     */
+    public boolean isContentCompared() {
+        return contentCompared;
+    }
+
+    /**
+     * Sets a value indicating whether files with the same size are compared
+     * by their content.
+     *
+     * @param contentCompared {@code true} to compare the content;
+     *                        {@code false} to compare the modification time.
+     */
+    public void setContentCompared(boolean contentCompared) {
+        this.contentCompared = contentCompared;
+    }
+
+    /**
+     * Gets the size from which the content of files is compared in parallel
+     * chunks.
+     *
+     * @return The threshold in bytes. The default value is 64 MB.
+     */
+    public long getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Sets the size from which the content of files is compared in parallel
+     * chunks.
+     *
+     * @param parallelThreshold The threshold in bytes.
+     * @throws IllegalArgumentException parallelThreshold is less than 1.
+     */
+    public void setParallelThreshold(long parallelThreshold) {
+        if (parallelThreshold < 1)
+            throw new IllegalArgumentException("parallelThreshold");
+
+        this.parallelThreshold = parallelThreshold;
+    }
+
+    /**
+     * Gets the size of the chunks that are mapped into memory and compared
+     * in parallel.
+     *
+     * @return The size in bytes. The default value is 16 MB.
+     */
+    public long getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Sets the size of the chunks that are mapped into memory and compared
+     * in parallel.
+     *
+     * @param chunkSize The size in bytes.
+     * @throws IllegalArgumentException chunkSize is less than 1 or greater
+     *                                  than 1 GB.
+     */
+    public void setChunkSize(long chunkSize) {
+        if (chunkSize < 1 || chunkSize > 1 << 30)
+            throw new IllegalArgumentException("chunkSize");
+
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Gets the number of chunks of a file that are compared at the same
+     * time.
+     *
+     * @return The number of threads. The default value is the number of
+     * available processors, but at most 4.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of chunks of a file that are compared at the same
+     * time.
+     *
+     * @param parallelism The number of threads.
+     * @throws IllegalArgumentException parallelism is less than 1.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism");
+
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets the filter that selects the compared entries by their path.
+     *
+     * @return The used filter or {@code null} if all entries are compared.
+     */
+    public PathFilter getPathFilter() {
+        return pathFilter;
+    }
+
+    /**
+     * Sets the filter that selects the compared entries by their path. The
+     * paths are relative to the compared roots. Entries that are not
+     * accepted are ignored in both trees.
+     *
+     * @param pathFilter The filter to use or {@code null} to compare all
+     *                   entries.
+     */
+    public void setPathFilter(PathFilter pathFilter) {
+        this.pathFilter = pathFilter;
+    }
+
+    /**
+     * Gets the differences that are found by the last comparison.
+     *
+     * @return The unmodifiable list of the differences in the order in which
+     * they are found. The entries of each directory are compared in the
+     * order of their names.
+     */
+    public List<FileDifference> getDifferences() {
+        return Collections.unmodifiableList(differences);
+    }
+
+    /**
+     * Compares the specified files or directories.
+     * <p>
+     * If source and target are both directories, their trees are compared.
+     *
+     * @param source The absolute or relative path to the source file or
+     *               directory.
+     * @param target The absolute or relative path to the target file or
+     *               directory. If this does not exist, the source is reported
+     *               as {@link DifferenceType#ADDED}.
+     * @return {@code true} if the comparison finished without an error;
+     * otherwise, {@code false} is returned. Use {@link #getDifferences()} to
+     * get the result.
+     *
+     * @throws NullPointerException source or target is {@code null}.
+     */
+    public boolean start(String source, String target) {
+        Objects.requireNonNull(source, "source");
+        Objects.requireNonNull(target, "target");
+
+        var sourceFile = new File(source).getAbsoluteFile();
+        var targetFile = new File(target).getAbsoluteFile();
+
+        clearError();
+
+        ignoreAllErrors = false;
+        ignoredErrors.clear();
+        differences.clear();
+        progress.entriesCompared = 0;
+
+        try {
+            FileTreeEntry sourceEntry = readRoot(sourceFile, targetFile, true);
+
+            if (sourceEntry != null) {
+                FileTreeEntry targetEntry = readRoot(sourceFile, targetFile, false);
+
+                if (targetEntry == null)
+                    addDifference(DifferenceType.ADDED, "", sourceFile, targetFile);
+                else
+                    compareEntry(sourceEntry, targetEntry, targetFile);
+            }
+        } catch (ErrorInfo info) {
+            setErrorInfo(info.getError(), info.getErrorDescription());
+        }
+
+        reportFinished();
+
+        return getError() == FileError.NONE;
+    }
+
+    private static class ErrorInfo extends RuntimeException {
+        private final boolean queryHandling;
+        private final FileError error;
+
+        public ErrorInfo(FileError error, String errorDescription, boolean queryHandling) {
+            super(errorDescription);
+
+            this.queryHandling = queryHandling;
+            this.error = error;
+        }
+
+        public boolean doNotQuery() {
+            return !queryHandling;
+        }
+
+        public FileError getError() {
+            return error;
+        }
+
+        public String getErrorDescription() {
+            return getMessage();
+        }
+    }
+
+    /**
+     * @return The entry or {@code null} if the target does not exist or if
+     * the error is ignored.
+     */
+    private FileTreeEntry readRoot(File source, File target, boolean readSource) throws ErrorInfo {
+        File file = readSource ? source : target;
+
+        while (true) {
+            try {
+                if (!Files.exists(file.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+                    if (readSource)
+                        throw new ErrorInfo(FileError.SOURCE_NOT_EXIST, String.format(CoreMessages.get("sourceFileDoesNotExist"), file.getPath()), true);
+
+                    return null;
+                }
+
+                return FileTreeEntry.of(file);
+            } catch (AccessDeniedException | SecurityException e) {
+                if (!handleError(new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), file.getPath()), true), source, target))
+                    return null;
+            } catch (IOException e) {
+                if (!handleError(new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), file.getPath()), true), source, target))
+                    return null;
+            } catch (ErrorInfo info) {
+                if (!handleError(info, source, target))
+                    return null;
+            }
+        }
+    }
+
+    private void compareEntry(FileTreeEntry source, FileTreeEntry target, File targetFile) throws ErrorInfo {
+        String relativePath = source.getRelativePath();
+
+        if (source.isDirectory() != target.isDirectory()) {
+            addDifference(DifferenceType.TYPE_CHANGED, relativePath, source.getFile(), targetFile);
+            return;
+        }
+
+        var status = source.isDirectory() ? CompareProgressStatus.COMPARE_DIRECTORY : CompareProgressStatus.COMPARE_FILE;
+
+        if (!reportEntry(status, source.getFile(), targetFile))
+            return;
+
+        ++progress.entriesCompared;
+
+        if (source.isDirectory())
+            compareDirectory(source, target, targetFile);
+        else
+            compareFile(source, target, targetFile);
+    }
+
+    private void compareDirectory(FileTreeEntry source, FileTreeEntry target, File targetFile) throws ErrorInfo {
+        Map<String, FileTreeEntry> sourceEntries = listEntries(source, source.getFile(), targetFile);
+        Map<String, FileTreeEntry> targetEntries = listEntries(target, source.getFile(), targetFile);
+
+        if (sourceEntries == null || targetEntries == null)
+            return;
+
+        var names = new TreeSet<>(sourceEntries.keySet());
+        names.addAll(targetEntries.keySet());
+
+        for (String name : names) {
+            FileTreeEntry sourceEntry = sourceEntries.get(name);
+            FileTreeEntry targetEntry = targetEntries.get(name);
+            var sourceFile = new File(source.getFile(), name);
+            var entryTarget = new File(targetFile, name);
+
+            if (targetEntry == null)
+                addDifference(DifferenceType.ADDED, sourceEntry.getRelativePath(), sourceFile, entryTarget);
+            else if (sourceEntry == null)
+                addDifference(DifferenceType.REMOVED, targetEntry.getRelativePath(), sourceFile, entryTarget);
+            else
+                compareEntry(sourceEntry, targetEntry, entryTarget);
+        }
+    }
+
+    /**
+     * @return The entries by their names or {@code null} if the error is
+     * ignored.
+     */
+    private Map<String, FileTreeEntry> listEntries(FileTreeEntry dir, File source, File target) throws ErrorInfo {
+        while (true) {
+            try {
+                var entries = new TreeMap<String, FileTreeEntry>();
+
+                for (var entry : dir.getEntries(null, pathFilter))
+                    entries.put(entry.getFile().getName(), entry);
+
+                return entries;
+            } catch (AccessDeniedException | SecurityException e) {
+                if (!handleError(new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), dir.getPath()), true), source, target))
+                    return null;
+            } catch (IOException e) {
+                if (!handleError(new ErrorInfo(FileError.READ_DIR, String.format(CoreMessages.get("cannotReadDir"), dir.getPath()), true), source, target))
+                    return null;
+            }
+        }
+    }
+
+    private void compareFile(FileTreeEntry source, FileTreeEntry target, File targetFile) throws ErrorInfo {
+        if (!hasSameAttributes(source.getSize(), source.getLastModified(), target.getSize(), target.getLastModified(), contentCompared)) {
+            addDifference(DifferenceType.CHANGED, source.getRelativePath(), source.getFile(), targetFile);
+            return;
+        }
+
+        if (!contentCompared)
+            return;
+
+        while (true) {
+            try {
+                if (!compareContent(source.getFile().toPath(), targetFile.toPath(), source.getSize()))
+                    addDifference(DifferenceType.CHANGED, source.getRelativePath(), source.getFile(), targetFile);
+
+                return;
+            } catch (AccessDeniedException | SecurityException e) {
+                if (!handleError(new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), getFailedPath(e, source.getFile())), true), source.getFile(), targetFile))
+                    return;
+            } catch (IOException e) {
+                if (!handleError(new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), getFailedPath(e, source.getFile())), true), source.getFile(), targetFile))
+                    return;
+            }
+        }
+    }
+
+    private static String getFailedPath(Exception e, File source) {
+        return e instanceof FileSystemException && ((FileSystemException)e).getFile() != null
+                ? ((FileSystemException)e).getFile()
+                : source.getPath();
+    }
+
+    private boolean compareContent(Path source, Path target, long size) throws IOException {
+        progress.fileBytesAvail = size;
+        progress.fileBytesCompared = 0;
+
+        try {
+            if (size < parallelThreshold)
+                return Files.mismatch(source, target) == -1;
+
+            return compareChunks(source, target, size, chunkSize, parallelism, this::reportComparing);
+        } finally {
+            progress.fileBytesAvail = 0;
+            progress.fileBytesCompared = 0;
+        }
+    }
+
+    /**
+     * Determines whether the attributes of two files allow them to be
+     * equal. This is the rule that is shared by the comparison and by the
+     * synchronization of {@link FileCopy}.
+     *
+     * @param contentCompared {@code true} if the content is compared
+     *                        afterwards, so that the modification times
+     *                        are not compared.
+     * @return {@code false} if the files differ.
+     */
+    static boolean hasSameAttributes(long sourceSize, long sourceLastModified, long targetSize, long targetLastModified, boolean contentCompared) {
+        return sourceSize == targetSize && (contentCompared || sourceLastModified == targetLastModified);
+    }
+
+    /**
+     * Determines whether two files with the specified size have the same
+     * content by the default settings of this class.
+     *
+     * @return {@code true} if the content of the files is the same.
+     * @throws IOException A file cannot be read.
+     */
+    static boolean isSameContent(Path source, Path target, long size) throws IOException {
+        return size < DEFAULT_PARALLEL_THRESHOLD
+                ? Files.mismatch(source, target) == -1
+                : compareChunks(source, target, size, DEFAULT_CHUNK_SIZE, DEFAULT_PARALLELISM, null);
+    }
+
+    /**
+     * Compares the chunks of two files. Each worker takes the next chunk
+     * that is not compared yet until all chunks are compared, a difference
+     * is found, an error occurs or the comparer is stopped.
+     */
+    private static final class ChunkComparer implements Runnable {
+        private final FileChannel source;
+        private final FileChannel target;
+        private final long size;
+        private final long chunkSize;
+        private final AtomicLong nextChunk = new AtomicLong();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final CountDownLatch done;
+        private volatile boolean stopped;
+        private volatile boolean different;
+        private volatile IOException error;
+
+        ChunkComparer(FileChannel source, FileChannel target, long size, long chunkSize, int workerCount) {
+            this.source = source;
+            this.target = target;
+            this.size = size;
+            this.chunkSize = chunkSize;
+            this.done = new CountDownLatch(workerCount);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped) {
+                    long position = nextChunk.getAndIncrement() * chunkSize;
+
+                    if (position >= size)
+                        break;
+
+                    long length = Math.min(chunkSize, size - position);
+                    MappedByteBuffer sourceChunk = source.map(FileChannel.MapMode.READ_ONLY, position, length);
+                    MappedByteBuffer targetChunk = target.map(FileChannel.MapMode.READ_ONLY, position, length);
+
+                    if (sourceChunk.mismatch(targetChunk) != -1) {
+                        different = true;
+                        stopped = true;
+                    }
+
+                    pendingBytes.addAndGet(length);
+                }
+            } catch (IOException e) {
+                if (error == null)
+                    error = e;
+
+                stopped = true;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Stops the workers and waits until they do no longer use the
+         * channels.
+         */
+        void stop() {
+            stopped = true;
+
+            boolean interrupted = false;
+
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @param listener The function that is called on the calling thread with
+     *                 the number of bytes that are compared since its last
+     *                 call or {@code null}.
+     */
+    private static boolean compareChunks(Path source, Path target, long size, long chunkSize, int parallelism, LongConsumer listener) throws IOException {
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.READ)) {
+            // The files may have changed since their attributes are read:
+            if (in.size() != size || out.size() != size)
+                return false;
+
+            int workerCount = (int)Math.min(parallelism, (size + chunkSize - 1) / chunkSize);
+            var comparer = new ChunkComparer(in, out, size, chunkSize, workerCount);
+            int workersStarted = 0;
+
+            try {
+                for (; workersStarted < workerCount; ++workersStarted)
+                    CHUNK_EXECUTOR.execute(comparer);
+
+                boolean finished = false;
+
+                while (!finished) {
+                    try {
+                        finished = comparer.done.await(50, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new IOException(e);
+                    }
+
+                    long bytesCompared = comparer.pendingBytes.getAndSet(0);
+
+                    if (listener != null && bytesCompared > 0)
+                        listener.accept(bytesCompared);
+                }
+
+                if (comparer.error != null)
+                    throw comparer.error;
+
+                return !comparer.different;
+            } finally {
+                // Workers that are not started do not count down:
+                for (; workersStarted < workerCount; ++workersStarted)
+                    comparer.done.countDown();
+
+                comparer.stop();
+            }
+        }
+    }
+
+    /**
+     * @return {@code true} if the error shall be retried and {@code false} if
+     * it shall be ignored.
+     */
+    private boolean handleError(ErrorInfo info, File source, File target) throws ErrorInfo {
+        if (queryErrorAction == null || info.doNotQuery())
+            throw info;
+
+        if (ignoreAllErrors || ignoredErrors.contains(info.getError()))
+            return false;
+
+        switch (queryErrorAction.query(info.getError(), info.getErrorDescription(), source, target)) {
+            case RETRY:
+                return true;
+
+            case IGNORE:
+                return false;
+
+            case IGNORE_ALL_THIS:
+                ignoredErrors.add(info.getError());
+                return false;
+
+            case IGNORE_ALL:
+                ignoreAllErrors = true;
+                return false;
+
+            default:
+                throw new ErrorInfo(info.getError(), info.getErrorDescription(), false);
+        }
+    }
+
+    private void addDifference(DifferenceType type, String relativePath, File source, File target) throws ErrorInfo {
+        var difference = new FileDifference(type, relativePath, source, target);
+        differences.add(difference);
+
+        progress.difference = difference;
+
+        try {
+            reportEntry(CompareProgressStatus.DIFFERENCE, source, target);
+        } finally {
+            progress.difference = null;
+        }
+    }
+
+    /**
+     * @return {@code false} if the entry shall be skipped.
+     */
+    private boolean reportEntry(CompareProgressStatus status, File source, File target) throws ErrorInfo {
+        progress.status = status;
+        progress.sourcePath = source.getPath();
+        progress.targetPath = target.getPath();
+
+        return report() != CopyProgressContinuation.SKIP;
+    }
+
+    private void reportComparing(long addBytesCompared) throws ErrorInfo {
+        progress.status = CompareProgressStatus.COMPARING_FILE;
+        progress.fileBytesCompared += addBytesCompared;
+
+        report();
+    }
+
+    private CopyProgressContinuation report() throws ErrorInfo {
+        if (progressFunction == null)
+            return CopyProgressContinuation.CONTINUE;
+
+        CopyProgressContinuation result = progressFunction.report(progress);
+
+        if (result == CopyProgressContinuation.CANCEL)
+            cancel();
+
+        return result;
+    }
+
+    private void reportFinished() {
+        progress.status = CompareProgressStatus.FINISHED;
+        progress.sourcePath = "";
+        progress.targetPath = "";
+
+        // The result is ignored because there is nothing left to cancel:
+        if (progressFunction != null)
+            progressFunction.report(progress);
+    }
+
+    private void cancel() throws ErrorInfo {
+        throw new ErrorInfo(FileError.CANCELED, CoreMessages.get("operationCanceled"), false);
+    }
+}
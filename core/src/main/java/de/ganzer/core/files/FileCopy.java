@@ -3,8 +3,32 @@ package de.ganzer.core.files;
 import de.ganzer.core.internals.CoreMessages;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -48,26 +72,56 @@ public class FileCopy extends FileErrorProvider {
 
     /**
      * The ProgressInfo class encapsulates progress information.
+     * <p>
+     * If files are copied in parallel (see {@link #setParallelism}), each
+     * worker reports its own instance: The file related values describe the
+     * file of the reporting worker, while the total values are shared by all
+     * workers.
      */
     public static class ProgressInfo {
         private final FileCopy machine;
+        private final JobState job;
         private CopyProgressStatus status;
         private String sourcePath;
         private String targetPath;
         private String rootSourcePath;
-        private String rootTargetPath;
         private long fileBytesAvail;
         private long fileBytesCopied;
-        private long totalBytesAvail;
-        private long totalBytesCopied;
+        private long fileBytesWritten;
+        private long fileBytesSkipped;
+        private FileTreeEntry sourceEntry;
+        private File writeFile;
+        private long fileStartNanos;
+        private FileDigest digest;
+        private byte[] fileDigest;
+
+        private ProgressInfo(FileCopy machine, JobState job) {
+            this.machine = machine;
+            this.job = job;
+        }
 
-        private OverwriteAction fileOverwriteAction;
-        private OverwriteAction dirOverwriteAction;
-        private boolean ignoreAllErrors;
-        private final Set<FileError> ignoredErrors = new HashSet<>();
+        private ProgressInfo(ProgressInfo parent) {
+            this(parent.machine, parent.job);
 
-        private ProgressInfo(FileCopy machine) {
-            this.machine = machine;
+            this.status = parent.status;
+            this.sourcePath = "";
+            this.targetPath = "";
+            this.rootSourcePath = parent.rootSourcePath;
+        }
+
+        private ProgressInfo snapshot() {
+            var copy = new ProgressInfo(machine, job.snapshot());
+
+            copy.status = status;
+            copy.sourcePath = sourcePath;
+            copy.targetPath = targetPath;
+            copy.rootSourcePath = rootSourcePath;
+            copy.fileBytesAvail = fileBytesAvail;
+            copy.fileBytesCopied = fileBytesCopied;
+            copy.fileBytesWritten = fileBytesWritten;
+            copy.fileDigest = fileDigest;
+
+            return copy;
         }
 
         /**
@@ -150,7 +204,7 @@ public class FileCopy extends FileErrorProvider {
          * @return The path to the original target.
          */
         public String getRootTargetPath() {
-            return rootTargetPath;
+            return job.rootTargetPath;
         }
 
         /**
@@ -179,6 +233,40 @@ public class FileCopy extends FileErrorProvider {
             return fileBytesCopied;
         }
 
+        /**
+         * The number of bytes that are already written into the target of
+         * the current file.
+         * <p>
+         * This is less than {@link #getFileBytesCopied()} if the file is
+         * delta copied (see {@link #setDeltaCopyThreshold}) and blocks of the
+         * target are already up to date or if the file is copied sparse (see
+         * {@link #setSparse}). Otherwise, it is the same.
+         * <p>
+         * This value is valid only if {@link #getStatus()} is either
+         * {@link CopyProgressStatus#START_FILE}, {@link CopyProgressStatus#COPYING_FILE} or
+         * {@link CopyProgressStatus#FINISHED_FILE}.
+         *
+         * @return The number of written bytes.
+         */
+        public long getFileBytesWritten() {
+            return fileBytesWritten;
+        }
+
+        /**
+         * Gets the checksum of the current file.
+         * <p>
+         * This value is valid only if {@link #getStatus()} is
+         * {@link CopyProgressStatus#FINISHED_FILE} and the files are verified
+         * (see {@link #setVerifyMode}).
+         *
+         * @return The checksum that is computed by the algorithm that is set
+         * by {@link #setChecksumAlgorithm} or {@code null} if no checksum is
+         * computed.
+         */
+        public byte[] getFileDigest() {
+            return fileDigest != null ? fileDigest.clone() : null;
+        }
+
         /**
          * The number of all bytes that have to be copied.
          * <p>
@@ -191,19 +279,55 @@ public class FileCopy extends FileErrorProvider {
          * @return The number of all available bytes.
          */
         public long getTotalBytesAvail() {
-            return totalBytesAvail;
+            return job.totalBytesAvail.get();
         }
 
         /**
          * The total number of already copied bytes.
          * <p>
          * This value is valid only if {@link #getStatus()} is other than
-         * {@link CopyProgressStatus#INITIALIZING}.
+         * {@link CopyProgressStatus#INITIALIZING}. If files are copied in
+         * parallel, this is the sum of the bytes copied by all workers.
          *
          * @return The number of already copied bytes.
          */
         public long getTotalBytesCopied() {
-            return totalBytesCopied;
+            return job.totalBytesCopied.get();
+        }
+
+        /**
+         * The total number of bytes that are already written into the
+         * targets.
+         * <p>
+         * This is less than {@link #getTotalBytesCopied()} if files are
+         * skipped or delta copied.
+         *
+         * @return The number of written bytes.
+         */
+        public long getTotalBytesWritten() {
+            return job.totalBytesWritten.get();
+        }
+
+        /**
+         * The total number of bytes of the files that are skipped because
+         * their targets are up to date.
+         * <p>
+         * These bytes are included in {@link #getTotalBytesCopied()}.
+         *
+         * @return The number of skipped bytes.
+         */
+        public long getTotalBytesSkipped() {
+            return job.totalBytesSkipped.get();
+        }
+
+        /**
+         * The number of files that are skipped because their targets are
+         * up to date.
+         *
+         * @return The number of skipped files.
+         */
+        public long getFilesSkipped() {
+            return job.filesSkipped.get();
         }
 
         /**
@@ -229,7 +353,20 @@ public class FileCopy extends FileErrorProvider {
          * @return The percentage [0-100].
          */
         public double getTotalPercentage() {
-            return totalBytesCopied * 100.0 / totalBytesAvail;
+            return getTotalBytesCopied() * 100.0 / getTotalBytesAvail();
+        }
+
+        /**
+         * Gets the measured performance of the job.
+         * <p>
+         * The remaining time can be estimated only if the bytes to copy are
+         * counted (see {@link FileCopy#start(String, String, boolean)}) and
+         * the counting is finished.
+         *
+         * @return The statistics of the job.
+         */
+        public CopyStatistics getStatistics() {
+            return job.getStatistics();
         }
     }
 
@@ -266,15 +403,62 @@ public class FileCopy extends FileErrorProvider {
         String alternativePath(String originalPath);
     }
 
+    private static final int MIN_ADAPTIVE_BUFFER_SIZE = 64 * 1024;
+    private static final int MAX_ADAPTIVE_BUFFER_SIZE = 8 * 1024 * 1024;
+    private static final double ADAPTIVE_BUFFER_SECONDS = 0.05;
+    private static final int SPARSE_BLOCK_SIZE = 4096;
+    private static final ByteBuffer ZERO_BLOCK = ByteBuffer.allocateDirect(SPARSE_BLOCK_SIZE).asReadOnlyBuffer();
+    private static final ExecutorService HELPER_EXECUTOR = Executors.newCachedThreadPool(runnable -> {
+        var thread = new Thread(runnable, "FileCopy helper");
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
     private final ProgressFunction progressFunction;
     private final QueryErrorAction queryErrorAction;
     private final QueryOverwriteAction queryOverwriteAction;
     private final AlternativeTargetPathFunction alternativeTargetPathFunction;
-    private final ProgressInfo progress = new ProgressInfo(this);
+    private final Object callbackLock = new Object();
+    private final JobState job = new JobState();
+    private final ProgressInfo progress = new ProgressInfo(this, job);
+    private final SyncBatch syncBatch = new SyncBatch();
     private OverwriteAction defaultFileOverwriteAction = OverwriteAction.NOT;
     private OverwriteAction defaultDirOverwriteAction = OverwriteAction.NOT;
-    private byte[] copyBuffer = new byte[8 * 1024];
+    private int copyBufferSize = 8 * 1024;
+    private boolean adaptiveBufferSize;
+    private BufferPool bufferPool = BufferPool.getDefault();
+    private CopyMethod copyMethod = CopyMethod.BUFFERED;
+    private int pipelineDepth = 4;
+    private boolean sparse;
+    private VerifyMode verifyMode = VerifyMode.NONE;
+    private DurabilityPolicy durabilityPolicy = DurabilityPolicy.NONE;
+    private long syncBatchSize = 64 * 1024 * 1024;
+    private String checksumAlgorithm = FileDigest.CRC32C;
+    private long transferChunkSize = 8 * 1024 * 1024;
+    private int parallelism = 1;
+    private SyncMode syncMode = SyncMode.NONE;
+    private boolean deleteOrphans;
+    private long deltaCopyThreshold;
+    private int deltaBlockSize = 64 * 1024;
+    private long smallFileThreshold;
+    private int smallFileConcurrency = 64;
+    private long rangeCopyThreshold;
+    private long rangeSize = 64 * 1024 * 1024;
+    private int rangeConcurrency = 4;
+    private ForkJoinPool pool;
+    private ExecutorService smallFileExecutor;
+    private Semaphore smallFilePermits;
+    private ProgressPolicy progressPolicy = ProgressPolicy.EACH;
+    private ProgressThrottle throttle;
+    private ProgressDispatcher<ProgressInfo> dispatcher;
     private FilenameFilter filenameFilter;
+    private PathFilter pathFilter;
+    private DirectoryStats directoryStats;
+    private CopyJournal journal;
+    private CopyJournal jobJournal;
+    private volatile FileJob<ProgressInfo> asyncJob;
+    private volatile RateLimiter rateLimiter;
 
     /**
      * Creates a new instance.
@@ -430,7 +614,7 @@ public class FileCopy extends FileErrorProvider {
      * @return The size of the buffer in bytes. The default value is 8 KB.
      */
     public int getCopyBufferSize() {
-        return copyBuffer.length;
+        return copyBufferSize;
     }
 
     /**
@@ -443,475 +627,2782 @@ public class FileCopy extends FileErrorProvider {
      * block of data is copied.
      *
      * @param copyBufferSize The new size to set.
+     * @throws IllegalArgumentException copyBufferSize is less than 1 or
+     *                                  greater than 1 GB.
      */
     public void setCopyBufferSize(int copyBufferSize) {
-        this.copyBuffer = new byte[copyBufferSize];
+        if (copyBufferSize < 1 || copyBufferSize > 1 << 30)
+            throw new IllegalArgumentException("copyBufferSize");
+
+        this.copyBufferSize = copyBufferSize;
     }
 
     /**
-     * Gets the filename filter used for iterating through directories.
-     * <p>
-     * The filter is not applied to the entries that are given to
-     * {@link #start} but only for entries in subdirectories.
+     * Gets a value indicating whether the size of the copy buffer is chosen
+     * for each file.
      *
-     * @return The used filter or {@code null} if not filter is used.
+     * @return {@code true} if the buffer size is adaptive. The default value
+     * is {@code false}.
      */
-    public FilenameFilter getFilenameFilter() {
-        return filenameFilter;
+    public boolean isAdaptiveBufferSize() {
+        return adaptiveBufferSize;
     }
 
     /**
-     * Sets the filename filter used for iterating through directories.
+     * Sets a value indicating whether the size of the copy buffer is chosen
+     * for each file.
      * <p>
-     * The filter is not applied to the entries that are given to
-     * {@link #start} but only for entries in subdirectories.
+     * An adaptive buffer is sized from the size of the file and from the
+     * throughput that is measured by the previous files, so that copying a
+     * buffer takes about 50 ms. While a file is copied, the buffer is doubled
+     * each time it is worked much faster than this. The size is kept between
+     * 64 KB (or the size of the file if it is smaller) and 8 MB.
+     * <p>
+     * If this is {@code true}, {@link #getCopyBufferSize()} is ignored.
      *
-     * @param filenameFilter The filter to use or {@code null} to use no filter.
+     * @param adaptiveBufferSize {@code true} to choose the buffer size for
+     *                           each file.
      */
-    public void setFilenameFilter(FilenameFilter filenameFilter) {
-        this.filenameFilter = filenameFilter;
+    public void setAdaptiveBufferSize(boolean adaptiveBufferSize) {
+        this.adaptiveBufferSize = adaptiveBufferSize;
     }
 
     /**
-     * Copies the specified file or directory.
+     * Gets the pool that provides the buffers to copy the data.
      *
-     * @param source       The absolute or relative path to the file or directory to
-     *                     copy.
-     * @param target       The absolute or relative path to the directory where to
-     *                     copy into.
-     * @param suppressInit The counting of all bytes to copy is suppressed if
-     *                     this is {@code true}. Neither {@link ProgressInfo#totalBytesAvail}
-     *                     nor {@link ProgressInfo#getTotalPercentage} can be used
-     *                     when progress is reported.
-     * @return {@code true} on success; otherwise, {@code false} is returned.
+     * @return The used pool. The default value is {@link BufferPool#getDefault()}.
      */
-    public boolean start(String source, String target, boolean suppressInit) {
-        return start(Collections.singletonList(source), target, suppressInit);
+    public BufferPool getBufferPool() {
+        return bufferPool;
     }
 
     /**
-     * Copies the specified files or directories.
+     * Sets the pool that provides the buffers to copy the data.
      *
-     * @param sources      The absolute or relative paths to the files or directories
-     *                     to copy.
-     * @param target       The absolute or relative path to the directory where to
-     *                     copy into.
-     * @param suppressInit The counting of all bytes to copy is suppressed if
-     *                     this is {@code true}. Neither {@link ProgressInfo#totalBytesAvail}
-     *                     nor {@link ProgressInfo#getTotalPercentage} can be used
-     *                     when progress is reported.
-     * @return {@code true} on success; otherwise, {@code false} is returned.
+     * @param bufferPool The pool to use.
+     * @throws NullPointerException bufferPool is {@code null}.
+     */
+    public void setBufferPool(BufferPool bufferPool) {
+        Objects.requireNonNull(bufferPool, "bufferPool");
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Gets the method that is used to copy the data of a file.
      *
-     * @throws NullPointerException sources or target is {@code null}.
+     * @return The used copy method. The default value is
+     * {@link CopyMethod#BUFFERED}.
      */
-    public boolean start(List<String> sources, String target, boolean suppressInit) {
-        Objects.requireNonNull(sources, "sources");
-        Objects.requireNonNull(target, "target");
+    public CopyMethod getCopyMethod() {
+        return copyMethod;
+    }
 
-        var sourceFiles = sources.stream().map(File::new).collect(Collectors.toList());
-        var targetFile = new File(target);
+    /**
+     * Sets the method that is used to copy the data of a file.
+     *
+     * @param copyMethod The method to use.
+     * @throws NullPointerException copyMethod is {@code null}.
+     */
+    public void setCopyMethod(CopyMethod copyMethod) {
+        Objects.requireNonNull(copyMethod, "copyMethod");
+        this.copyMethod = copyMethod;
+    }
 
-        clearError();
+    /**
+     * Gets the number of buffers that are used if {@link #getCopyMethod()}
+     * is {@link CopyMethod#PIPELINED}.
+     *
+     * @return The number of buffers. The default value is 4.
+     */
+    public int getPipelineDepth() {
+        return pipelineDepth;
+    }
 
-        try {
-            verifyTargetType(targetFile);
-            verifyExistence(sourceFiles, targetFile);
-            verifyNonRecursive(sourceFiles, targetFile);
+    /**
+     * Sets the number of buffers that are used if {@link #getCopyMethod()}
+     * is {@link CopyMethod#PIPELINED}. The reader can read ahead by all
+     * buffers but the one that is currently written.
+     *
+     * @param pipelineDepth The number of buffers.
+     * @throws IllegalArgumentException pipelineDepth is less than 2.
+     */
+    public void setPipelineDepth(int pipelineDepth) {
+        if (pipelineDepth < 2)
+            throw new IllegalArgumentException("pipelineDepth");
 
-            initializeCopy(sourceFiles, targetFile, suppressInit);
-            copyEntries(sourceFiles, targetFile);
-        } catch (ErrorInfo info) {
-            setErrorInfo(info.getError(), info.getErrorDescription());
-        }
+        this.pipelineDepth = pipelineDepth;
+    }
 
-        reportFinished();
+    /**
+     * Gets a value indicating whether holes are kept when files are copied.
+     *
+     * @return {@code true} if the files are copied sparse. The default value
+     * is {@code false}.
+     */
+    public boolean isSparse() {
+        return sparse;
+    }
 
-        return getError() != FileError.NONE;
+    /**
+     * Sets a value indicating whether holes are kept when files are copied.
+     * <p>
+     * If this is {@code true}, blocks of 4 KB that contain only zeros are
+     * not written but skipped in the target, so that the file system can
+     * leave holes in the target file. This works for any source, whether
+     * it is sparse or just contains zeros. {@link ProgressInfo#getFileBytesWritten()}
+     * does not count the skipped blocks.
+     * <p>
+     * A sparse copy always uses {@link CopyMethod#BUFFERED}. It is not
+     * applied to delta copies (see {@link #setDeltaCopyThreshold}) and to
+     * small files (see {@link #setSmallFileThreshold}).
+     *
+     * @param sparse {@code true} to copy the files sparse.
+     */
+    public void setSparse(boolean sparse) {
+        this.sparse = sparse;
     }
 
-    private static class ErrorInfo extends RuntimeException {
-        private final boolean queryHandling;
-        private final FileError error;
+    /**
+     * Gets the mode that is used to verify the copied files.
+     *
+     * @return The used mode. The default value is {@link VerifyMode#NONE}.
+     */
+    public VerifyMode getVerifyMode() {
+        return verifyMode;
+    }
 
-        public ErrorInfo(FileError error, String errorDescription, boolean queryHandling) {
-            super(errorDescription);
+    /**
+     * Sets the mode that is used to verify the copied files.
+     * <p>
+     * If the files are verified, {@link CopyMethod#CHANNEL} is replaced by
+     * {@link CopyMethod#BUFFERED}, delta copies are not done and an interrupted file is copied
+     * again from its beginning when a job is resumed. A detected mismatch is
+     * handled like any other error of the file.
+     *
+     * @param verifyMode The mode to use.
+     * @throws NullPointerException verifyMode is {@code null}.
+     */
+    public void setVerifyMode(VerifyMode verifyMode) {
+        Objects.requireNonNull(verifyMode, "verifyMode");
+        this.verifyMode = verifyMode;
+    }
 
-            this.queryHandling = queryHandling;
-            this.error = error;
-        }
+    /**
+     * Gets the algorithm that computes the checksums of the verified files.
+     *
+     * @return The name of the algorithm. The default value is "CRC32C".
+     */
+    public String getChecksumAlgorithm() {
+        return checksumAlgorithm;
+    }
 
-        public boolean doNotQuery() {
-            return !queryHandling;
-        }
+    /**
+     * Sets the algorithm that computes the checksums of the verified files.
+     *
+     * @param checksumAlgorithm "CRC32C" or the name of an algorithm that is
+     *                          supported by {@link java.security.MessageDigest}
+     *                          like "SHA-256".
+     * @throws NullPointerException     checksumAlgorithm is {@code null}.
+     * @throws IllegalArgumentException The algorithm is not available.
+     */
+    public void setChecksumAlgorithm(String checksumAlgorithm) {
+        Objects.requireNonNull(checksumAlgorithm, "checksumAlgorithm");
 
-        public FileError getError() {
-            return error;
+        try {
+            FileDigest.create(checksumAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("checksumAlgorithm");
         }
 
-        public String getErrorDescription() {
-            return getMessage();
-        }
+        this.checksumAlgorithm = checksumAlgorithm;
     }
 
-    private void verifyTargetType(File targetFile) throws ErrorInfo {
-        if (targetFile.isFile())
-            throw new ErrorInfo(FileError.TARGET_TYPE, String.format(CoreMessages.get("invalidCopyTarget"), targetFile.getAbsolutePath()), true);
+    /**
+     * Gets the policy that defines how the copied files are forced to the
+     * storage device.
+     *
+     * @return The used policy. The default value is {@link DurabilityPolicy#NONE}.
+     */
+    public DurabilityPolicy getDurabilityPolicy() {
+        return durabilityPolicy;
     }
 
-    private void verifyExistence(List<File> sourceFiles, File targetFile) throws ErrorInfo {
-        sourceFiles.forEach(this::verifySourceExistence);
-        verifyDestExistence(targetFile);
+    /**
+     * Sets the policy that defines how the copied files are forced to the
+     * storage device.
+     * <p>
+     * With a policy other than {@link DurabilityPolicy#NONE}, the files are
+     * always written into temporary files. A delta copy (see
+     * {@link #setDeltaCopyThreshold}) writes into the target itself, which
+     * is then only forced.
+     *
+     * @param durabilityPolicy The policy to use.
+     * @throws NullPointerException durabilityPolicy is {@code null}.
+     */
+    public void setDurabilityPolicy(DurabilityPolicy durabilityPolicy) {
+        Objects.requireNonNull(durabilityPolicy, "durabilityPolicy");
+        this.durabilityPolicy = durabilityPolicy;
     }
 
-    private void verifySourceExistence(File sourceFile) throws ErrorInfo {
-        if (!sourceFile.exists())
-            throw new ErrorInfo(FileError.SOURCE_NOT_EXIST, String.format(CoreMessages.get("sourceFileDoesNotExist"), sourceFile.getAbsolutePath()), true);
+    /**
+     * Gets the number of bytes after which the kept files are forced if
+     * {@link #getDurabilityPolicy()} is {@link DurabilityPolicy#BATCHED}.
+     *
+     * @return The size of a batch in bytes. The default value is 64 MB.
+     */
+    public long getSyncBatchSize() {
+        return syncBatchSize;
     }
 
-    private void verifyDestExistence(File targetFile) throws ErrorInfo {
-        if (!targetFile.exists() && !targetFile.mkdirs())
-            throw new ErrorInfo(FileError.CREATE_DIR, String.format(CoreMessages.get("cannotCreateDir"), targetFile.getAbsolutePath()), true);
+    /**
+     * Sets the number of bytes after which the kept files are forced if
+     * {@link #getDurabilityPolicy()} is {@link DurabilityPolicy#BATCHED}.
+     *
+     * @param syncBatchSize The size of a batch in bytes.
+     * @throws IllegalArgumentException syncBatchSize is less than 1.
+     */
+    public void setSyncBatchSize(long syncBatchSize) {
+        if (syncBatchSize < 1)
+            throw new IllegalArgumentException("syncBatchSize");
+
+        this.syncBatchSize = syncBatchSize;
     }
 
-    private void verifyNonRecursive(List<File> sourceFiles, File targetFile) throws ErrorInfo {
-        sourceFiles.forEach(file -> verifyNonRecursive(file, targetFile));
+    /**
+     * Gets the maximum number of bytes that are transferred at once if
+     * {@link #getCopyMethod()} is {@link CopyMethod#CHANNEL}.
+     * <p>
+     * The user cannot cancel the operation while a chunk is transferred.
+     * Progress information is reported after each transferred chunk.
+     *
+     * @return The size of a chunk in bytes. The default value is 8 MB.
+     */
+    public long getTransferChunkSize() {
+        return transferChunkSize;
     }
 
-    private void verifyNonRecursive(File sourceFile, File targetFile) throws ErrorInfo {
-        var sourcePath = Path.of(sourceFile.getAbsolutePath());
-        var targetPath = Path.of(targetFile.getAbsolutePath());
+    /**
+     * Sets the maximum number of bytes that are transferred at once if
+     * {@link #getCopyMethod()} is {@link CopyMethod#CHANNEL}.
+     * <p>
+     * The user cannot cancel the operation while a chunk is transferred.
+     * Progress information is reported after each transferred chunk.
+     *
+     * @param transferChunkSize The new size to set.
+     * @throws IllegalArgumentException transferChunkSize is less than 1.
+     */
+    public void setTransferChunkSize(long transferChunkSize) {
+        if (transferChunkSize < 1)
+            throw new IllegalArgumentException("transferChunkSize");
 
-        if (targetPath.equals(sourcePath) || targetPath.startsWith(sourcePath))
-            throw new ErrorInfo(FileError.CREATE_DIR, String.format(CoreMessages.get("cannotCopyIntoItself"), sourceFile.getAbsolutePath()), true);
+        this.transferChunkSize = transferChunkSize;
     }
 
-    private void initializeCopy(List<File> sourceFiles, File targetFile, boolean suppressInit) throws ErrorInfo {
-        progress.status = CopyProgressStatus.INITIALIZING;
-        progress.rootTargetPath = targetFile.getAbsolutePath();
-        progress.fileBytesAvail = 0;
-        progress.fileBytesCopied = 0;
-        progress.totalBytesAvail = 0;
-        progress.totalBytesCopied = 0;
-        progress.sourcePath = "";
-        progress.targetPath = "";
-        progress.dirOverwriteAction = defaultDirOverwriteAction;
-        progress.fileOverwriteAction = defaultFileOverwriteAction;
-        progress.ignoreAllErrors = false;
-        progress.ignoredErrors.clear();
-
-        if (suppressInit)
-            return;
+    /**
+     * Gets the number of files that are copied at the same time.
+     *
+     * @return The number of parallel workers. The default value is 1.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
 
-        reportProgress();
+    /**
+     * Sets the number of files that are copied at the same time.
+     * <p>
+     * If this is greater than 1, the entries of a directory are copied by a
+     * work-stealing pool with the specified number of workers. A directory
+     * is always created before its entries are copied and its attributes
+     * are set after all of its entries are copied.
+     * <p>
+     * The progress function, the query overwrite action and the query error
+     * action are called from the workers, but never at the same time. Each
+     * worker reports its own {@link ProgressInfo}.
+     *
+     * @param parallelism The number of workers to use. 1 copies the files
+     *                    on the calling thread, except for the small files
+     *                    that are copied concurrently if
+     *                    {@link #getSmallFileThreshold()} is greater than 0.
+     * @throws IllegalArgumentException parallelism is less than 1.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism");
 
-        sourceFiles.forEach(source -> {
-            progress.rootSourcePath = source.getAbsolutePath();
+        this.parallelism = parallelism;
+    }
 
-            if (source.isDirectory())
-                initializeCopy(source);
-            else
-                reportInitializeProgress(progress.rootSourcePath, source.length());
-        });
+    /**
+     * Gets the mode that decides whether existing target files are copied
+     * again.
+     *
+     * @return The used sync mode. The default value is {@link SyncMode#NONE}.
+     */
+    public SyncMode getSyncMode() {
+        return syncMode;
     }
 
-    private boolean reportProgress() {
-        if (progressFunction == null)
-            return true;
+    /**
+     * Sets the mode that decides whether existing target files are copied
+     * again.
+     * <p>
+     * If this is other than {@link SyncMode#NONE}, up-to-date files are
+     * reported as {@link CopyProgressStatus#SKIPPED_FILE} and all other
+     * existing files and directories are overwritten without calling the
+     * query overwrite action.
+     *
+     * @param syncMode The mode to use.
+     * @throws NullPointerException syncMode is {@code null}.
+     */
+    public void setSyncMode(SyncMode syncMode) {
+        Objects.requireNonNull(syncMode, "syncMode");
+        this.syncMode = syncMode;
+    }
 
-        CopyProgressContinuation result = progressFunction.report(progress);
+    /**
+     * Gets a value indicating whether entries of target directories that do
+     * not exist in the source directories are deleted.
+     *
+     * @return {@code true} if orphaned entries are deleted. The default value
+     * is {@code false}.
+     */
+    public boolean isDeleteOrphans() {
+        return deleteOrphans;
+    }
 
-        if (result == CopyProgressContinuation.CANCEL)
-            cancel();
+    /**
+     * Sets a value indicating whether entries of target directories that do
+     * not exist in the source directories are deleted.
+     * <p>
+     * This is used only if {@link #getSyncMode()} is other than
+     * {@link SyncMode#NONE}. Entries that are excluded by the
+     * {@link #getFilenameFilter() filename filter} are never deleted. Each
+     * deleted entry is reported as {@link CopyProgressStatus#DELETE_ORPHAN}.
+     *
+     * @param deleteOrphans {@code true} to delete orphaned entries.
+     */
+    public void setDeleteOrphans(boolean deleteOrphans) {
+        this.deleteOrphans = deleteOrphans;
+    }
 
-        return result == CopyProgressContinuation.CONTINUE;
+    /**
+     * Gets the minimum size of a file that is delta copied into an already
+     * existing target.
+     *
+     * @return The minimum size in bytes or 0 if no file is delta copied. The
+     * default value is 0.
+     */
+    public long getDeltaCopyThreshold() {
+        return deltaCopyThreshold;
     }
 
-    private boolean reportStartDir(String sourcePath, String targetPath) {
-        progress.status = CopyProgressStatus.START_DIRECTORY;
-        progress.sourcePath = sourcePath;
-        progress.targetPath = targetPath;
-        progress.fileBytesAvail = 0;
-        progress.fileBytesCopied = 0;
+    /**
+     * Sets the minimum size of a file that is delta copied into an already
+     * existing target.
+     * <p>
+     * If a file with at least the specified size is copied over an existing
+     * file, both files are compared block by block and only the blocks that
+     * differ are written into the target. Progress reports the compared
+     * bytes as copied and the rewritten bytes as written.
+     * <p>
+     * A delta copy writes directly into the target instead of into a
+     * temporary file. If the copy is skipped, canceled or aborted by an
+     * error, the target keeps the blocks that are already written and the
+     * original content cannot be restored.
+     *
+     * @param deltaCopyThreshold The minimum size in bytes or 0 to delta copy
+     *                           no file.
+     * @throws IllegalArgumentException deltaCopyThreshold is negative.
+     */
+    public void setDeltaCopyThreshold(long deltaCopyThreshold) {
+        if (deltaCopyThreshold < 0)
+            throw new IllegalArgumentException("deltaCopyThreshold");
 
-        return reportProgress();
+        this.deltaCopyThreshold = deltaCopyThreshold;
     }
 
-    private void reportFinishedDir(String sourcePath, String targetPath) {
-        progress.status = CopyProgressStatus.FINISHED_DIRECTORY;
-        progress.sourcePath = sourcePath;
+    /**
+     * Gets the size of the blocks that are compared by a delta copy.
+     *
+     * @return The size of a block in bytes. The default value is 64 KB.
+     */
+    public int getDeltaBlockSize() {
+        return deltaBlockSize;
+    }
+
+    /**
+     * Sets the size of the blocks that are compared by a delta copy.
+     * <p>
+     * Smaller blocks write fewer unchanged bytes but report progress more
+     * often.
+     *
+     * @param deltaBlockSize The size of a block in bytes.
+     * @throws IllegalArgumentException deltaBlockSize is less than 1 or
+     *                                  greater than 1 GB.
+     */
+    public void setDeltaBlockSize(int deltaBlockSize) {
+        if (deltaBlockSize < 1 || deltaBlockSize > 1 << 30)
+            throw new IllegalArgumentException("deltaBlockSize");
+
+        this.deltaBlockSize = deltaBlockSize;
+    }
+
+    /**
+     * Gets the size below which files are copied by the small file path.
+     *
+     * @return The threshold in bytes or 0 if the small file path is not
+     * used. The default value is 0.
+     */
+    public long getSmallFileThreshold() {
+        return smallFileThreshold;
+    }
+
+    /**
+     * Sets the size below which files are copied by the small file path.
+     * <p>
+     * A small file is read into memory by one call and written by one call
+     * instead of being copied buffer by buffer. If files are not copied in
+     * parallel (see {@link #setParallelism}), the small files of a directory
+     * are copied concurrently by lightweight tasks, so that the latency of
+     * creating, closing and setting the attributes of the files overlaps.
+     * On Java 21 or newer each task runs on a virtual thread; on older
+     * versions the tasks run on a pool of {@link #getSmallFileConcurrency()}
+     * threads.
+     * <p>
+     * The progress function, the query overwrite action and the query error
+     * action are then called from these tasks, too, but never at the same
+     * time.
+     *
+     * @param smallFileThreshold The threshold in bytes or 0 to not use the
+     *                           small file path.
+     * @throws IllegalArgumentException smallFileThreshold is negative or
+     *                                  greater than 1 GB.
+     */
+    public void setSmallFileThreshold(long smallFileThreshold) {
+        if (smallFileThreshold < 0 || smallFileThreshold > 1 << 30)
+            throw new IllegalArgumentException("smallFileThreshold");
+
+        this.smallFileThreshold = smallFileThreshold;
+    }
+
+    /**
+     * Gets the maximum number of small files that are copied at the same
+     * time.
+     *
+     * @return The maximum number of concurrent small files. The default
+     * value is 64.
+     */
+    public int getSmallFileConcurrency() {
+        return smallFileConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of small files that are copied at the same
+     * time.
+     *
+     * @param smallFileConcurrency The maximum number of concurrent small
+     *                             files.
+     * @throws IllegalArgumentException smallFileConcurrency is less than 1.
+     */
+    public void setSmallFileConcurrency(int smallFileConcurrency) {
+        if (smallFileConcurrency < 1)
+            throw new IllegalArgumentException("smallFileConcurrency");
+
+        this.smallFileConcurrency = smallFileConcurrency;
+    }
+
+    /**
+     * Gets the size from which files are split into ranges that are copied
+     * concurrently.
+     *
+     * @return The threshold in bytes or 0 if files are not split. The
+     * default value is 0.
+     */
+    public long getRangeCopyThreshold() {
+        return rangeCopyThreshold;
+    }
+
+    /**
+     * Sets the size from which files are split into ranges that are copied
+     * concurrently.
+     * <p>
+     * The data of a file that is not smaller than the threshold and larger
+     * than the range size (see {@link #setRangeSize}) is copied into a
+     * temporary file with the suffix {@code ~} that is sized first and
+     * renamed to the target when all ranges are copied. The ranges are read
+     * and written by {@link #getRangeConcurrency()} threads at their
+     * positions, so that storage devices that handle multiple requests in
+     * parallel are used to full capacity. The bytes that are copied by the
+     * threads are reported as the progress of the file.
+     * <p>
+     * Files are not split if they are copied sparse, if the target is
+     * verified or if a journal is used, because these need the data in
+     * order. Only the bytes that the file has when the copy starts are
+     * copied.
+     *
+     * @param rangeCopyThreshold The threshold in bytes or 0 to not split
+     *                           files.
+     * @throws IllegalArgumentException rangeCopyThreshold is negative.
+     */
+    public void setRangeCopyThreshold(long rangeCopyThreshold) {
+        if (rangeCopyThreshold < 0)
+            throw new IllegalArgumentException("rangeCopyThreshold");
+
+        this.rangeCopyThreshold = rangeCopyThreshold;
+    }
+
+    /**
+     * Gets the size of the ranges into which large files are split.
+     *
+     * @return The size in bytes. The default value is 64 MB.
+     */
+    public long getRangeSize() {
+        return rangeSize;
+    }
+
+    /**
+     * Sets the size of the ranges into which large files are split.
+     *
+     * @param rangeSize The size in bytes.
+     * @throws IllegalArgumentException rangeSize is less than 1.
+     */
+    public void setRangeSize(long rangeSize) {
+        if (rangeSize < 1)
+            throw new IllegalArgumentException("rangeSize");
+
+        this.rangeSize = rangeSize;
+    }
+
+    /**
+     * Gets the number of threads that copy the ranges of a large file.
+     *
+     * @return The number of threads. The default value is 4.
+     */
+    public int getRangeConcurrency() {
+        return rangeConcurrency;
+    }
+
+    /**
+     * Sets the number of threads that copy the ranges of a large file.
+     *
+     * @param rangeConcurrency The number of threads.
+     * @throws IllegalArgumentException rangeConcurrency is less than 1.
+     */
+    public void setRangeConcurrency(int rangeConcurrency) {
+        if (rangeConcurrency < 1)
+            throw new IllegalArgumentException("rangeConcurrency");
+
+        this.rangeConcurrency = rangeConcurrency;
+    }
+
+    /**
+     * Gets the policy that defines how often the progress function is
+     * called.
+     *
+     * @return The used policy. The default value is {@link ProgressPolicy#EACH}.
+     */
+    public ProgressPolicy getProgressPolicy() {
+        return progressPolicy;
+    }
+
+    /**
+     * Sets the policy that defines how often the progress function is
+     * called.
+     * <p>
+     * Only reports with the status {@link CopyProgressStatus#INITIALIZING}
+     * and {@link CopyProgressStatus#COPYING_FILE} are subject to the policy;
+     * all other reports are always delivered. The counter that is compared
+     * against {@link ProgressPolicy#getMinDelta()} is the number of counted
+     * respective copied bytes.
+     * <p>
+     * If the policy is asynchronous, the progress function receives
+     * snapshots of the progress information.
+     *
+     * @param progressPolicy The policy to use.
+     * @throws NullPointerException progressPolicy is {@code null}.
+     */
+    public void setProgressPolicy(ProgressPolicy progressPolicy) {
+        Objects.requireNonNull(progressPolicy, "progressPolicy");
+        this.progressPolicy = progressPolicy;
+    }
+
+    /**
+     * Gets the filename filter used for iterating through directories.
+     * <p>
+     * The filter is not applied to the entries that are given to
+     * {@link #start} but only for entries in subdirectories.
+     *
+     * @return The used filter or {@code null} if not filter is used.
+     */
+    public FilenameFilter getFilenameFilter() {
+        return filenameFilter;
+    }
+
+    /**
+     * Sets the filename filter used for iterating through directories.
+     * <p>
+     * The filter is not applied to the entries that are given to
+     * {@link #start} but only for entries in subdirectories.
+     *
+     * @param filenameFilter The filter to use or {@code null} to use no filter.
+     */
+    public void setFilenameFilter(FilenameFilter filenameFilter) {
+        this.filenameFilter = filenameFilter;
+    }
+
+    /**
+     * Gets the path filter used for iterating through directories.
+     *
+     * @return The used filter or {@code null} if no path filter is used.
+     */
+    public PathFilter getPathFilter() {
+        return pathFilter;
+    }
+
+    /**
+     * Sets the path filter used for iterating through directories.
+     * <p>
+     * The patterns of the filter are matched against the paths relative to
+     * the files or directories that are given to {@link #start}; these are
+     * not filtered themselves. Directories that are not accepted by the
+     * filter are not listed. The path filter can be combined with the
+     * filename filter; an entry must then be accepted by both.
+     *
+     * @param pathFilter The filter to use or {@code null} to use no path
+     *                   filter.
+     */
+    public void setPathFilter(PathFilter pathFilter) {
+        this.pathFilter = pathFilter;
+    }
+
+    /**
+     * Gets the scanner that counts the bytes to copy during the initialization.
+     *
+     * @return The used scanner or {@code null} if the trees are walked by
+     * this instance.
+     */
+    public DirectoryStats getDirectoryStats() {
+        return directoryStats;
+    }
+
+    /**
+     * Sets the scanner that counts the bytes to copy during the initialization.
+     * <p>
+     * If a scanner is set, the directories that are given to {@link #start}
+     * are counted by the scanner, which scans in parallel and caches its
+     * results, so that repeated jobs over the same trees skip most of the
+     * scan (see {@link DirectoryStats} for the limits of the cache). The
+     * progress is then reported once for each of these directories. The
+     * scanner is not used if a filename filter or a path filter is set.
+     *
+     * @param directoryStats The scanner to use (for example
+     *                       {@link DirectoryStats#getDefault()}) or
+     *                       {@code null} to walk the trees.
+     */
+    public void setDirectoryStats(DirectoryStats directoryStats) {
+        this.directoryStats = directoryStats;
+    }
+
+    /**
+     * Gets the limiter that restricts the throughput of the jobs.
+     *
+     * @return The used limiter or {@code null} if the throughput is not
+     * limited.
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Sets the limiter that restricts the throughput of the jobs.
+     * <p>
+     * Each copied buffer takes its bytes and one operation from the limiter.
+     * The limiter may be shared by several instances and may be changed or
+     * replaced while a job is running.
+     *
+     * @param rateLimiter The limiter to use or {@code null} to not limit the
+     *                    throughput.
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Gets the measured performance of the last finished job.
+     *
+     * @return The statistics of the last job or {@code null} if no job is
+     * finished yet.
+     */
+    public CopyStatistics getStatistics() {
+        return job.finalStatistics;
+    }
+
+    /**
+     * Gets the journal that records the state of the jobs that are started
+     * by {@link #start}.
+     *
+     * @return The used journal or {@code null} if no journal is written.
+     */
+    public CopyJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Sets the journal that records the state of the jobs that are started
+     * by {@link #start}.
+     * <p>
+     * If a job that writes a journal is interrupted, it can be continued by
+     * {@link #resume(CopyJournal)}. While a journal is written, each file is
+     * copied into a temporary file that is renamed when the file is
+     * completed, even if the target does not exist yet.
+     *
+     * @param journal The journal to use or {@code null} to write no journal.
+     */
+    public void setJournal(CopyJournal journal) {
+        this.journal = journal;
+    }
+
+    /**
+     * Copies the specified file or directory.
+     *
+     * @param source       The absolute or relative path to the file or directory to
+     *                     copy.
+     * @param target       The absolute or relative path to the directory where to
+     *                     copy into.
+     * @param suppressInit The counting of all bytes to copy is suppressed if
+     *                     this is {@code true}. Neither {@link ProgressInfo#getTotalBytesAvail}
+     *                     nor {@link ProgressInfo#getTotalPercentage} can be used
+     *                     when progress is reported.
+     * @return {@code true} on success; otherwise, {@code false} is returned.
+     */
+    public boolean start(String source, String target, boolean suppressInit) {
+        return start(Collections.singletonList(source), target, suppressInit);
+    }
+
+    /**
+     * Copies the specified files or directories.
+     *
+     * @param sources      The absolute or relative paths to the files or directories
+     *                     to copy.
+     * @param target       The absolute or relative path to the directory where to
+     *                     copy into.
+     * @param suppressInit The counting of all bytes to copy is suppressed if
+     *                     this is {@code true}. Neither {@link ProgressInfo#getTotalBytesAvail}
+     *                     nor {@link ProgressInfo#getTotalPercentage} can be used
+     *                     when progress is reported.
+     * @return {@code true} on success; otherwise, {@code false} is returned.
+     *
+     * @throws NullPointerException sources or target is {@code null}.
+     */
+    public boolean start(List<String> sources, String target, boolean suppressInit) {
+        Objects.requireNonNull(sources, "sources");
+        Objects.requireNonNull(target, "target");
+
+        clearError();
+        openProgress();
+
+        try {
+            if (journal != null)
+                createJournal(sources, target, suppressInit);
+
+            copy(sources, target, suppressInit);
+        } catch (ErrorInfo info) {
+            setErrorInfo(info.getError(), info.getErrorDescription());
+        }
+
+        closeJournal();
+        reportFinished();
+
+        return getError() != FileError.NONE;
+    }
+
+    /**
+     * Continues an interrupted job that has written the specified journal.
+     * <p>
+     * The files that are recorded as completed are not copied again but
+     * are reported by {@link CopyProgressStatus#SKIPPED_FILE}. A file that
+     * was copied when the job was interrupted is continued at the recorded
+     * position if neither its size nor its modification time has changed.
+     * The journal is appended while the job continues and is deleted when
+     * the job has finished without an error.
+     *
+     * @param journal The journal of the interrupted job.
+     * @return {@code true} on success; otherwise, {@code false} is returned.
+     *
+     * @throws NullPointerException journal is {@code null}.
+     */
+    public boolean resume(CopyJournal journal) {
+        Objects.requireNonNull(journal, "journal");
+
+        clearError();
+        openProgress();
+
+        try {
+            openJournal(journal);
+            copy(journal.getSources(), journal.getTarget(), journal.isSuppressInit());
+        } catch (ErrorInfo info) {
+            setErrorInfo(info.getError(), info.getErrorDescription());
+        }
+
+        closeJournal();
+        reportFinished();
+
+        return getError() == FileError.NONE;
+    }
+
+    /**
+     * Copies the specified file or directory asynchronously.
+     *
+     * @param source       The absolute or relative path to the file or directory to
+     *                     copy.
+     * @param target       The absolute or relative path to the directory where to
+     *                     copy into.
+     * @param suppressInit The counting of all bytes to copy is suppressed if
+     *                     this is {@code true}.
+     * @param executor     The executor that runs the job.
+     * @return The handle of the started job.
+     *
+     * @throws NullPointerException  source, target or executor is {@code null}.
+     * @throws IllegalStateException A job that is started asynchronously is
+     *                               still running.
+     * @see #startAsync(List, String, boolean, Executor)
+     */
+    public FileJob<ProgressInfo> startAsync(String source, String target, boolean suppressInit, Executor executor) {
+        Objects.requireNonNull(source, "source");
+        return startAsync(Collections.singletonList(source), target, suppressInit, executor);
+    }
+
+    /**
+     * Copies the specified files or directories asynchronously.
+     * <p>
+     * The job is run by the specified executor and reports its progress
+     * both to the progress function of this instance (if any) and to the
+     * publisher of the returned handle. This instance must not be used for
+     * another job until the returned job is done.
+     *
+     * @param sources      The absolute or relative paths to the files or directories
+     *                     to copy.
+     * @param target       The absolute or relative path to the directory where to
+     *                     copy into.
+     * @param suppressInit The counting of all bytes to copy is suppressed if
+     *                     this is {@code true}.
+     * @param executor     The executor that runs the job.
+     * @return The handle of the started job. If the executor rejects the job,
+     * the result of the handle is completed exceptionally.
+     *
+     * @throws NullPointerException  sources, target or executor is {@code null}.
+     * @throws IllegalStateException A job that is started asynchronously is
+     *                               still running.
+     */
+    public FileJob<ProgressInfo> startAsync(List<String> sources, String target, boolean suppressInit, Executor executor) {
+        Objects.requireNonNull(sources, "sources");
+        Objects.requireNonNull(target, "target");
+        Objects.requireNonNull(executor, "executor");
+
+        var handle = new FileJob<ProgressInfo>();
+        startAsync(handle, sources, target, suppressInit, executor);
+
+        return handle;
+    }
+
+    /**
+     * Runs a job by the specified executor that reports to the specified
+     * handle.
+     */
+    void startAsync(FileJob<ProgressInfo> handle, List<String> sources, String target, boolean suppressInit, Executor executor) {
+        synchronized (callbackLock) {
+            if (asyncJob != null)
+                throw new IllegalStateException();
+
+            asyncJob = handle;
+        }
+
+        try {
+            executor.execute(() -> {
+                FileError error;
+
+                try {
+                    start(sources, target, suppressInit);
+                    error = getError();
+                } catch (RuntimeException | Error e) {
+                    asyncJob = null;
+                    handle.completeExceptionally(e);
+                    return;
+                }
+
+                // The instance is released before the result is published,
+                // so that it can be reused by the completion handlers:
+                asyncJob = null;
+                handle.complete(error);
+            });
+        } catch (RuntimeException e) {
+            asyncJob = null;
+            handle.completeExceptionally(e);
+        }
+    }
+
+    private void copy(List<String> sources, String target, boolean suppressInit) throws ErrorInfo {
+        var sourceFiles = sources.stream().map(File::new).collect(Collectors.toList());
+        var targetFile = new File(target);
+
+        verifyTargetType(targetFile);
+        verifyExistence(sourceFiles, targetFile);
+        verifyNonRecursive(sourceFiles, targetFile);
+
+        var sourceEntries = initializeCopy(sourceFiles, targetFile, suppressInit);
+        copyEntries(sourceEntries, targetFile);
+    }
+
+    private static class ErrorInfo extends RuntimeException {
+        private final boolean queryHandling;
+        private final FileError error;
+
+        public ErrorInfo(FileError error, String errorDescription, boolean queryHandling) {
+            super(errorDescription);
+
+            this.queryHandling = queryHandling;
+            this.error = error;
+        }
+
+        public boolean doNotQuery() {
+            return !queryHandling;
+        }
+
+        public FileError getError() {
+            return error;
+        }
+
+        public String getErrorDescription() {
+            return getMessage();
+        }
+    }
+
+    /**
+     * The state of a copy job that is shared by all workers.
+     */
+    private static class JobState {
+        private final AtomicLong totalBytesAvail = new AtomicLong();
+        private final AtomicLong totalBytesCopied = new AtomicLong();
+        private final AtomicLong totalBytesSkipped = new AtomicLong();
+        private final AtomicLong totalBytesWritten = new AtomicLong();
+        private final AtomicLong filesSkipped = new AtomicLong();
+        private final Set<FileError> ignoredErrors = ConcurrentHashMap.newKeySet();
+        private volatile String rootTargetPath;
+        private volatile OverwriteAction fileOverwriteAction;
+        private volatile OverwriteAction dirOverwriteAction;
+        private volatile boolean ignoreAllErrors;
+        private volatile ErrorInfo abortInfo;
+        private double bytesPerSecond;
+        private final CopyStatistics.Recorder statistics = new CopyStatistics.Recorder();
+        private volatile boolean counted;
+        private volatile CopyStatistics finalStatistics;
+
+        private CopyStatistics getStatistics() {
+            CopyStatistics result = finalStatistics;
+
+            if (result != null)
+                return result;
+
+            long bytesCopied = totalBytesCopied.get();
+
+            return statistics.snapshot(bytesCopied - totalBytesSkipped.get(),
+                    counted ? Math.max(0, totalBytesAvail.get() - bytesCopied) : -1);
+        }
+
+        private synchronized double getBytesPerSecond() {
+            return bytesPerSecond;
+        }
+
+        private synchronized void updateBytesPerSecond(long bytes, long nanos) {
+            if (nanos <= 0 || bytes < MIN_ADAPTIVE_BUFFER_SIZE)
+                return;
+
+            double current = bytes * 1e9 / nanos;
+
+            bytesPerSecond = bytesPerSecond == 0
+                    ? current
+                    : bytesPerSecond * 0.75 + current * 0.25;
+        }
+
+        private JobState snapshot() {
+            var copy = new JobState();
+
+            copy.totalBytesAvail.set(totalBytesAvail.get());
+            copy.totalBytesCopied.set(totalBytesCopied.get());
+            copy.totalBytesSkipped.set(totalBytesSkipped.get());
+            copy.totalBytesWritten.set(totalBytesWritten.get());
+            copy.filesSkipped.set(filesSkipped.get());
+            copy.rootTargetPath = rootTargetPath;
+            copy.finalStatistics = getStatistics();
+
+            return copy;
+        }
+    }
+
+    /**
+     * Copies a single file or directory within the pool.
+     */
+    private class CopyTask extends RecursiveAction {
+        private final ProgressInfo progress;
+        private final FileTreeEntry source;
+        private final String targetPath;
+
+        CopyTask(ProgressInfo progress, FileTreeEntry source, String targetPath) {
+            this.progress = progress;
+            this.source = source;
+            this.targetPath = targetPath;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                checkAborted();
+
+                if (source.isDirectory())
+                    copyDir(progress, source, targetPath);
+                else
+                    copyFile(progress, source, targetPath);
+            } catch (ErrorInfo info) {
+                if (job.abortInfo == null)
+                    job.abortInfo = info;
+
+                throw info;
+            }
+        }
+    }
+
+    /**
+     * Collects the files and directories that are still to force. All
+     * methods are thread-safe.
+     */
+    private class SyncBatch {
+        private final List<FileTreeEntry> sources = new ArrayList<>();
+        private final List<File> targets = new ArrayList<>();
+        private final List<File> orgTargets = new ArrayList<>();
+        private final Set<File> directories = new LinkedHashSet<>();
+        private long bytes;
+
+        synchronized void clear() {
+            sources.clear();
+            targets.clear();
+            orgTargets.clear();
+            directories.clear();
+            bytes = 0;
+        }
+
+        /**
+         * Adds a file that is forced, renamed and recorded as completed when
+         * the batch is flushed. The batch is flushed if it is full.
+         */
+        synchronized void addFile(FileTreeEntry source, File target, File orgTarget) throws ErrorInfo {
+            sources.add(source);
+            targets.add(target);
+            orgTargets.add(orgTarget);
+            bytes += source.getSize();
+
+            if (bytes >= syncBatchSize)
+                flush();
+        }
+
+        synchronized void addDirectory(File directory) {
+            if (directory != null)
+                directories.add(directory.getAbsoluteFile());
+        }
+
+        /**
+         * Forces and renames the kept files and forces the directories. The
+         * errors cannot be queried because they do not belong to the file
+         * that is currently copied.
+         */
+        synchronized void flush() throws ErrorInfo {
+            try {
+                for (int i = 0; i < targets.size(); ++i) {
+                    File target = targets.get(i);
+                    File orgTarget = orgTargets.get(i);
+
+                    forceFile(target);
+                    cleanup(target, orgTarget);
+                    addDirectory(orgTarget.getParentFile());
+                    recordFileCompleted(sources.get(i));
+                }
+
+                for (var directory : directories)
+                    forceDirectory(directory);
+            } catch (ErrorInfo info) {
+                throw new ErrorInfo(info.getError(), info.getErrorDescription(), false);
+            } finally {
+                clear();
+            }
+        }
+    }
+
+    private void verifyTargetType(File targetFile) throws ErrorInfo {
+        if (targetFile.isFile())
+            throw new ErrorInfo(FileError.TARGET_TYPE, String.format(CoreMessages.get("invalidCopyTarget"), targetFile.getAbsolutePath()), true);
+    }
+
+    private void verifyExistence(List<File> sourceFiles, File targetFile) throws ErrorInfo {
+        sourceFiles.forEach(this::verifySourceExistence);
+        verifyDestExistence(targetFile);
+    }
+
+    private void verifySourceExistence(File sourceFile) throws ErrorInfo {
+        if (!sourceFile.exists())
+            throw new ErrorInfo(FileError.SOURCE_NOT_EXIST, String.format(CoreMessages.get("sourceFileDoesNotExist"), sourceFile.getAbsolutePath()), true);
+    }
+
+    private void verifyDestExistence(File targetFile) throws ErrorInfo {
+        if (!targetFile.exists() && !targetFile.mkdirs())
+            throw new ErrorInfo(FileError.CREATE_DIR, String.format(CoreMessages.get("cannotCreateDir"), targetFile.getAbsolutePath()), true);
+    }
+
+    private void verifyNonRecursive(List<File> sourceFiles, File targetFile) throws ErrorInfo {
+        sourceFiles.forEach(file -> verifyNonRecursive(file, targetFile));
+    }
+
+    private void verifyNonRecursive(File sourceFile, File targetFile) throws ErrorInfo {
+        var sourcePath = Path.of(sourceFile.getAbsolutePath());
+        var targetPath = Path.of(targetFile.getAbsolutePath());
+
+        if (targetPath.equals(sourcePath) || targetPath.startsWith(sourcePath))
+            throw new ErrorInfo(FileError.CREATE_DIR, String.format(CoreMessages.get("cannotCopyIntoItself"), sourceFile.getAbsolutePath()), true);
+    }
+
+    private List<FileTreeEntry> initializeCopy(List<File> sourceFiles, File targetFile, boolean suppressInit) throws ErrorInfo {
+        progress.status = CopyProgressStatus.INITIALIZING;
+        progress.fileBytesAvail = 0;
+        progress.fileBytesCopied = 0;
+        progress.sourcePath = "";
+        progress.targetPath = "";
+        job.rootTargetPath = targetFile.getAbsolutePath();
+        job.totalBytesAvail.set(0);
+        job.totalBytesCopied.set(0);
+        job.totalBytesSkipped.set(0);
+        job.totalBytesWritten.set(0);
+        job.filesSkipped.set(0);
+        job.dirOverwriteAction = defaultDirOverwriteAction;
+        job.fileOverwriteAction = defaultFileOverwriteAction;
+        job.ignoreAllErrors = false;
+        job.ignoredErrors.clear();
+        job.abortInfo = null;
+        job.bytesPerSecond = 0;
+        syncBatch.clear();
+
+        var sourceEntries = new ArrayList<FileTreeEntry>(sourceFiles.size());
+
+        for (var source : sourceFiles)
+            sourceEntries.add(readEntry(source));
+
+        if (suppressInit)
+            return sourceEntries;
+
+        reportProgress(progress);
+
+        sourceEntries.forEach(source -> {
+            progress.rootSourcePath = source.getPath();
+
+            if (source.isDirectory())
+                initializeCopy(source);
+            else
+                reportInitializeProgress(progress.rootSourcePath, source.getSize());
+        });
+
+        job.counted = true;
+
+        return sourceEntries;
+    }
+
+    private void checkAborted() throws ErrorInfo {
+        ErrorInfo info = job.abortInfo;
+
+        if (info != null)
+            throw new ErrorInfo(info.getError(), info.getErrorDescription(), false);
+    }
+
+    private void openProgress() {
+        job.statistics.reset();
+        job.counted = false;
+        job.finalStatistics = null;
+
+        throttle = new ProgressThrottle(progressPolicy);
+
+        if (progressFunction != null && progressPolicy.isAsynchronous())
+            dispatcher = new ProgressDispatcher<>("FileCopy progress", info -> progressFunction.report(info) == CopyProgressContinuation.CANCEL);
+    }
+
+    private boolean reportProgress(ProgressInfo progress) {
+        checkAborted();
+
+        if (dispatcher != null && dispatcher.isCanceled())
+            cancel();
+
+        FileJob<ProgressInfo> asyncJob = this.asyncJob;
+
+        if (asyncJob != null && !asyncJob.checkpoint())
+            cancel();
+
+        if (progressFunction == null && asyncJob == null)
+            return true;
+
+        boolean coalescible = progress.status == CopyProgressStatus.INITIALIZING || progress.status == CopyProgressStatus.COPYING_FILE;
+
+        if (coalescible && !throttle.isDue(progress.status == CopyProgressStatus.INITIALIZING ? job.totalBytesAvail.get() : job.totalBytesCopied.get()))
+            return true;
+
+        return deliverProgress(progress, coalescible);
+    }
+
+    private boolean deliverProgress(ProgressInfo progress, boolean coalescible) {
+        FileJob<ProgressInfo> asyncJob = this.asyncJob;
+
+        if (asyncJob != null)
+            asyncJob.publish(progress.snapshot(), coalescible);
+
+        if (progressFunction == null)
+            return true;
+
+        if (dispatcher != null) {
+            dispatcher.post(progress.snapshot(), coalescible);
+            return true;
+        }
+
+        CopyProgressContinuation result;
+
+        synchronized (callbackLock) {
+            result = progressFunction.report(progress);
+        }
+
+        if (result == CopyProgressContinuation.CANCEL)
+            cancel();
+
+        return result == CopyProgressContinuation.CONTINUE;
+    }
+
+    private boolean reportStartDir(ProgressInfo progress, String sourcePath, String targetPath) {
+        progress.status = CopyProgressStatus.START_DIRECTORY;
+        progress.sourcePath = sourcePath;
+        progress.targetPath = targetPath;
+        progress.fileBytesAvail = 0;
+        progress.fileBytesCopied = 0;
+
+        return reportProgress(progress);
+    }
+
+    private void reportFinishedDir(ProgressInfo progress, String sourcePath, String targetPath) {
+        progress.status = CopyProgressStatus.FINISHED_DIRECTORY;
+        progress.sourcePath = sourcePath;
+        progress.targetPath = targetPath;
+        progress.fileBytesAvail = 0;
+        progress.fileBytesCopied = 0;
+
+        reportProgress(progress);
+    }
+
+    private boolean reportStartFile(ProgressInfo progress, FileTreeEntry source, String targetPath) {
+        progress.status = CopyProgressStatus.START_FILE;
+        progress.sourcePath = source.getPath();
+        progress.targetPath = targetPath;
+        progress.fileBytesAvail = source.getSize();
+        progress.fileBytesCopied = 0;
+        progress.fileBytesWritten = 0;
+        progress.fileBytesSkipped = 0;
+        progress.fileDigest = null;
+        progress.fileStartNanos = System.nanoTime();
+
+        return reportProgress(progress);
+    }
+
+    private void reportSkippedFile(ProgressInfo progress, FileTreeEntry source, String targetPath) {
+        progress.status = CopyProgressStatus.SKIPPED_FILE;
+        progress.sourcePath = source.getPath();
+        progress.targetPath = targetPath;
+        progress.fileBytesAvail = source.getSize();
+        progress.fileBytesCopied = source.getSize();
+        job.totalBytesCopied.addAndGet(source.getSize());
+        job.totalBytesSkipped.addAndGet(source.getSize());
+        job.filesSkipped.incrementAndGet();
+
+        reportProgress(progress);
+    }
+
+    private void reportDeleteOrphan(ProgressInfo progress, String targetPath) {
+        progress.status = CopyProgressStatus.DELETE_ORPHAN;
+        progress.sourcePath = "";
         progress.targetPath = targetPath;
         progress.fileBytesAvail = 0;
         progress.fileBytesCopied = 0;
 
-        reportProgress();
-    }
+        reportProgress(progress);
+    }
+
+    boolean reportCopyingFile(ProgressInfo progress, long addBytesCopied, long addBytesWritten) {
+        return reportCopyingFile(progress, addBytesCopied, addBytesWritten, true);
+    }
+
+    private boolean reportCopyingFile(ProgressInfo progress, long addBytesCopied, long addBytesWritten, boolean limitRate) {
+        progress.status = CopyProgressStatus.COPYING_FILE;
+        progress.fileBytesCopied += addBytesCopied;
+        progress.fileBytesWritten += addBytesWritten;
+        job.totalBytesCopied.addAndGet(addBytesCopied);
+        job.totalBytesWritten.addAndGet(addBytesWritten);
+
+        job.statistics.sample(job.totalBytesCopied.get() - job.totalBytesSkipped.get());
+        recordFileProgress(progress);
+
+        if (limitRate)
+            limitRate(addBytesCopied);
+
+        return reportProgress(progress);
+    }
+
+    /**
+     * Removes the bytes of a file that is skipped while it is copied from
+     * the totals.
+     */
+    private void rollbackFile(ProgressInfo progress) {
+        job.totalBytesCopied.addAndGet(-progress.fileBytesCopied);
+        job.totalBytesWritten.addAndGet(-progress.fileBytesWritten);
+        job.totalBytesSkipped.addAndGet(-progress.fileBytesSkipped);
+    }
+
+    private void limitRate(long bytes) throws ErrorInfo {
+        RateLimiter rateLimiter = this.rateLimiter;
+
+        if (rateLimiter == null)
+            return;
+
+        try {
+            rateLimiter.acquire(bytes);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        }
+    }
+
+    private void reportFinishedFile(ProgressInfo progress) {
+        progress.status = CopyProgressStatus.FINISHED_FILE;
+        progress.fileBytesCopied = progress.fileBytesAvail;
+        job.statistics.fileCopied(System.nanoTime() - progress.fileStartNanos);
+
+        reportProgress(progress);
+    }
+
+    private void reportInitializeProgress(String sourcePath, long addTotalBytes) {
+        progress.sourcePath = sourcePath;
+        job.totalBytesAvail.addAndGet(addTotalBytes);
+
+        reportProgress(progress);
+    }
+
+    /**
+     * Must be called only after all tasks of the job have terminated.
+     */
+    private void reportFinished() {
+        job.abortInfo = null;
+        job.finalStatistics = job.getStatistics();
+
+        progress.status = CopyProgressStatus.FINISHED;
+        progress.fileBytesAvail = 0;
+        progress.fileBytesCopied = 0;
+        progress.sourcePath = "";
+        progress.targetPath = "";
+
+        FileJob<ProgressInfo> asyncJob = this.asyncJob;
+
+        if (asyncJob != null)
+            asyncJob.publish(progress.snapshot(), false);
+
+        // The result is ignored because there is nothing left to cancel; an
+        // exception of the progress function is rethrown like it is by a
+        // synchronous report:
+        ProgressDispatcher<ProgressInfo> dispatcher = this.dispatcher;
+        this.dispatcher = null;
+
+        if (dispatcher != null) {
+            dispatcher.post(progress.snapshot(), false);
+            dispatcher.close();
+        } else if (progressFunction != null) {
+            synchronized (callbackLock) {
+                progressFunction.report(progress);
+            }
+        }
+    }
+
+    private void createJournal(List<String> sources, String target, boolean suppressInit) throws ErrorInfo {
+        try {
+            journal.create(sources, target, suppressInit);
+            jobJournal = journal;
+        } catch (IOException | SecurityException e) {
+            throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), journal.getFile().getAbsolutePath()), false);
+        }
+    }
+
+    private void openJournal(CopyJournal journal) throws ErrorInfo {
+        try {
+            journal.open();
+            jobJournal = journal;
+        } catch (IOException | SecurityException e) {
+            throw new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), journal.getFile().getAbsolutePath()), false);
+        }
+    }
+
+    private void closeJournal() {
+        if (jobJournal == null)
+            return;
+
+        try {
+            jobJournal.close(getError() == FileError.NONE);
+        } catch (IOException | SecurityException e) {
+            if (getError() == FileError.NONE)
+                setErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), jobJournal.getFile().getAbsolutePath()));
+        }
+
+        jobJournal = null;
+    }
+
+    private boolean isResumed(File source) {
+        return jobJournal != null && jobJournal.isStarted(source.getAbsolutePath());
+    }
+
+    private void recordDirectoryStarted(FileTreeEntry source) throws ErrorInfo {
+        if (jobJournal == null)
+            return;
+
+        try {
+            jobJournal.directoryStarted(source.getPath());
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), jobJournal.getFile().getAbsolutePath()), false);
+        }
+    }
+
+    private void recordFileProgress(ProgressInfo progress) throws ErrorInfo {
+        if (jobJournal == null || progress.writeFile == null)
+            return;
+
+        try {
+            jobJournal.fileProgress(progress.sourceEntry, progress.writeFile, progress.fileBytesCopied);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), jobJournal.getFile().getAbsolutePath()), false);
+        }
+    }
+
+    private void recordFileCompleted(FileTreeEntry source) throws ErrorInfo {
+        if (jobJournal == null)
+            return;
+
+        try {
+            jobJournal.fileCompleted(source.getPath());
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), jobJournal.getFile().getAbsolutePath()), false);
+        }
+    }
+
+    private boolean exists(File file) throws ErrorInfo {
+        try {
+            return file.exists();
+        } catch (SecurityException e) {
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), file.getAbsolutePath()), true);
+        }
+    }
+
+    private boolean isDirectory(File file) throws ErrorInfo {
+        try {
+            return file.isDirectory();
+        } catch (SecurityException e) {
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), file.getAbsolutePath()), true);
+        }
+    }
+
+    private DirectoryStats.Summary scan(FileTreeEntry source) throws ErrorInfo {
+        try {
+            return directoryStats.scan(source.getFile());
+        } catch (AccessDeniedException e) {
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), e.getFile()), true);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.READ_DIR, String.format(CoreMessages.get("cannotReadDir"), source.getPath()), true);
+        }
+    }
+
+    private FileTreeEntry readEntry(File file) throws ErrorInfo {
+        try {
+            return FileTreeEntry.of(file);
+        } catch (AccessDeniedException | SecurityException e) {
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), file.getAbsolutePath()), true);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), file.getAbsolutePath()), true);
+        }
+    }
+
+    private List<FileTreeEntry> listEntries(FileTreeEntry source, boolean cache) throws ErrorInfo {
+        try {
+            return cache
+                    ? source.cacheEntries(filenameFilter, pathFilter)
+                    : source.getEntries(filenameFilter, pathFilter);
+        } catch (AccessDeniedException | SecurityException e) {
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), source.getPath()), true);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.READ_DIR, String.format(CoreMessages.get("cannotReadDir"), source.getPath()), true);
+        }
+    }
+
+    private void initializeCopy(FileTreeEntry source) {
+        if (directoryStats != null && filenameFilter == null && pathFilter == null) {
+            reportInitializeProgress(source.getPath(), scan(source).getSize());
+            return;
+        }
+
+        reportInitializeProgress(source.getPath(), 0);
+
+        for (var entry : listEntries(source, true)) {
+            if (entry.isDirectory())
+                initializeCopy(entry);
+            else
+                reportInitializeProgress(entry.getPath(), entry.getSize());
+        }
+    }
+
+    private void copyEntries(List<FileTreeEntry> sourceEntries, File targetFile) throws ErrorInfo {
+        if (parallelism > 1) {
+            pool = new ForkJoinPool(parallelism);
+        } else if (smallFileThreshold > 0) {
+            smallFileExecutor = newSmallFileExecutor(smallFileConcurrency);
+            smallFilePermits = new Semaphore(smallFileConcurrency);
+        }
+
+        boolean completed = false;
+
+        try {
+            sourceEntries.forEach(source -> {
+                File target = new File(queryDestPath(source.getFile(), targetFile));
+
+                if (exists(target))
+                    verifyNonRecursive(source.getFile(), target);
+
+                progress.rootSourcePath = source.getPath();
+
+                if (pool != null)
+                    pool.invoke(new CopyTask(progress, source, target.getAbsolutePath()));
+                else if (source.isDirectory())
+                    copyDir(progress, source, target.getAbsolutePath());
+                else
+                    copyFile(progress, source, target.getAbsolutePath());
+            });
+
+            completed = true;
+        } finally {
+            // Tasks that are still running must stop before the job is
+            // finished, so that they do not report after FINISHED:
+            if (!completed && job.abortInfo == null)
+                job.abortInfo = new ErrorInfo(FileError.CANCELED, CoreMessages.get("operationCanceled"), false);
+
+            if (pool != null) {
+                pool.shutdownNow();
+                awaitTermination(pool);
+                pool = null;
+            }
+
+            if (smallFileExecutor != null) {
+                smallFileExecutor.shutdownNow();
+                awaitTermination(smallFileExecutor);
+                smallFileExecutor = null;
+                smallFilePermits = null;
+            }
+
+            // The batch is flushed only after the tasks have stopped, so
+            // that no file is added after it. On an abort, the files that
+            // are completely copied are kept:
+            if (completed) {
+                syncBatch.flush();
+            } else {
+                try {
+                    syncBatch.flush();
+                } catch (ErrorInfo ignored) {
+                    // The first error is reported.
+                }
+            }
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+    }
+
+    private static ExecutorService newSmallFileExecutor(int concurrency) {
+        // Virtual threads are used if the runtime provides them:
+        try {
+            return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return Executors.newFixedThreadPool(concurrency, runnable -> {
+                var thread = new Thread(runnable, "FileCopy small files");
+                thread.setDaemon(true);
+
+                return thread;
+            });
+        }
+    }
+
+    private Future<?> submitSmallFile(ProgressInfo progress, FileTreeEntry source, String targetPath) throws ErrorInfo {
+        checkAborted();
+
+        try {
+            smallFilePermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        }
+
+        var fileProgress = new ProgressInfo(progress);
+
+        try {
+            return smallFileExecutor.submit(() -> {
+                try {
+                    checkAborted();
+                    copyFile(fileProgress, source, targetPath);
+                } catch (ErrorInfo info) {
+                    if (job.abortInfo == null)
+                        job.abortInfo = info;
+                } finally {
+                    smallFilePermits.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            smallFilePermits.release();
+            throw e;
+        }
+    }
+
+    private void awaitSmallFiles(List<Future<?>> smallFiles) throws ErrorInfo {
+        boolean interrupted = false;
+
+        for (var smallFile : smallFiles) {
+            while (true) {
+                try {
+                    smallFile.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // The tasks use the directory, so they must be finished
+                    // before the directory is left:
+                    interrupted = true;
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof Error)
+                        throw (Error)e.getCause();
+
+                    throw (RuntimeException)e.getCause();
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+            cancel();
+        }
+
+        checkAborted();
+    }
+
+    private String queryDestPath(File source, File target) {
+        Path srcPath = Path.of(source.getAbsolutePath());
+        Path dstPath = Path.of(target.getAbsolutePath(), source.getName());
+
+        if (alternativeTargetPathFunction == null)
+            return dstPath.toString();
+
+        if (dstPath.equals(srcPath) && target.exists())
+            return alternativeTargetPathFunction.alternativePath(dstPath.toString());
+
+        return dstPath.toString();
+    }
+
+    private CopyErrorAction queryErrorAction(ErrorInfo info, File source, File target) {
+        synchronized (callbackLock) {
+            // Another worker may have decided to ignore the error while this
+            // one was waiting:
+            if (job.ignoreAllErrors || job.ignoredErrors.contains(info.getError()))
+                return CopyErrorAction.IGNORE;
+
+            return queryErrorAction.query(info.getError(), info.getErrorDescription(), source, target);
+        }
+    }
+
+    @SuppressWarnings("DuplicatedCode")
+    private void copyDir(ProgressInfo progress, FileTreeEntry source, String targetPath) {
+        if (!reportStartDir(progress, source.getPath(), targetPath))
+            return;
+
+        while (true) {
+            try {
+                if (!canWriteDir(source.getFile(), new File(targetPath)))
+                    return;
+
+                recordDirectoryStarted(source);
+                copyDirNoQuery(progress, source, targetPath);
+
+                break;
+            } catch (ErrorInfo info) {
+                if (queryErrorAction == null || info.doNotQuery())
+                    throw info;
+
+                if (job.ignoreAllErrors || job.ignoredErrors.contains(info.getError()))
+                    return;
+
+                switch (queryErrorAction(info, source.getFile(), new File(targetPath))) {
+                    case RETRY:
+                        continue;
+
+                    case IGNORE:
+                        return;
+
+                    case IGNORE_ALL_THIS:
+                        job.ignoredErrors.add(info.getError());
+                        return;
+
+                    case IGNORE_ALL:
+                        job.ignoreAllErrors = true;
+                        return;
+
+                    default:
+                        throw new ErrorInfo(info.getError(), info.getErrorDescription(), false);
+                }
+            }
+        }
+
+        reportFinishedDir(progress, source.getPath(), targetPath);
+    }
+
+    private void copyDirNoQuery(ProgressInfo progress, FileTreeEntry source, String targetPath) {
+        var entries = listEntries(source, false);
+
+        if (pool == null) {
+            var smallFiles = smallFileExecutor != null ? new ArrayList<Future<?>>() : null;
+
+            try {
+                for (var entry : entries) {
+                    String newTargetPath = Path.of(targetPath, entry.getFile().getName()).toString();
+
+                    if (entry.isDirectory())
+                        copyDir(progress, entry, newTargetPath);
+                    else if (smallFiles != null && entry.getSize() < smallFileThreshold)
+                        smallFiles.add(submitSmallFile(progress, entry, newTargetPath));
+                    else
+                        copyFile(progress, entry, newTargetPath);
+                }
+            } catch (ErrorInfo info) {
+                // Stops the running small files:
+                if (smallFiles != null && job.abortInfo == null)
+                    job.abortInfo = info;
+
+                throw info;
+            } finally {
+                if (smallFiles != null)
+                    awaitSmallFiles(smallFiles);
+            }
+        } else {
+            var tasks = new ArrayList<CopyTask>(entries.size());
+
+            for (var entry : entries)
+                tasks.add(new CopyTask(new ProgressInfo(progress), entry, Path.of(targetPath, entry.getFile().getName()).toString()));
+
+            ForkJoinTask.invokeAll(tasks);
+        }
+
+        // The renames must be done before the time of the directory is set:
+        if (durabilityPolicy != DurabilityPolicy.NONE)
+            syncBatch.flush();
+
+        if (syncMode != SyncMode.NONE && deleteOrphans)
+            deleteOrphans(progress, source, entries, targetPath);
+
+        copyAttributes(source, new File(targetPath));
+        source.releaseEntries();
+    }
+
+    private void deleteOrphans(ProgressInfo progress, FileTreeEntry source, List<FileTreeEntry> entries, String targetPath) {
+        var names = new HashSet<String>();
+
+        for (var entry : entries)
+            names.add(entry.getFile().getName());
+
+        String[] targetNames;
+
+        try {
+            targetNames = new File(targetPath).list();
+        } catch (SecurityException e) {
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), targetPath), true);
+        }
+
+        if (targetNames == null)
+            throw new ErrorInfo(FileError.READ_DIR, String.format(CoreMessages.get("cannotReadDir"), targetPath), true);
+
+        for (var name : targetNames) {
+            if (names.contains(name) || filenameFilter != null && !filenameFilter.accept(source.getFile(), name))
+                continue;
+
+            String relativePath = source.getRelativePath().isEmpty() ? name : source.getRelativePath() + "/" + name;
+
+            if (pathFilter != null && !pathFilter.accept(relativePath, new File(targetPath, name).isDirectory()))
+                continue;
+
+            String orphanPath = Path.of(targetPath, name).toString();
+            reportDeleteOrphan(progress, orphanPath);
+
+            var delete = new FileDelete(null);
+            delete.start(orphanPath, true);
+
+            if (delete.getError() != FileError.NONE)
+                throw new ErrorInfo(delete.getError(), delete.getErrorDescription(), true);
+        }
+    }
+
+    @SuppressWarnings("DuplicatedCode")
+    private void copyFile(ProgressInfo progress, FileTreeEntry source, String targetPath) {
+        if (jobJournal != null && jobJournal.isCompleted(source.getPath())) {
+            reportSkippedFile(progress, source, targetPath);
+            return;
+        }
+
+        if (syncMode != SyncMode.NONE && isUpToDate(source, new File(targetPath))) {
+            recordFileCompleted(source);
+            reportSkippedFile(progress, source, targetPath);
+            return;
+        }
+
+        if (!reportStartFile(progress, source, targetPath))
+            return;
+
+        while (true) {
+            try {
+                if (!canWriteFile(source.getFile(), new File(targetPath)))
+                    return;
+
+                copyFileNoQuery(progress, source, targetPath);
+
+                break;
+            } catch (ErrorInfo info) {
+                if (queryErrorAction == null || info.doNotQuery())
+                    throw info;
+
+                if (job.ignoreAllErrors || job.ignoredErrors.contains(info.getError()))
+                    return;
+
+                switch (queryErrorAction(info, source.getFile(), new File(targetPath))) {
+                    case RETRY:
+                        continue;
+
+                    case IGNORE:
+                        return;
+
+                    case IGNORE_ALL_THIS:
+                        job.ignoredErrors.add(info.getError());
+                        return;
+
+                    case IGNORE_ALL:
+                        job.ignoreAllErrors = true;
+                        return;
+
+                    default:
+                        throw new ErrorInfo(info.getError(), info.getErrorDescription(), false);
+                }
+            }
+        }
+
+        reportFinishedFile(progress);
+    }
+
+    private boolean isUpToDate(FileTreeEntry source, File target) {
+        try {
+            var attributes = Files.readAttributes(target.toPath(), BasicFileAttributes.class);
+
+            boolean contentCompared = syncMode == SyncMode.CONTENT;
+
+            if (!attributes.isRegularFile() || !FileCompare.hasSameAttributes(source.getSize(), source.getLastModified(),
+                    attributes.size(), attributes.lastModifiedTime().toMillis(), contentCompared))
+                return false;
+
+            return !contentCompared || FileCompare.isSameContent(source.getFile().toPath(), target.toPath(), source.getSize());
+        } catch (IOException | SecurityException e) {
+            // The target is copied, which reports any error that is
+            // still present:
+            return false;
+        }
+    }
+
+    private void copyFileNoQuery(ProgressInfo progress, FileTreeEntry source, String targetPath) {
+        File orgTarget = new File(targetPath);
+        File target = orgTarget;
+
+        if (deltaCopyThreshold > 0 && source.getSize() >= deltaCopyThreshold && verifyMode == VerifyMode.NONE && orgTarget.isFile()) {
+            if (copyDelta(progress, source, orgTarget))
+                completeFile(source, orgTarget, orgTarget);
+
+            return;
+        }
+
+        try {
+            // With a journal, a durability policy or a range copy, a file
+            // that exists in the target must be complete; partial files are
+            // left only as temporary files:
+            if (jobJournal != null || durabilityPolicy != DurabilityPolicy.NONE || isRangeCopy(source.getSize()) || target.exists())
+                target = new File(targetPath + "~");
+
+            // The checksum of a continued file would miss the kept data:
+            long offset = jobJournal != null && verifyMode == VerifyMode.NONE
+                    ? jobJournal.getResumeOffset(source, target)
+                    : -1;
+
+            if (offset < 0) {
+                // The interrupted job may have created the temporary file
+                // without recording a checkpoint for it:
+                if (jobJournal != null && jobJournal.isReopened())
+                    cleanup(target);
+
+                if (!target.createNewFile())
+                    throw new ErrorInfo(FileError.CREATE_FILE, String.format(CoreMessages.get("cannotCreateFile"), target.getAbsolutePath()), true);
+            }
+
+            boolean copied;
+
+            progress.sourceEntry = source;
+            progress.writeFile = target;
+            progress.digest = verifyMode != VerifyMode.NONE ? createDigest() : null;
+
+            try {
+                copied = copyData(progress, source.getFile(), target, Math.max(offset, 0));
+            } catch (ErrorInfo info) {
+                // The kept data of an interrupted job is not discarded:
+                if (jobJournal == null || info.getError() != FileError.CANCELED)
+                    cleanup(target);
+
+                throw info;
+            } finally {
+                progress.sourceEntry = null;
+                progress.writeFile = null;
+
+                if (progress.digest != null) {
+                    progress.fileDigest = progress.digest.digest();
+                    progress.digest = null;
+                }
+            }
+
+            if (!copied) {
+                cleanup(target);
+                return;
+            }
+
+            if (verifyMode == VerifyMode.REREAD_TARGET)
+                verifyTarget(progress.fileDigest, target);
+
+            copyAttributes(source, target);
+            completeFile(source, target, orgTarget);
+        } catch (SecurityException e) {
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), target.getAbsolutePath()), true);
+        } catch (IOException e) {
+            cleanup(target);
+            throw new ErrorInfo(FileError.CREATE_FILE, String.format(CoreMessages.get("cannotCreateFile"), target.getAbsolutePath()), true);
+        }
+    }
+
+    private boolean copyData(ProgressInfo progress, File source, File target, long offset) throws IOException {
+        try (FileChannel in = FileChannel.open(source.toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+            if (offset > 0) {
+                in.position(offset);
+                out.truncate(offset).position(offset);
+
+                progress.fileBytesCopied = offset;
+                progress.fileBytesSkipped = offset;
+                job.totalBytesCopied.addAndGet(offset);
+                job.totalBytesSkipped.addAndGet(offset);
+            }
+
+            boolean copied;
+
+            if (offset == 0 && isRangeCopy(progress.fileBytesAvail))
+                copied = copyRanges(progress, source, target, in, out);
+            else if (offset == 0 && progress.fileBytesAvail > 0 && progress.fileBytesAvail < smallFileThreshold)
+                copied = copySmallFile(progress, source, target, in, out);
+            else if (copyMethod == CopyMethod.CHANNEL && !sparse && verifyMode == VerifyMode.NONE)
+                copied = transferData(progress, source, target, in, out, offset);
+            else if (copyMethod == CopyMethod.PIPELINED && !sparse)
+                copied = pipeData(progress, source, target, in, out, offset);
+            else
+                copied = copyData(progress, source, target, in, out, offset);
+
+            if (copied && (verifyMode != VerifyMode.NONE || durabilityPolicy == DurabilityPolicy.PER_FILE))
+                force(target, out);
+
+            return copied;
+        }
+    }
+
+    private void completeFile(FileTreeEntry source, File target, File orgTarget) throws ErrorInfo {
+        switch (durabilityPolicy) {
+            case BATCHED:
+                syncBatch.addFile(source, target, orgTarget);
+                return;
+
+            case PER_FILE:
+                // A delta copy writes into the target that is not forced yet:
+                if (target == orgTarget)
+                    forceFile(target);
+
+                cleanup(target, orgTarget);
+                syncBatch.addDirectory(orgTarget.getParentFile());
+                break;
+
+            default:
+                cleanup(target, orgTarget);
+                break;
+        }
+
+        recordFileCompleted(source);
+    }
+
+    private static void forceFile(File target) throws ErrorInfo {
+        try (FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.WRITE)) {
+            out.force(true);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), target.getAbsolutePath()), true);
+        }
+    }
+
+    private static void forceDirectory(File directory) {
+        try (FileChannel channel = FileChannel.open(directory.toPath(), StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Not all platforms can force a directory.
+        }
+    }
+
+    private static void force(File target, FileChannel out) {
+        try {
+            out.force(true);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), target.getAbsolutePath()), true);
+        }
+    }
+
+    private FileDigest createDigest() {
+        try {
+            return FileDigest.create(checksumAlgorithm);
+        } catch (NoSuchAlgorithmException e) {
+            // The algorithm is verified when it is set:
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void verifyTarget(byte[] expected, File target) throws ErrorInfo {
+        FileDigest digest = createDigest();
+        int bufferSize = Math.max(copyBufferSize, MIN_ADAPTIVE_BUFFER_SIZE);
+        ByteBuffer buffer = bufferPool.acquire(bufferSize);
+
+        try (FileChannel in = FileChannel.open(target.toPath(), StandardOpenOption.READ)) {
+            long position = 0;
+            int bytesRead;
+
+            while ((bytesRead = readBlock(in, buffer.clear().limit(bufferSize), position)) > 0) {
+                digest.update(buffer.flip());
+                position += bytesRead;
+            }
+        } catch (IOException e) {
+            cleanup(target);
+            throw new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), target.getAbsolutePath()), true);
+        } finally {
+            bufferPool.release(buffer);
+        }
+
+        if (!MessageDigest.isEqual(expected, digest.digest())) {
+            cleanup(target);
+            throw new ErrorInfo(FileError.CHECKSUM_MISMATCH, String.format(CoreMessages.get("checksumMismatch"), target.getAbsolutePath()), true);
+        }
+    }
+
+    private boolean copySmallFile(ProgressInfo progress, File source, File target, FileChannel in, FileChannel out) throws IOException {
+        int size = (int)progress.fileBytesAvail;
+        ByteBuffer buffer = bufferPool.acquire(size);
+        int bytesRead;
+
+        try {
+            try {
+                bytesRead = readBlock(in, buffer.limit(size), 0);
+            } catch (IOException e) {
+                throw new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), source.getAbsolutePath()), true);
+            }
+
+            buffer.flip();
+
+            if (progress.digest != null)
+                progress.digest.update(buffer);
+
+            try {
+                while (buffer.hasRemaining())
+                    out.write(buffer);
+            } catch (IOException e) {
+                throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), target.getAbsolutePath()), true);
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+
+        if (!reportCopyingFile(progress, bytesRead, bytesRead)) {
+            rollbackFile(progress);
+            return false;
+        }
+
+        // A file that has grown since it was listed is copied to its end:
+        if (bytesRead == size && in.size() > size)
+            return copyData(progress, source, target, in.position(size), out, size);
+
+        return true;
+    }
+
+    private boolean transferData(ProgressInfo progress, File source, File target, FileChannel in, FileChannel out, long position) throws IOException {
+        long size = in.size();
+
+        while (position < size) {
+            long bytesTransferred;
+
+            try {
+                bytesTransferred = in.transferTo(position, Math.min(transferChunkSize, size - position), out);
+            } catch (UnsupportedOperationException e) {
+                bytesTransferred = 0;
+            } catch (IOException e) {
+                throw transferError(e, source, target);
+            }
+
+            // A channel that cannot transfer (or a source that has shrunk
+            // meanwhile) is worked by the buffered copy from where the
+            // transfer stopped:
+            if (bytesTransferred <= 0)
+                return copyData(progress, source, target, in.position(position), out.position(position), position);
+
+            position += bytesTransferred;
+
+            if (!reportCopyingFile(progress, bytesTransferred, bytesTransferred)) {
+                rollbackFile(progress);
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * A failed transfer is reported as a write error only if the exception
+     * names the target; otherwise, including when the failing file is not
+     * known, it is reported as a read error of the source.
+     */
+    private static ErrorInfo transferError(IOException e, File source, File target) {
+        String file = e instanceof FileSystemException ? ((FileSystemException)e).getFile() : null;
+
+        if (file != null && new File(file).getAbsoluteFile().equals(target.getAbsoluteFile()))
+            return new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), target.getAbsolutePath()), true);
+
+        return new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), source.getAbsolutePath()), true);
+    }
+
+    private boolean copyData(ProgressInfo progress, File source, File target, FileChannel in, FileChannel out, long bytesCopied) {
+        int bufferSize = getBufferSize(progress.fileBytesAvail - bytesCopied);
+        ByteBuffer buffer = bufferPool.acquire(bufferSize);
+        long startNanos = System.nanoTime();
+        long totalBytesRead = bytesCopied;
+        int bytesRead;
+
+        try {
+            while (true) {
+                long chunkNanos = System.nanoTime();
+
+                buffer.clear().limit(bufferSize);
+
+                try {
+                    bytesRead = in.read(buffer);
+                } catch (IOException e) {
+                    throw new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), source.getAbsolutePath()), true);
+                }
+
+                if (bytesRead == -1) {
+                    if (sparse)
+                        setSparseLength(target, out);
+
+                    job.updateBytesPerSecond(totalBytesRead - bytesCopied, System.nanoTime() - startNanos);
+                    return true;
+                }
+
+                buffer.flip();
+
+                if (progress.digest != null)
+                    progress.digest.update(buffer);
+
+                int bytesWritten = bytesRead;
+
+                try {
+                    if (sparse) {
+                        bytesWritten = writeSparse(out, buffer);
+                    } else {
+                        while (buffer.hasRemaining())
+                            out.write(buffer);
+                    }
+                } catch (IOException e) {
+                    throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), target.getAbsolutePath()), true);
+                }
+
+                totalBytesRead += bytesRead;
+
+                if (adaptiveBufferSize && bytesRead == bufferSize && bufferSize < MAX_ADAPTIVE_BUFFER_SIZE
+                        && System.nanoTime() - chunkNanos < ADAPTIVE_BUFFER_SECONDS * 0.5e9) {
+                    // The old buffer is released only if the larger one is
+                    // available, so that the finally block never releases it
+                    // twice:
+                    ByteBuffer larger = bufferPool.acquire(bufferSize * 2);
+
+                    bufferPool.release(buffer);
+                    buffer = larger;
+                    bufferSize *= 2;
+                }
+
+                if (!reportCopyingFile(progress, bytesRead, bytesWritten)) {
+                    rollbackFile(progress);
+                    return false;
+                }
+            }
+        } finally {
+            bufferPool.release(buffer);
+        }
+    }
+
+    /**
+     * A chunk that is passed from the reader to the writer of a pipelined
+     * copy.
+     */
+    private static final class Chunk {
+        static final Chunk END = new Chunk(null, null);
+
+        final ByteBuffer buffer;
+        final IOException error;
+
+        Chunk(ByteBuffer buffer, IOException error) {
+            this.buffer = buffer;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Reads a file into the free buffers of a pipeline and passes them as
+     * filled chunks to the writer. The reader stops at the end of the file,
+     * on the first error or when it is stopped by the writer.
+     */
+    private static final class PipelineReader implements Runnable {
+        private final FileChannel in;
+        private final BlockingQueue<ByteBuffer> free;
+        private final BlockingQueue<Chunk> filled;
+        private final CountDownLatch done = new CountDownLatch(1);
+        private volatile boolean stopped;
+
+        PipelineReader(FileChannel in, BlockingQueue<ByteBuffer> free, BlockingQueue<Chunk> filled) {
+            this.in = in;
+            this.free = free;
+            this.filled = filled;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!stopped) {
+                    // The writer is polled, so that the reader does not block
+                    // forever if the writer stops:
+                    ByteBuffer buffer = free.poll(50, TimeUnit.MILLISECONDS);
 
-    private boolean reportStartFile(File source, String targetPath) {
-        progress.status = CopyProgressStatus.START_FILE;
-        progress.sourcePath = source.getAbsolutePath();
-        progress.targetPath = targetPath;
-        progress.fileBytesAvail = source.length();
-        progress.fileBytesCopied = 0;
+                    if (buffer == null)
+                        continue;
 
-        return reportProgress();
-    }
+                    int bytesRead;
 
-    boolean reportCopyingFile(long addBytesCopied) {
-        progress.status = CopyProgressStatus.COPYING_FILE;
-        progress.fileBytesCopied += addBytesCopied;
-        progress.totalBytesCopied += addBytesCopied;
+                    try {
+                        bytesRead = in.read(buffer);
+                    } catch (IOException e) {
+                        filled.put(new Chunk(null, e));
+                        return;
+                    }
 
-        return reportProgress();
-    }
+                    if (bytesRead == -1) {
+                        filled.put(Chunk.END);
+                        return;
+                    }
 
-    private void reportFinishedFile() {
-        progress.status = CopyProgressStatus.FINISHED_FILE;
-        progress.fileBytesCopied = progress.fileBytesAvail;
+                    filled.put(new Chunk(buffer.flip(), null));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                done.countDown();
+            }
+        }
 
-        reportProgress();
-    }
+        /**
+         * Stops the reader and waits until it does no longer use the buffers.
+         */
+        void stop() {
+            stopped = true;
 
-    private void reportInitializeProgress(String sourcePath, long addTotalBytes) {
-        progress.sourcePath = sourcePath;
-        progress.totalBytesAvail += addTotalBytes;
+            boolean interrupted = false;
+
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
 
-        reportProgress();
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
     }
 
-    private void reportFinished() {
-        progress.status = CopyProgressStatus.FINISHED;
-        progress.fileBytesAvail = 0;
-        progress.fileBytesCopied = 0;
-        progress.sourcePath = "";
-        progress.targetPath = "";
+    private boolean pipeData(ProgressInfo progress, File source, File target, FileChannel in, FileChannel out, long bytesCopied) {
+        int bufferSize = getBufferSize(progress.fileBytesAvail - bytesCopied);
+        var buffers = new ArrayList<ByteBuffer>(pipelineDepth);
+        var free = new ArrayBlockingQueue<ByteBuffer>(pipelineDepth);
+        var filled = new ArrayBlockingQueue<Chunk>(pipelineDepth + 1);
+        long startNanos = System.nanoTime();
+        long totalBytesRead = bytesCopied;
 
-        reportProgress();
-    }
+        for (int i = 0; i < pipelineDepth; ++i) {
+            ByteBuffer buffer = bufferPool.acquire(bufferSize);
 
-    private boolean exists(File file) throws ErrorInfo {
-        try {
-            return file.exists();
-        } catch (SecurityException e) {
-            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), file.getAbsolutePath()), true);
+            buffers.add(buffer);
+            free.add(buffer.clear().limit(bufferSize));
         }
-    }
 
-    private boolean isDirectory(File file) throws ErrorInfo {
-        try {
-            return file.isDirectory();
-        } catch (SecurityException e) {
-            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), file.getAbsolutePath()), true);
-        }
-    }
+        var reader = new PipelineReader(in, free, filled);
 
-    private File[] listFiles(File source) {
         try {
-            return filenameFilter == null
-                    ? source.listFiles()
-                    : source.listFiles(filenameFilter);
-        } catch (SecurityException e) {
-            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), source.getAbsolutePath()), true);
-        }
-    }
+            HELPER_EXECUTOR.execute(reader);
 
-    private void initializeCopy(File source) {
-        reportInitializeProgress(source.getAbsolutePath(), 0);
+            while (true) {
+                Chunk chunk;
 
-        for (var file : listFiles(source)) {
-            if (isDirectory(file))
-                initializeCopy(file);
-            else
-                reportInitializeProgress(file.getAbsolutePath(), file.length());
-        }
-    }
+                try {
+                    chunk = filled.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new ErrorInfo(FileError.CANCELED, CoreMessages.get("operationCanceled"), false);
+                }
 
-    private void copyEntries(List<File> sourceFiles, File targetFile) throws ErrorInfo {
-        sourceFiles.forEach(source -> {
-            File target = new File(queryDestPath(source, targetFile));
+                if (chunk.error != null)
+                    throw new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), source.getAbsolutePath()), true);
 
-            if (exists(target))
-                verifyNonRecursive(source, target);
+                if (chunk == Chunk.END) {
+                    job.updateBytesPerSecond(totalBytesRead - bytesCopied, System.nanoTime() - startNanos);
+                    return true;
+                }
 
-            progress.rootSourcePath = source.getAbsolutePath();
+                ByteBuffer buffer = chunk.buffer;
+                int bytesRead = buffer.remaining();
 
-            if (isDirectory(source))
-                copyDir(source, target.getAbsolutePath());
-            else
-                copyFile(source, target.getAbsolutePath());
-        });
-    }
+                if (progress.digest != null)
+                    progress.digest.update(buffer);
 
-    private String queryDestPath(File source, File target) {
-        Path srcPath = Path.of(source.getAbsolutePath());
-        Path dstPath = Path.of(target.getAbsolutePath(), source.getName());
+                try {
+                    while (buffer.hasRemaining())
+                        out.write(buffer);
+                } catch (IOException e) {
+                    throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), target.getAbsolutePath()), true);
+                }
 
-        if (alternativeTargetPathFunction == null)
-            return dstPath.toString();
+                // The queue has room for all buffers:
+                free.add(buffer.clear().limit(bufferSize));
+                totalBytesRead += bytesRead;
 
-        if (dstPath.equals(srcPath) && target.exists())
-            return alternativeTargetPathFunction.alternativePath(dstPath.toString());
+                if (!reportCopyingFile(progress, bytesRead, bytesRead)) {
+                    rollbackFile(progress);
+                    return false;
+                }
+            }
+        } finally {
+            reader.stop();
+            buffers.forEach(bufferPool::release);
+        }
+    }
 
-        return dstPath.toString();
+    private boolean isRangeCopy(long size) {
+        return rangeCopyThreshold > 0 && size >= rangeCopyThreshold && size > rangeSize
+                && !sparse && verifyMode == VerifyMode.NONE && jobJournal == null;
     }
 
-    @SuppressWarnings("DuplicatedCode")
-    private void copyDir(File source, String targetPath) {
-        if (!reportStartDir(source.getAbsolutePath(), targetPath))
-            return;
+    /**
+     * Copies the ranges of a file at their positions. Each worker takes the
+     * next range that is not copied yet until all ranges are copied, an
+     * error occurs or the copier is stopped.
+     */
+    private final class RangeCopier implements Runnable {
+        private final FileChannel in;
+        private final FileChannel out;
+        private final long size;
+        private final long rangeSize;
+        private final int bufferSize;
+        private final AtomicLong nextRange = new AtomicLong();
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final CountDownLatch done;
+        private volatile boolean stopped;
+        private volatile boolean canceled;
+        private volatile IOException readError;
+        private volatile IOException writeError;
+
+        RangeCopier(FileChannel in, FileChannel out, long size, long rangeSize, int bufferSize, int workerCount) {
+            this.in = in;
+            this.out = out;
+            this.size = size;
+            this.rangeSize = rangeSize;
+            this.bufferSize = bufferSize;
+            this.done = new CountDownLatch(workerCount);
+        }
+
+        @Override
+        public void run() {
+            ByteBuffer buffer = null;
 
-        while (true) {
             try {
-                if (!canWriteDir(source, new File(targetPath)))
+                buffer = bufferPool.acquire(bufferSize);
+
+                while (!stopped) {
+                    long start = nextRange.getAndIncrement() * rangeSize;
+
+                    if (start >= size)
+                        break;
+
+                    copyRange(buffer, start, Math.min(size, start + rangeSize));
+                }
+            } finally {
+                if (buffer != null)
+                    bufferPool.release(buffer);
+
+                done.countDown();
+            }
+        }
+
+        private void copyRange(ByteBuffer buffer, long position, long end) {
+            while (position < end && !stopped) {
+                // A paused job must stop the workers, too:
+                FileJob<ProgressInfo> asyncJob = FileCopy.this.asyncJob;
+
+                if (asyncJob != null && !asyncJob.checkpoint()) {
+                    canceled = true;
+                    stopped = true;
                     return;
+                }
 
-                copyDirNoQuery(source, targetPath);
+                buffer.clear().limit((int)Math.min(bufferSize, end - position));
 
-                break;
-            } catch (ErrorInfo info) {
-                if (queryErrorAction == null || info.doNotQuery())
-                    throw info;
+                int bytesRead;
+
+                try {
+                    bytesRead = in.read(buffer, position);
 
-                if (progress.ignoreAllErrors || progress.ignoredErrors.contains(info.getError()))
+                    // The file is truncated while it is copied:
+                    if (bytesRead == -1)
+                        throw new EOFException();
+                } catch (IOException e) {
+                    fail(e, true);
                     return;
+                }
 
-                switch (queryErrorAction.query(info.getError(), info.getErrorDescription(), source, new File(targetPath))) {
-                    case RETRY:
-                        continue;
+                buffer.flip();
 
-                    case IGNORE:
-                        return;
+                try {
+                    while (buffer.hasRemaining())
+                        out.write(buffer, position + buffer.position());
+                } catch (IOException e) {
+                    fail(e, false);
+                    return;
+                }
 
-                    case IGNORE_ALL_THIS:
-                        progress.ignoredErrors.add(info.getError());
-                        return;
+                position += bytesRead;
+                pendingBytes.addAndGet(bytesRead);
 
-                    case IGNORE_ALL:
-                        progress.ignoreAllErrors = true;
-                        return;
+                RateLimiter rateLimiter = FileCopy.this.rateLimiter;
 
-                    default:
-                        throw new ErrorInfo(info.getError(), info.getErrorDescription(), false);
+                if (rateLimiter != null) {
+                    try {
+                        rateLimiter.acquire(bytesRead);
+                    } catch (InterruptedException e) {
+                        canceled = true;
+                        stopped = true;
+                        return;
+                    }
                 }
             }
         }
 
-        reportFinishedDir(source.getAbsolutePath(), targetPath);
-    }
+        private synchronized void fail(IOException e, boolean read) {
+            if (readError == null && writeError == null) {
+                if (read)
+                    readError = e;
+                else
+                    writeError = e;
+            }
 
-    private void copyDirNoQuery(File source, String targetPath) {
-        for (var file : listFiles(source)) {
-            String newTargetPath = Path.of(targetPath, file.getName()).toString();
+            stopped = true;
+        }
 
-            if (isDirectory(file))
-                copyDir(file, newTargetPath);
-            else
-                copyFile(file, newTargetPath);
+        boolean await(long millis) {
+            try {
+                return done.await(millis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ErrorInfo(FileError.CANCELED, CoreMessages.get("operationCanceled"), false);
+            }
         }
 
-        copyAttributes(source, new File(targetPath));
-    }
+        long drainBytes() {
+            return pendingBytes.getAndSet(0);
+        }
 
-    @SuppressWarnings("DuplicatedCode")
-    private void copyFile(File source, String targetPath) {
-        if (!reportStartFile(source, targetPath))
-            return;
+        /**
+         * Stops the workers and waits until they do no longer use the
+         * channels.
+         */
+        void stop() {
+            stopped = true;
 
-        while (true) {
-            try {
-                if (!canWriteFile(source, new File(targetPath)))
-                    return;
+            boolean interrupted = false;
 
-                copyFileNoQuery(source, targetPath);
+            while (true) {
+                try {
+                    done.await();
+                    break;
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
 
-                break;
-            } catch (ErrorInfo info) {
-                if (queryErrorAction == null || info.doNotQuery())
-                    throw info;
+            if (interrupted)
+                Thread.currentThread().interrupt();
+        }
+    }
 
-                if (progress.ignoreAllErrors || progress.ignoredErrors.contains(info.getError()))
-                    return;
+    private boolean copyRanges(ProgressInfo progress, File source, File target, FileChannel in, FileChannel out) {
+        long size = progress.fileBytesAvail;
+        long rangeSize = this.rangeSize;
+        long rangeCount = (size + rangeSize - 1) / rangeSize;
+        int workerCount = (int)Math.min(rangeConcurrency, rangeCount);
+        long startNanos = System.nanoTime();
 
-                switch (queryErrorAction.query(info.getError(), info.getErrorDescription(), source, new File(targetPath))) {
-                    case RETRY:
-                        continue;
+        // The target gets its size first, so that the ranges can be written
+        // in any order:
+        try {
+            out.write(ByteBuffer.allocate(1), size - 1);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), target.getAbsolutePath()), true);
+        }
 
-                    case IGNORE:
-                        return;
+        var copier = new RangeCopier(in, out, size, rangeSize, getBufferSize(Math.min(size, rangeSize)), workerCount);
+        int workersStarted = 0;
 
-                    case IGNORE_ALL_THIS:
-                        progress.ignoredErrors.add(info.getError());
-                        return;
+        try {
+            for (; workersStarted < workerCount; ++workersStarted)
+                HELPER_EXECUTOR.execute(copier);
 
-                    case IGNORE_ALL:
-                        progress.ignoreAllErrors = true;
-                        return;
+            while (true) {
+                boolean finished = copier.await(50);
+                long bytesCopied = copier.drainBytes();
 
-                    default:
-                        throw new ErrorInfo(info.getError(), info.getErrorDescription(), false);
+                // The workers limit the rate themselves:
+                if (bytesCopied > 0 && !reportCopyingFile(progress, bytesCopied, bytesCopied, false)) {
+                    rollbackFile(progress);
+                    return false;
                 }
+
+                if (finished)
+                    break;
+            }
+
+            if (copier.readError != null)
+                throw new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), source.getAbsolutePath()), true);
+
+            if (copier.writeError != null)
+                throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), target.getAbsolutePath()), true);
+
+            if (copier.canceled)
+                cancel();
+
+            job.updateBytesPerSecond(size, System.nanoTime() - startNanos);
+            return true;
+        } finally {
+            // Workers that are not started do not count down:
+            for (; workersStarted < workerCount; ++workersStarted)
+                copier.done.countDown();
+
+            copier.stop();
+        }
+    }
+
+    /**
+     * Writes the blocks of the buffer that are not zero and skips the other
+     * ones by advancing the position of the target.
+     *
+     * @return The number of written bytes.
+     */
+    private static int writeSparse(FileChannel out, ByteBuffer buffer) throws IOException {
+        long position = out.position();
+        int limit = buffer.limit();
+        int runStart = -1;
+        int bytesWritten = 0;
+
+        for (int offset = 0; offset < limit; offset += SPARSE_BLOCK_SIZE) {
+            int length = Math.min(SPARSE_BLOCK_SIZE, limit - offset);
+            boolean zero = buffer.slice(offset, length).mismatch(ZERO_BLOCK.duplicate().limit(length)) == -1;
+
+            if (!zero && runStart < 0) {
+                runStart = offset;
+            } else if (zero && runStart >= 0) {
+                bytesWritten += writeRun(out, buffer, runStart, offset, position);
+                runStart = -1;
             }
         }
 
-        reportFinishedFile();
+        if (runStart >= 0)
+            bytesWritten += writeRun(out, buffer, runStart, limit, position);
+
+        out.position(position + limit);
+
+        return bytesWritten;
     }
 
-    private void copyFileNoQuery(File source, String targetPath) {
-        File orgTarget = new File(targetPath);
-        File target = orgTarget;
-        long totalBytesRead = 0;
+    private static int writeRun(FileChannel out, ByteBuffer buffer, int start, int end, long position) throws IOException {
+        ByteBuffer run = buffer.slice(start, end - start);
+
+        while (run.hasRemaining())
+            out.write(run, position + start + run.position());
 
+        return end - start;
+    }
+
+    private static void setSparseLength(File target, FileChannel out) {
+        // A channel cannot be extended by truncate(), so a file that ends
+        // with a hole gets its length by writing its last byte:
         try {
-            if (target.exists())
-                target = new File(targetPath + "~");
+            long length = out.position();
+
+            if (out.size() < length)
+                out.write(ByteBuffer.allocate(1), length - 1);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), target.getAbsolutePath()), true);
+        }
+    }
+
+    private int getBufferSize(long bytesToCopy) {
+        if (!adaptiveBufferSize)
+            return copyBufferSize;
 
-            if (!target.createNewFile())
-                throw new ErrorInfo(FileError.CREATE_FILE, String.format(CoreMessages.get("cannotCreateFile"), target.getAbsolutePath()), true);
+        long size = (long)(job.getBytesPerSecond() * ADAPTIVE_BUFFER_SECONDS);
 
-            FileOutputStream out = new FileOutputStream(target);
-            FileInputStream in = new FileInputStream(source);
+        size = Math.max(MIN_ADAPTIVE_BUFFER_SIZE, Math.min(MAX_ADAPTIVE_BUFFER_SIZE, size));
 
+        return (int)Math.max(1, Math.min(size, bytesToCopy));
+    }
+
+    private boolean copyDelta(ProgressInfo progress, FileTreeEntry source, File target) {
+        try (FileChannel in = FileChannel.open(source.getFile().toPath(), StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (!copyDelta(progress, source.getFile(), target, in, out))
+                return false;
+
+            copyAttributes(source, target);
+
+            return true;
+        } catch (SecurityException e) {
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), target.getAbsolutePath()), true);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), target.getAbsolutePath()), true);
+        }
+    }
+
+    private boolean copyDelta(ProgressInfo progress, File source, File target, FileChannel in, FileChannel out) {
+        ByteBuffer sourceBlock = bufferPool.acquire(deltaBlockSize);
+        ByteBuffer targetBlock = bufferPool.acquire(deltaBlockSize);
+
+        try {
+            return copyDelta(progress, source, target, in, out, sourceBlock, targetBlock);
+        } finally {
+            bufferPool.release(sourceBlock);
+            bufferPool.release(targetBlock);
+        }
+    }
+
+    private boolean copyDelta(ProgressInfo progress, File source, File target, FileChannel in, FileChannel out, ByteBuffer sourceBlock, ByteBuffer targetBlock) {
+        long position = 0;
+
+        while (true) {
             int bytesRead;
 
-            while (true) {
-                try {
-                    bytesRead = in.read(copyBuffer);
-                } catch (IOException e) {
-                    cleanup(target);
-                    throw new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), source.getAbsolutePath()), true);
-                }
+            try {
+                bytesRead = readBlock(in, sourceBlock.clear().limit(deltaBlockSize), position);
+            } catch (IOException e) {
+                throw new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), source.getAbsolutePath()), true);
+            }
 
-                if (bytesRead == -1)
-                    break;
+            if (bytesRead == 0)
+                break;
 
-                try {
-                    out.write(copyBuffer, 0, bytesRead);
-                } catch (IOException e) {
-                    cleanup(target);
-                    throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), target.getAbsolutePath()), true);
-                }
+            int bytesWritten = 0;
 
-                totalBytesRead += bytesRead;
+            try {
+                readBlock(out, targetBlock.clear().limit(bytesRead), position);
 
-                if (!reportCopyingFile(bytesRead)) {
-                    progress.totalBytesCopied -= totalBytesRead;
-                    cleanup(target);
+                // Comparing the blocks directly is cheaper than building
+                // checksums of both and cannot miss a difference:
+                if (!sourceBlock.flip().equals(targetBlock.flip())) {
+                    while (sourceBlock.hasRemaining())
+                        out.write(sourceBlock, position + sourceBlock.position());
 
-                    return;
+                    bytesWritten = bytesRead;
                 }
+            } catch (IOException e) {
+                throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), target.getAbsolutePath()), true);
             }
 
-            in.close();
-            out.close();
+            position += bytesRead;
 
-            copyAttributes(source, target);
+            if (!reportCopyingFile(progress, bytesRead, bytesWritten)) {
+                rollbackFile(progress);
+                return false;
+            }
+        }
 
-            cleanup(target, orgTarget);
-        } catch (SecurityException e) {
-            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), target.getAbsolutePath()), true);
+        try {
+            out.truncate(position);
         } catch (IOException e) {
-            cleanup(target);
-            throw new ErrorInfo(FileError.CREATE_FILE, String.format(CoreMessages.get("cannotCreateFile"), target.getAbsolutePath()), true);
+            throw new ErrorInfo(FileError.WRITE_FILE, String.format(CoreMessages.get("cannotWriteFile"), target.getAbsolutePath()), true);
+        }
+
+        return true;
+    }
+
+    private static int readBlock(FileChannel channel, ByteBuffer block, long position) throws IOException {
+        int bytesRead = 0;
+
+        while (block.hasRemaining()) {
+            int n = channel.read(block, position + bytesRead);
+
+            if (n == -1)
+                break;
+
+            bytesRead += n;
         }
+
+        return bytesRead;
     }
 
     private void cleanup(File target, File orgTarget) {
@@ -940,8 +3431,8 @@ public class FileCopy extends FileErrorProvider {
         }
     }
 
-    private void copyAttributes(File source, File target) {
-        if (!target.setLastModified(source.lastModified()) || !target.setExecutable(source.canExecute())) {
+    private void copyAttributes(FileTreeEntry source, File target) {
+        if (!target.setLastModified(source.getLastModified()) || !target.setExecutable(source.canExecute())) {
             throw new ErrorInfo(FileError.SET_ATTRIBUTES, String.format(CoreMessages.get("cannotSetAttributes"), target.getAbsolutePath()), true);
         }
     }
@@ -952,54 +3443,77 @@ public class FileCopy extends FileErrorProvider {
                 if (!target.mkdirs())
                     throw new ErrorInfo(FileError.CREATE_DIR, String.format(CoreMessages.get("cannotCreateDir"), target.getAbsolutePath()), true);
 
+                if (durabilityPolicy != DurabilityPolicy.NONE)
+                    syncBatch.addDirectory(target.getAbsoluteFile().getParentFile());
+
                 return true;
             }
         } catch (SecurityException e) {
             throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), target.getAbsolutePath()), true);
         }
 
-        if (progress.dirOverwriteAction == OverwriteAction.NONE)
+        // A directory that was entered by an interrupted job is entered
+        // again without asking:
+        boolean overwrite = syncMode != SyncMode.NONE || isResumed(source);
+
+        if (job.dirOverwriteAction == OverwriteAction.NONE && !overwrite)
             return false;
 
         if (!isDirectory(target))
             throw new ErrorInfo(FileError.TARGET_SOURCE_TYPE, String.format(CoreMessages.get("cannotOverwriteFileWithDir"), target.getAbsolutePath()), true);
 
-        if (progress.dirOverwriteAction == OverwriteAction.ALL)
+        if (job.dirOverwriteAction == OverwriteAction.ALL || overwrite)
             return true;
 
         if (queryOverwriteAction == null)
             return false;
 
-        progress.dirOverwriteAction = queryOverwriteAction.query(source, target);
+        synchronized (callbackLock) {
+            // Another worker may have answered with NONE or ALL while this
+            // one was waiting:
+            if (job.dirOverwriteAction == OverwriteAction.NONE || job.dirOverwriteAction == OverwriteAction.ALL)
+                return job.dirOverwriteAction == OverwriteAction.ALL;
 
-        if (progress.dirOverwriteAction == null || progress.dirOverwriteAction == OverwriteAction.CANCEL)
-            cancel();
+            job.dirOverwriteAction = queryOverwriteAction.query(source, target);
 
-        return progress.dirOverwriteAction == OverwriteAction.ALL || progress.dirOverwriteAction == OverwriteAction.ONE;
+            if (job.dirOverwriteAction == null || job.dirOverwriteAction == OverwriteAction.CANCEL)
+                cancel();
+
+            return job.dirOverwriteAction == OverwriteAction.ALL || job.dirOverwriteAction == OverwriteAction.ONE;
+        }
     }
 
     boolean canWriteFile(File source, File target) {
         if (!exists(target))
             return true;
 
-        if (progress.fileOverwriteAction == OverwriteAction.NONE)
+        boolean overwrite = syncMode != SyncMode.NONE || isResumed(source);
+
+        if (job.fileOverwriteAction == OverwriteAction.NONE && !overwrite)
             return false;
 
         if (isDirectory(target))
             throw new ErrorInfo(FileError.TARGET_SOURCE_TYPE, String.format(CoreMessages.get("cannotOverwriteDirWithFile"), target.getAbsolutePath()), true);
 
-        if (progress.fileOverwriteAction == OverwriteAction.ALL)
+        if (job.fileOverwriteAction == OverwriteAction.ALL || overwrite)
             return true;
 
         if (queryOverwriteAction == null)
             return false;
 
-        progress.fileOverwriteAction = queryOverwriteAction.query(source, target);
+        synchronized (callbackLock) {
+            // Another worker may have answered with NONE or ALL while this
+            // one was waiting:
+            if (job.fileOverwriteAction == OverwriteAction.NONE || job.fileOverwriteAction == OverwriteAction.ALL)
+                return job.fileOverwriteAction == OverwriteAction.ALL;
 
-        if (progress.dirOverwriteAction == null || progress.fileOverwriteAction == OverwriteAction.CANCEL)
-            cancel();
+            job.fileOverwriteAction = queryOverwriteAction.query(source, target);
 
-        return progress.fileOverwriteAction == OverwriteAction.ALL || progress.fileOverwriteAction == OverwriteAction.ONE;
+            if (job.fileOverwriteAction == null || job.fileOverwriteAction == OverwriteAction.CANCEL)
+                cancel();
+
+            return job.fileOverwriteAction == OverwriteAction.ALL || job.fileOverwriteAction == OverwriteAction.ONE;
+        }
     }
 
     private void cancel() throws ErrorInfo {
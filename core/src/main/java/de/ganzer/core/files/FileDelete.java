@@ -4,9 +4,23 @@ import de.ganzer.core.internals.CoreMessages;
 
 import java.io.File;
 import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 /**
@@ -48,6 +62,18 @@ public class FileDelete extends FileErrorProvider {
             this.machine = machine;
         }
 
+        private ProgressInfo snapshot() {
+            var copy = new ProgressInfo(machine);
+
+            copy.status = status;
+            copy.path = path;
+            copy.rootPath = rootPath;
+            copy.entriesAvail = entriesAvail;
+            copy.entriesDeleted = entriesDeleted;
+
+            return copy;
+        }
+
         /**
          * Gets the machine that has generated the progress report.
          *
@@ -157,7 +183,20 @@ public class FileDelete extends FileErrorProvider {
     private final ProgressFunction progressFunction;
     private final QueryErrorAction queryErrorAction;
     private final ProgressInfo progress = new ProgressInfo(this);
+    private final Object callbackLock = new Object();
+    private final AtomicLong entriesDeleted = new AtomicLong();
     private FilenameFilter filenameFilter;
+    private PathFilter pathFilter;
+    private DirectoryStats directoryStats;
+    private int parallelism = 1;
+    private File trashDirectory;
+    private ForkJoinPool pool;
+    private volatile ErrorInfo abortInfo;
+    private ProgressPolicy progressPolicy = ProgressPolicy.EACH;
+    private ProgressThrottle throttle;
+    private DeleteProgressStatus deliveredStatus;
+    private ProgressDispatcher<ProgressInfo> dispatcher;
+    private volatile FileJob<ProgressInfo> asyncJob;
 
     /**
      * Creates a new instance.
@@ -210,6 +249,158 @@ public class FileDelete extends FileErrorProvider {
         this.filenameFilter = filenameFilter;
     }
 
+    /**
+     * Gets the path filter used for iterating through directories.
+     *
+     * @return The used filter or {@code null} if no path filter is used.
+     */
+    public PathFilter getPathFilter() {
+        return pathFilter;
+    }
+
+    /**
+     * Sets the path filter used for iterating through directories.
+     * <p>
+     * The patterns of the filter are matched against the paths relative to
+     * the files or directories that are given to {@link #start}; these are
+     * not filtered themselves. Directories that are not accepted by the
+     * filter are not listed. The path filter can be combined with the
+     * filename filter; an entry must then be accepted by both.
+     *
+     * @param pathFilter The filter to use or {@code null} to use no path
+     *                   filter.
+     */
+    public void setPathFilter(PathFilter pathFilter) {
+        this.pathFilter = pathFilter;
+    }
+
+    /**
+     * Gets the policy that defines how often the progress function is
+     * called.
+     *
+     * @return The used policy. The default value is {@link ProgressPolicy#EACH}.
+     */
+    public ProgressPolicy getProgressPolicy() {
+        return progressPolicy;
+    }
+
+    /**
+     * Sets the policy that defines how often the progress function is
+     * called.
+     * <p>
+     * All reports except the one with the status {@link DeleteProgressStatus#FINISHED}
+     * are subject to the policy. The counter that is compared against
+     * {@link ProgressPolicy#getMinDelta()} is the number of counted respective
+     * deleted entries.
+     * <p>
+     * If the policy is asynchronous, the progress function receives
+     * snapshots of the progress information.
+     *
+     * @param progressPolicy The policy to use.
+     * @throws NullPointerException progressPolicy is {@code null}.
+     */
+    public void setProgressPolicy(ProgressPolicy progressPolicy) {
+        Objects.requireNonNull(progressPolicy, "progressPolicy");
+        this.progressPolicy = progressPolicy;
+    }
+
+    /**
+     * Gets the scanner that counts the entries to delete during the initialization.
+     *
+     * @return The used scanner or {@code null} if the trees are walked by
+     * this instance.
+     */
+    public DirectoryStats getDirectoryStats() {
+        return directoryStats;
+    }
+
+    /**
+     * Sets the scanner that counts the entries to delete during the initialization.
+     * <p>
+     * If a scanner is set, the directories that are given to {@link #start}
+     * are counted by the scanner, which scans in parallel and caches its
+     * results, so that repeated jobs over the same trees skip most of the
+     * scan (see {@link DirectoryStats} for the limits of the cache). The
+     * progress is then reported once for each of these directories. The
+     * scanner is not used if a filename filter or a path filter is set.
+     *
+     * @param directoryStats The scanner to use (for example
+     *                       {@link DirectoryStats#getDefault()}) or
+     *                       {@code null} to walk the trees.
+     */
+    public void setDirectoryStats(DirectoryStats directoryStats) {
+        this.directoryStats = directoryStats;
+    }
+
+    /**
+     * Gets the number of workers that delete the entries of a directory.
+     *
+     * @return The number of parallel workers. The default value is 1.
+     */
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Sets the number of workers that delete the entries of a directory.
+     * <p>
+     * If this is greater than 1, the entries of a directory are deleted by a
+     * work-stealing pool with the specified number of workers, so that
+     * sibling subtrees are deleted at the same time. A directory is always
+     * deleted after all of its entries are deleted.
+     * <p>
+     * The progress function and the query error action are called from the
+     * workers, but never at the same time.
+     *
+     * @param parallelism The number of workers to use. 1 deletes all entries
+     *                    sequentially on the calling thread.
+     * @throws IllegalArgumentException parallelism is less than 1.
+     */
+    public void setParallelism(int parallelism) {
+        if (parallelism < 1)
+            throw new IllegalArgumentException("parallelism");
+
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Gets the directory where the deleted files and directories are moved
+     * to.
+     *
+     * @return The trash directory or {@code null} if the files and
+     * directories are deleted immediately.
+     */
+    public File getTrashDirectory() {
+        return trashDirectory;
+    }
+
+    /**
+     * Sets the directory where the deleted files and directories are moved
+     * to.
+     * <p>
+     * If a trash directory is set, each file or directory that is given to
+     * {@link #start} is renamed into the trash directory instead of being
+     * deleted, which needs no time regardless of its size. The renamed entry
+     * (the tombstone) is deleted in the background by the
+     * {@link TrashReclaimer} of the trash directory. The trash directory is
+     * created if it does not exist; it should be a hidden directory that is
+     * located on the same file system as the deleted files.
+     * <p>
+     * In this mode, the entries are not counted before deleting. Each
+     * renamed entry is reported once by {@link DeleteProgressStatus#DELETE_FILE}
+     * respective {@link DeleteProgressStatus#DELETE_DIRECTORY}. An entry
+     * that cannot be renamed (for example because it is located on another
+     * file system) is deleted immediately. If a filename filter or a path
+     * filter is set, the trash directory is not used because the filter may
+     * keep some entries of a directory.
+     *
+     * @param trashDirectory The trash directory to use or {@code null} to
+     *                       delete the files and directories immediately.
+     */
+    public void setTrashDirectory(File trashDirectory) {
+        this.trashDirectory = trashDirectory;
+    }
+
     /**
      * Copies the specified file or directory.
      *
@@ -244,11 +435,18 @@ public class FileDelete extends FileErrorProvider {
         var sourceFiles = sources.stream().map(File::new).collect(Collectors.toList());
 
         clearError();
+        openProgress();
 
         try {
             verifyExistence(sourceFiles);
-            initializeDelete(sourceFiles, suppressInit);
-            deleteEntries(sourceFiles);
+
+            boolean bury = trashDirectory != null && filenameFilter == null && pathFilter == null;
+            var sourceEntries = initializeDelete(sourceFiles, suppressInit || bury);
+
+            if (bury)
+                sourceEntries = buryEntries(sourceEntries);
+
+            deleteEntries(sourceEntries);
         } catch (ErrorInfo info) {
             setErrorInfo(info.getError(), info.getErrorDescription());
         }
@@ -258,6 +456,85 @@ public class FileDelete extends FileErrorProvider {
         return getError() != FileError.NONE;
     }
 
+    /**
+     * Deletes the specified file or directory asynchronously.
+     *
+     * @param source       The absolute or relative path to the file or directory to
+     *                     delete.
+     * @param suppressInit The counting of all entries to delete is suppressed if
+     *                     this is {@code true}.
+     * @param executor     The executor that runs the job.
+     * @return The handle of the started job.
+     *
+     * @throws NullPointerException  source or executor is {@code null}.
+     * @throws IllegalStateException A job that is started asynchronously is
+     *                               still running.
+     * @see #startAsync(List, boolean, Executor)
+     */
+    public FileJob<ProgressInfo> startAsync(String source, boolean suppressInit, Executor executor) {
+        Objects.requireNonNull(source, "source");
+        return startAsync(Collections.singletonList(source), suppressInit, executor);
+    }
+
+    /**
+     * Deletes the specified files or directories asynchronously.
+     * <p>
+     * The job is run by the specified executor and reports its progress
+     * both to the progress function of this instance (if any) and to the
+     * publisher of the returned handle. This instance must not be used for
+     * another job until the returned job is done.
+     *
+     * @param sources      The absolute or relative paths to the files or directories
+     *                     to delete.
+     * @param suppressInit The counting of all entries to delete is suppressed if
+     *                     this is {@code true}.
+     * @param executor     The executor that runs the job.
+     * @return The handle of the started job. If the executor rejects the job,
+     * the result of the handle is completed exceptionally.
+     *
+     * @throws NullPointerException  sources or executor is {@code null}.
+     * @throws IllegalStateException A job that is started asynchronously is
+     *                               still running.
+     */
+    public FileJob<ProgressInfo> startAsync(List<String> sources, boolean suppressInit, Executor executor) {
+        Objects.requireNonNull(sources, "sources");
+        Objects.requireNonNull(executor, "executor");
+
+        var handle = new FileJob<ProgressInfo>();
+
+        synchronized (this) {
+            if (asyncJob != null)
+                throw new IllegalStateException();
+
+            asyncJob = handle;
+        }
+
+        try {
+            executor.execute(() -> {
+                FileError error;
+
+                try {
+                    start(sources, suppressInit);
+                    error = getError();
+                } catch (RuntimeException | Error e) {
+                    asyncJob = null;
+                    handle.completeExceptionally(e);
+                    return;
+                }
+
+                // The instance is released before the result is published,
+                // so that it can be reused by the completion handlers:
+                asyncJob = null;
+                handle.complete(error);
+            });
+        } catch (RuntimeException e) {
+            asyncJob = null;
+            handle.completeExceptionally(e);
+        }
+
+        return handle;
+    }
+
     private static class ErrorInfo extends RuntimeException {
         private final boolean queryHandling;
         private final FileError error;
@@ -282,6 +559,34 @@ public class FileDelete extends FileErrorProvider {
         }
     }
 
+    /**
+     * Deletes a single file or directory within the pool.
+     */
+    private class DeleteTask extends RecursiveAction {
+        private final FileTreeEntry source;
+
+        DeleteTask(FileTreeEntry source) {
+            this.source = source;
+        }
+
+        @Override
+        protected void compute() {
+            try {
+                checkAborted();
+
+                if (source.isDirectory())
+                    deleteDir(source);
+                else
+                    deleteFile(source);
+            } catch (ErrorInfo info) {
+                if (abortInfo == null)
+                    abortInfo = info;
+
+                throw info;
+            }
+        }
+    }
+
     private void verifyExistence(List<File> sourceFiles) throws ErrorInfo {
         sourceFiles.forEach(this::verifySourceExistence);
     }
@@ -291,52 +596,149 @@ public class FileDelete extends FileErrorProvider {
             throw new ErrorInfo(FileError.FILE_NOT_EXIST, String.format(CoreMessages.get("fileDoesNotExist"), sourceFile.getAbsolutePath()), true);
     }
 
-    private void initializeDelete(List<File> sourceFiles, boolean suppressInit) throws ErrorInfo {
+    private List<FileTreeEntry> initializeDelete(List<File> sourceFiles, boolean suppressInit) throws ErrorInfo {
         progress.status = DeleteProgressStatus.INITIALIZING;
         progress.entriesAvail = 0;
         progress.entriesDeleted = 0;
         progress.path = "";
+        entriesDeleted.set(0);
+        abortInfo = null;
+
+        var sourceEntries = new ArrayList<FileTreeEntry>(sourceFiles.size());
+
+        for (var source : sourceFiles)
+            sourceEntries.add(readEntry(source));
 
         if (suppressInit)
-            return;
+            return sourceEntries;
 
         reportProgress();
 
-        sourceFiles.forEach(source -> {
-            progress.rootPath = source.getAbsolutePath();
+        sourceEntries.forEach(source -> {
+            progress.rootPath = source.getPath();
 
             if (source.isDirectory())
                 initializeDelete(source);
             else
-                reportInitializeProgress(source.getAbsolutePath());
+                reportInitializeProgress(source.getPath());
         });
+
+        return sourceEntries;
+    }
+
+    private void initializeDelete(FileTreeEntry source) {
+        if (directoryStats != null && filenameFilter == null && pathFilter == null) {
+            var summary = scan(source);
+
+            progress.path = source.getPath();
+            progress.entriesAvail += summary.getFileCount() + summary.getDirectoryCount();
+
+            reportProgress();
+            return;
+        }
+
+        reportInitializeProgress(source.getPath());
+
+        for (var entry : listEntries(source, true)) {
+            if (entry.isDirectory())
+                initializeDelete(entry);
+            else
+                reportInitializeProgress(entry.getPath());
+        }
     }
 
-    private void initializeDelete(File source) {
-        reportInitializeProgress(source.getAbsolutePath());
+    /**
+     * @return The entries that cannot be moved into the trash directory.
+     */
+    private List<FileTreeEntry> buryEntries(List<FileTreeEntry> sourceEntries) throws ErrorInfo {
+        var remaining = new ArrayList<FileTreeEntry>();
+
+        for (var source : sourceEntries) {
+            progress.rootPath = source.getPath();
 
-        for (var file : listFiles(source)) {
-            if (isDirectory(file))
-                initializeDelete(file);
+            if (bury(source))
+                reportDelete(source, source.isDirectory() ? DeleteProgressStatus.DELETE_DIRECTORY : DeleteProgressStatus.DELETE_FILE);
             else
-                reportInitializeProgress(file.getAbsolutePath());
+                remaining.add(source);
+        }
+
+        return remaining;
+    }
+
+    private boolean bury(FileTreeEntry source) {
+        var trash = trashDirectory.getAbsoluteFile();
+
+        if (Path.of(trash.getPath()).normalize().startsWith(Path.of(source.getFile().getAbsolutePath()).normalize()))
+            return false;
+
+        try {
+            if (!trash.isDirectory() && !trash.mkdirs())
+                return false;
+
+            var tombstone = new File(trash, UUID.randomUUID().toString());
+            var reclaimer = TrashReclaimer.of(trash);
+
+            Files.move(source.getFile().toPath(), tombstone.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            reclaimer.submit(tombstone);
+
+            return true;
+        } catch (IOException | SecurityException e) {
+            // The entry is deleted immediately:
+            return false;
         }
     }
 
-    private void deleteEntries(List<File> sourceFiles) throws ErrorInfo {
-        sourceFiles.forEach(source -> {
-            progress.rootPath = source.getAbsolutePath();
+    private void deleteEntries(List<FileTreeEntry> sourceEntries) throws ErrorInfo {
+        if (parallelism > 1)
+            pool = new ForkJoinPool(parallelism);
+
+        boolean completed = false;
 
-            if (isDirectory(source)) {
-                deleteDir(source);
-            } else {
-                deleteFile(source);
+        try {
+            sourceEntries.forEach(source -> {
+                progress.rootPath = source.getPath();
+
+                if (pool != null) {
+                    pool.invoke(new DeleteTask(source));
+                } else if (source.isDirectory()) {
+                    deleteDir(source);
+                } else {
+                    deleteFile(source);
+                }
+            });
+
+            completed = true;
+        } finally {
+            if (pool != null) {
+                // Tasks that are still running must stop before the job is
+                // finished, so that they do not report after FINISHED:
+                if (!completed && abortInfo == null)
+                    abortInfo = new ErrorInfo(FileError.CANCELED, CoreMessages.get("operationCanceled"), false);
+
+                pool.shutdownNow();
+                awaitTermination(pool);
+                pool = null;
             }
-        });
+        }
+    }
+
+    private static void awaitTermination(ExecutorService executor) {
+        boolean interrupted = false;
+
+        while (!executor.isTerminated()) {
+            try {
+                executor.awaitTermination(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
     }
 
     @SuppressWarnings("DuplicatedCode")
-    private void deleteFile(File source) {
+    private void deleteFile(FileTreeEntry source) {
         reportDelete(source, DeleteProgressStatus.DELETE_FILE);
 
         while (true) {
@@ -347,7 +749,7 @@ public class FileDelete extends FileErrorProvider {
                 if (queryErrorAction == null || info.doNotQuery())
                     throw info;
 
-                switch (queryErrorAction.query(info.getError(), info.getErrorDescription(), source)) {
+                switch (queryErrorAction(info, source)) {
                     case RETRY:
                         continue;
 
@@ -361,17 +763,17 @@ public class FileDelete extends FileErrorProvider {
         }
     }
 
-    private void deleteFileNoQuery(File source) {
+    private void deleteFileNoQuery(FileTreeEntry source) {
         try {
-            if (!source.delete())
-                throw new ErrorInfo(FileError.DELETE_DIR, String.format(CoreMessages.get("cannotDeleteFile"), source.getAbsolutePath()), true);
+            if (!source.getFile().delete())
+                throw new ErrorInfo(FileError.DELETE_DIR, String.format(CoreMessages.get("cannotDeleteFile"), source.getPath()), true);
         } catch (SecurityException e) {
-            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), source.getAbsolutePath()), true);
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), source.getPath()), true);
         }
     }
 
     @SuppressWarnings("DuplicatedCode")
-    private void deleteDir(File source) {
+    private void deleteDir(FileTreeEntry source) {
         while (true) {
             try {
                 deleteDirNoQuery(source);
@@ -380,7 +782,7 @@ public class FileDelete extends FileErrorProvider {
                 if (queryErrorAction == null || info.doNotQuery())
                     throw info;
 
-                switch (queryErrorAction.query(info.getError(), info.getErrorDescription(), source)) {
+                switch (queryErrorAction(info, source)) {
                     case RETRY:
                         continue;
 
@@ -394,47 +796,119 @@ public class FileDelete extends FileErrorProvider {
         }
     }
 
-    private void deleteDirNoQuery(File source) {
-        for (var file : listFiles(source)) {
-            if (isDirectory(file)) {
-                deleteDir(file);
-            } else {
-                deleteFile(file);
+    private DeleteErrorAction queryErrorAction(ErrorInfo info, FileTreeEntry source) {
+        synchronized (callbackLock) {
+            // Another worker may have aborted the job while this one was
+            // waiting:
+            checkAborted();
+
+            return queryErrorAction.query(info.getError(), info.getErrorDescription(), source.getFile());
+        }
+    }
+
+    private void deleteDirNoQuery(FileTreeEntry source) {
+        var entries = listEntries(source, false);
+
+        if (pool == null) {
+            for (var entry : entries) {
+                if (entry.isDirectory()) {
+                    deleteDir(entry);
+                } else {
+                    deleteFile(entry);
+                }
             }
+        } else {
+            var tasks = new ArrayList<DeleteTask>(entries.size());
+
+            for (var entry : entries)
+                tasks.add(new DeleteTask(entry));
+
+            ForkJoinTask.invokeAll(tasks);
         }
 
+        source.releaseEntries();
         reportDelete(source, DeleteProgressStatus.DELETE_DIRECTORY);
 
         try {
-            if (!source.delete())
-                throw new ErrorInfo(FileError.DELETE_DIR, String.format(CoreMessages.get("cannotDeleteDir"), source.getAbsolutePath()), true);
+            if (!source.getFile().delete())
+                throw new ErrorInfo(FileError.DELETE_DIR, String.format(CoreMessages.get("cannotDeleteDir"), source.getPath()), true);
         } catch (SecurityException e) {
-            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), source.getAbsolutePath()), true);
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), source.getPath()), true);
         }
     }
 
-    private boolean isDirectory(File file) throws ErrorInfo {
+    private DirectoryStats.Summary scan(FileTreeEntry source) throws ErrorInfo {
         try {
-            return file.isDirectory();
-        } catch (SecurityException e) {
+            return directoryStats.scan(source.getFile());
+        } catch (AccessDeniedException e) {
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), e.getFile()), true);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.READ_DIR, String.format(CoreMessages.get("cannotReadDir"), source.getPath()), true);
+        }
+    }
+
+    private FileTreeEntry readEntry(File file) throws ErrorInfo {
+        try {
+            return FileTreeEntry.of(file);
+        } catch (AccessDeniedException | SecurityException e) {
             throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), file.getAbsolutePath()), true);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), file.getAbsolutePath()), true);
         }
     }
 
-    private File[] listFiles(File source) {
+    private List<FileTreeEntry> listEntries(FileTreeEntry source, boolean cache) throws ErrorInfo {
         try {
-            return filenameFilter == null
-                    ? source.listFiles()
-                    : source.listFiles(filenameFilter);
-        } catch (SecurityException e) {
-            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), source.getAbsolutePath()), true);
+            return cache
+                    ? source.cacheEntries(filenameFilter, pathFilter)
+                    : source.getEntries(filenameFilter, pathFilter);
+        } catch (AccessDeniedException | SecurityException e) {
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), source.getPath()), true);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.READ_DIR, String.format(CoreMessages.get("cannotReadDir"), source.getPath()), true);
         }
     }
 
+    private void openProgress() {
+        throttle = new ProgressThrottle(progressPolicy);
+        deliveredStatus = null;
+
+        if (progressFunction != null && progressPolicy.isAsynchronous())
+            dispatcher = new ProgressDispatcher<>("FileDelete progress", info -> progressFunction.report(info) == DeleteProgressContinuation.CANCEL);
+    }
+
     private void reportProgress() {
+        if (dispatcher != null && dispatcher.isCanceled())
+            cancel();
+
+        FileJob<ProgressInfo> asyncJob = this.asyncJob;
+
+        if (asyncJob != null && !asyncJob.checkpoint())
+            cancel();
+
+        if (progressFunction == null && asyncJob == null)
+            return;
+
+        // Only the counters of the same status are throttled; a changed
+        // status is always delivered:
+        boolean coalescible = progress.status == deliveredStatus;
+
+        if (coalescible && !throttle.isDue(progress.status == DeleteProgressStatus.INITIALIZING ? progress.entriesAvail : progress.entriesDeleted))
+            return;
+
+        deliveredStatus = progress.status;
+
+        if (asyncJob != null)
+            asyncJob.publish(progress.snapshot(), coalescible);
+
         if (progressFunction == null)
             return;
 
+        if (dispatcher != null) {
+            dispatcher.post(progress.snapshot(), coalescible);
+            return;
+        }
+
         DeleteProgressContinuation result = progressFunction.report(progress);
 
         if (result == DeleteProgressContinuation.CANCEL)
@@ -448,12 +922,17 @@ public class FileDelete extends FileErrorProvider {
         reportProgress();
     }
 
-    private void reportDelete(File source, DeleteProgressStatus status) {
-        progress.status = status;
-        progress.path = source.getAbsolutePath();
-        ++progress.entriesDeleted;
+    private void reportDelete(FileTreeEntry source, DeleteProgressStatus status) {
+        checkAborted();
+        entriesDeleted.incrementAndGet();
 
-        reportProgress();
+        synchronized (callbackLock) {
+            progress.status = status;
+            progress.path = source.getPath();
+            progress.entriesDeleted = entriesDeleted.get();
+
+            reportProgress();
+        }
     }
 
     private void reportFinished() {
@@ -461,7 +940,30 @@ public class FileDelete extends FileErrorProvider {
         progress.path = "";
         progress.rootPath = "";
 
-        reportProgress();
+        FileJob<ProgressInfo> asyncJob = this.asyncJob;
+
+        if (asyncJob != null)
+            asyncJob.publish(progress.snapshot(), false);
+
+        // The result is ignored because there is nothing left to cancel; an
+        // exception of the progress function is rethrown like it is by a
+        // synchronous report:
+        ProgressDispatcher<ProgressInfo> dispatcher = this.dispatcher;
+        this.dispatcher = null;
+
+        if (dispatcher != null) {
+            dispatcher.post(progress.snapshot(), false);
+            dispatcher.close();
+        } else if (progressFunction != null) {
+            progressFunction.report(progress);
+        }
+    }
+
+    private void checkAborted() throws ErrorInfo {
+        ErrorInfo info = abortInfo;
+
+        if (info != null)
+            throw new ErrorInfo(info.getError(), info.getErrorDescription(), false);
     }
 
     private void cancel() throws ErrorInfo {
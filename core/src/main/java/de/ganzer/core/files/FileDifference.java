@@ -0,0 +1,62 @@
+package de.ganzer.core.files;
+
+import java.io.File;
+
+/**
+ * The FileDifference class describes a single difference that is found by
+ * {@link FileCompare}. Instances of this class are immutable.
+ */
+@SuppressWarnings("unused")
+public final class FileDifference {
+    private final DifferenceType type;
+    private final String relativePath;
+    private final File source;
+    private final File target;
+
+    FileDifference(DifferenceType type, String relativePath, File source, File target) {
+        this.type = type;
+        this.relativePath = relativePath;
+        this.source = source;
+        this.target = target;
+    }
+
+    /**
+     * Gets the kind of the difference.
+     *
+     * @return The kind of the difference.
+     */
+    public DifferenceType getType() {
+        return type;
+    }
+
+    /**
+     * Gets the path of the entry relative to the compared roots. The
+     * segments are separated by {@code /}.
+     *
+     * @return The relative path; this is an empty string if the roots
+     * themselves differ.
+     */
+    public String getRelativePath() {
+        return relativePath;
+    }
+
+    /**
+     * Gets the entry in the source tree.
+     *
+     * @return The entry in the source tree. This does not exist if
+     * {@link #getType()} is {@link DifferenceType#REMOVED}.
+     */
+    public File getSource() {
+        return source;
+    }
+
+    /**
+     * Gets the entry in the target tree.
+     *
+     * @return The entry in the target tree. This does not exist if
+     * {@link #getType()} is {@link DifferenceType#ADDED}.
+     */
+    public File getTarget() {
+        return target;
+    }
+}
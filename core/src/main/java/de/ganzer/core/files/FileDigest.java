@@ -0,0 +1,63 @@
+package de.ganzer.core.files;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32C;
+
+/**
+ * Computes the checksum of data that is passed in buffers by either
+ * {@link CRC32C} or a {@link MessageDigest}.
+ */
+final class FileDigest {
+    /**
+     * The name of the CRC32C algorithm.
+     */
+    static final String CRC32C = "CRC32C";
+
+    private final CRC32C crc;
+    private final MessageDigest digest;
+
+    private FileDigest(CRC32C crc, MessageDigest digest) {
+        this.crc = crc;
+        this.digest = digest;
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param algorithm {@link #CRC32C} or the name of a {@link MessageDigest}
+     *                  algorithm.
+     * @return The created instance.
+     * @throws NoSuchAlgorithmException The algorithm is not available.
+     */
+    static FileDigest create(String algorithm) throws NoSuchAlgorithmException {
+        return CRC32C.equalsIgnoreCase(algorithm)
+                ? new FileDigest(new CRC32C(), null)
+                : new FileDigest(null, MessageDigest.getInstance(algorithm));
+    }
+
+    /**
+     * Updates the checksum by the remaining bytes of the buffer. The position
+     * of the buffer is not changed.
+     */
+    void update(ByteBuffer buffer) {
+        if (crc != null)
+            crc.update(buffer.duplicate());
+        else
+            digest.update(buffer.duplicate());
+    }
+
+    /**
+     * Completes the computation.
+     *
+     * @return The checksum. A CRC32C checksum has 4 bytes in big endian
+     * order.
+     */
+    byte[] digest() {
+        if (digest != null)
+            return digest.digest();
+
+        return ByteBuffer.allocate(4).putInt((int)crc.getValue()).array();
+    }
+}
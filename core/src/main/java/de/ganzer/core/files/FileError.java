@@ -82,5 +82,11 @@ public enum FileError {
     /**
      * The user has canceled an operation.
      */
-    CANCELED
+    CANCELED,
+
+    /**
+     * The checksum of a copied file does not match the checksum of its
+     * source.
+     */
+    CHECKSUM_MISMATCH
 }
@@ -0,0 +1,160 @@
+package de.ganzer.core.files;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import java.util.concurrent.SubmissionPublisher;
+
+/**
+ * The FileJob class is the handle of a job that is started asynchronously
+ * by {@link FileCopy#startAsync} or {@link FileDelete#startAsync}.
+ * <p>
+ * The job can be canceled, paused and resumed from any thread. These
+ * requests take effect when the job reports its next progress, which is
+ * done at least once for each copied buffer or each deleted entry. A paused
+ * job blocks its thread (or its workers) until it is resumed or canceled,
+ * so that it does no I/O while it is paused.
+ * <p>
+ * The progress of the job is published by {@link #getProgressPublisher()}.
+ * Reports of status transitions (like {@link CopyProgressStatus#START_FILE})
+ * are delivered to each subscriber; if a subscriber does not request them in
+ * time, the job waits for it. Reports that only update counters are dropped
+ * for a subscriber that has not requested them. All published reports are
+ * snapshots that are not changed afterwards. The publisher is closed after
+ * the final report.
+ *
+ * @param <P> The type of the progress reports.
+ */
+@SuppressWarnings("unused")
+public class FileJob<P> {
+    private final CompletableFuture<FileError> result = new CompletableFuture<>();
+    private final SubmissionPublisher<P> publisher = new SubmissionPublisher<>();
+    private final Object publishLock = new Object();
+    private volatile boolean canceled;
+    private volatile boolean paused;
+
+    FileJob() {
+        // Canceling the future cancels the job:
+        result.whenComplete((error, e) -> {
+            if (result.isCancelled())
+                cancel();
+        });
+    }
+
+    /**
+     * Gets the result of the job.
+     * <p>
+     * The future is completed with the error of the job when the job is
+     * finished: This is {@link FileError#NONE} on success and
+     * {@link FileError#CANCELED} if the job was canceled. The description of
+     * the error can be retrieved from the engine that runs the job. Canceling
+     * the future cancels the job.
+     *
+     * @return The future of the result.
+     */
+    public CompletableFuture<FileError> getResult() {
+        return result;
+    }
+
+    /**
+     * Gets the publisher of the progress reports.
+     *
+     * @return The publisher of the reports.
+     */
+    public Flow.Publisher<P> getProgressPublisher() {
+        return publisher;
+    }
+
+    /**
+     * Requests the job to cancel. This resumes a paused job.
+     */
+    public void cancel() {
+        synchronized (this) {
+            canceled = true;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Gets a value indicating whether the job is requested to cancel.
+     *
+     * @return {@code true} if {@link #cancel()} was called.
+     */
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Requests the job to pause.
+     */
+    public synchronized void pause() {
+        paused = true;
+    }
+
+    /**
+     * Resumes a paused job.
+     */
+    public synchronized void resume() {
+        paused = false;
+        notifyAll();
+    }
+
+    /**
+     * Gets a value indicating whether the job is requested to pause.
+     *
+     * @return {@code true} if the job is paused.
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Gets a value indicating whether the job is finished.
+     *
+     * @return {@code true} if the job is finished.
+     */
+    public boolean isDone() {
+        return result.isDone();
+    }
+
+    /**
+     * Waits while the job is paused.
+     *
+     * @return {@code false} if the job is canceled or the waiting thread is
+     * interrupted; otherwise, {@code true} is returned.
+     */
+    boolean checkpoint() {
+        if (!paused || canceled)
+            return !canceled;
+
+        synchronized (this) {
+            try {
+                while (paused && !canceled)
+                    wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return false;
+            }
+
+            return !canceled;
+        }
+    }
+
+    void publish(P progress, boolean coalescible) {
+        synchronized (publishLock) {
+            if (coalescible)
+                publisher.offer(progress, (subscriber, item) -> false);
+            else
+                publisher.submit(progress);
+        }
+    }
+
+    void complete(FileError error) {
+        publisher.close();
+        result.complete(error);
+    }
+
+    void completeExceptionally(Throwable e) {
+        publisher.closeExceptionally(e);
+        result.completeExceptionally(e);
+    }
+}
@@ -0,0 +1,684 @@
+package de.ganzer.core.files;
+
+import de.ganzer.core.internals.CoreMessages;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * The FileMove class moves files and directories with progress and error
+ * information.
+ * <p>
+ * Each source is renamed atomically if possible, which needs no time
+ * regardless of the size of the source. If the target of a source already
+ * exists and both are directories, the entries of the source are moved into
+ * the target one by one. Only if a file or directory cannot be renamed
+ * because the target is located on another file system, it is copied by
+ * {@link FileCopy} and the source is deleted afterwards. This fallback is
+ * decided for each subtree: Subtrees that can be renamed are not copied.
+ * <p>
+ * A source file is deleted after copying only if its copy exists and has
+ * the same length and modification time; so the sources of files that are
+ * not copied because of an ignored error are kept.
+ */
+@SuppressWarnings("unused")
+public class FileMove extends FileErrorProvider {
+    /**
+     * The ProgressInfo class encapsulates progress information.
+     */
+    @SuppressWarnings("unused")
+    public static class ProgressInfo {
+        private final FileMove machine;
+        private MoveProgressStatus status;
+        private String sourcePath = "";
+        private String targetPath = "";
+        private String rootSourcePath = "";
+        private String rootTargetPath = "";
+        private long entriesMoved;
+        private FileCopy.ProgressInfo copyProgress;
+
+        private ProgressInfo(FileMove machine) {
+            this.machine = machine;
+        }
+
+        /**
+         * Gets the machine that has generated the progress report.
+         *
+         * @return The machine that has generated the report.
+         */
+        public FileMove getMachine() {
+            return machine;
+        }
+
+        /**
+         * Gets the status of the progress.
+         *
+         * @return The current status.
+         */
+        public MoveProgressStatus getStatus() {
+            return status;
+        }
+
+        /**
+         * Gets the path to the file or directory that is currently moved.
+         * <p>
+         * If {@link #getStatus()} is {@link MoveProgressStatus#COPYING}, this
+         * is the path to the root of the copied subtree; the file that is
+         * currently copied can be retrieved from {@link #getCopyProgress()}.
+         *
+         * @return The path to the current source or an empty string if
+         * {@link #getStatus()} is {@link MoveProgressStatus#FINISHED}.
+         */
+        public String getSourcePath() {
+            return sourcePath;
+        }
+
+        /**
+         * Gets the path to the file or directory where the current source is
+         * moved to.
+         *
+         * @return The path to the current target or an empty string if
+         * {@link #getStatus()} is {@link MoveProgressStatus#FINISHED}.
+         */
+        public String getTargetPath() {
+            return targetPath;
+        }
+
+        /**
+         * Gets the path to the file or directory that was specified as source
+         * to start moving operation.
+         *
+         * @return The path to the original source that is currently worked or
+         * an empty string if {@link #getStatus()} is {@link MoveProgressStatus#FINISHED}.
+         */
+        public String getRootSourcePath() {
+            return rootSourcePath;
+        }
+
+        /**
+         * Gets the path to the file or directory where the source that was
+         * specified to start moving operation is moved to.
+         *
+         * @return The path to the target of the original source or an empty
+         * string if {@link #getStatus()} is {@link MoveProgressStatus#FINISHED}.
+         */
+        public String getRootTargetPath() {
+            return rootTargetPath;
+        }
+
+        /**
+         * Gets the number of entries that are moved. This counts each entry
+         * that is reported by {@link MoveProgressStatus#FINISHED_ENTRY}.
+         *
+         * @return The number of moved entries.
+         */
+        public long getEntriesMoved() {
+            return entriesMoved;
+        }
+
+        /**
+         * Gets the progress of the copy of a subtree that cannot be renamed.
+         *
+         * @return The progress of the copy if {@link #getStatus()} is
+         * {@link MoveProgressStatus#COPYING}; otherwise, {@code null} is
+         * returned.
+         */
+        public FileCopy.ProgressInfo getCopyProgress() {
+            return copyProgress;
+        }
+    }
+
+    /**
+     * The interface to a function that is called to report the progress.
+     */
+    public interface ProgressFunction {
+        /**
+         * The called function.
+         * <p>
+         * {@link CopyProgressContinuation#SKIP} skips the entry that is
+         * reported by {@link MoveProgressStatus#START_ENTRY} and the file
+         * that is reported by {@link MoveProgressStatus#COPYING}. It is
+         * ignored for all other reports.
+         *
+         * @param info The information about the progress.
+         * @return One of the {@link CopyProgressContinuation} values.
+         */
+        CopyProgressContinuation report(ProgressInfo info);
+    }
+
+    private final ProgressFunction progressFunction;
+    private final FileCopy.QueryErrorAction queryErrorAction;
+    private final FileCopy.QueryOverwriteAction queryOverwriteAction;
+    private final ProgressInfo progress = new ProgressInfo(this);
+    private final Set<FileError> ignoredErrors = EnumSet.noneOf(FileError.class);
+    private OverwriteAction defaultFileOverwriteAction = OverwriteAction.NOT;
+    private OverwriteAction defaultDirOverwriteAction = OverwriteAction.NOT;
+    private OverwriteAction fileOverwriteAction;
+    private OverwriteAction dirOverwriteAction;
+    private boolean ignoreAllErrors;
+    private boolean renameDisabled;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param progressFunction The function to call to report progress. If this
+     *                         is {@code null}, no progress is reported.
+     */
+    public FileMove(ProgressFunction progressFunction) {
+        this(progressFunction, null, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param progressFunction The function to call to report progress. If this
+     *                         is {@code null}, no progress is reported.
+     * @param queryErrorAction The function to call when an error occurred.
+     *                         If this is {@code null}, each error aborts
+     *                         moving.
+     */
+    public FileMove(ProgressFunction progressFunction, FileCopy.QueryErrorAction queryErrorAction) {
+        this(progressFunction, queryErrorAction, null);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param progressFunction     The function to call to report progress. If
+     *                             this is {@code null}, no progress is
+     *                             reported.
+     * @param queryErrorAction     The function to call when an error occurred.
+     *                             If this is {@code null}, each error aborts
+     *                             moving.
+     * @param queryOverwriteAction The function to call when a file or
+     *                             directory already exists. If this is
+     *                             {@code null}, the default overwrite actions
+     *                             are used.
+     */
+    public FileMove(ProgressFunction progressFunction, FileCopy.QueryErrorAction queryErrorAction, FileCopy.QueryOverwriteAction queryOverwriteAction) {
+        this.progressFunction = progressFunction;
+        this.queryErrorAction = queryErrorAction;
+        this.queryOverwriteAction = queryOverwriteAction;
+    }
+
+    /**
+     * Gets the default action to use for existing files.
+     *
+     * @return The default action. The default value is {@link OverwriteAction#NOT}.
+     */
+    public OverwriteAction getDefaultFileOverwriteAction() {
+        return defaultFileOverwriteAction;
+    }
+
+    /**
+     * Sets the default action to use for existing files.
+     *
+     * @param defaultFileOverwriteAction The default action to set.
+     * @throws NullPointerException defaultFileOverwriteAction is {@code null}.
+     */
+    public void setDefaultFileOverwriteAction(OverwriteAction defaultFileOverwriteAction) {
+        Objects.requireNonNull(defaultFileOverwriteAction, "defaultFileOverwriteAction");
+        this.defaultFileOverwriteAction = defaultFileOverwriteAction;
+    }
+
+    /**
+     * Gets the default action to use for existing directories. Moving into
+     * an existing directory merges the entries of the source into it.
+     *
+     * @return The default action. The default value is {@link OverwriteAction#NOT}.
+     */
+    public OverwriteAction getDefaultDirOverwriteAction() {
+        return defaultDirOverwriteAction;
+    }
+
+    /**
+     * Sets the default action to use for existing directories. Moving into
+     * an existing directory merges the entries of the source into it.
+     *
+     * @param defaultDirOverwriteAction The default action to set.
+     * @throws NullPointerException defaultDirOverwriteAction is {@code null}.
+     */
+    public void setDefaultDirOverwriteAction(OverwriteAction defaultDirOverwriteAction) {
+        Objects.requireNonNull(defaultDirOverwriteAction, "defaultDirOverwriteAction");
+        this.defaultDirOverwriteAction = defaultDirOverwriteAction;
+    }
+
+    /**
+     * Moves the specified file or directory into the specified directory.
+     *
+     * @param source The absolute or relative path to the file or directory to
+     *               move.
+     * @param target The absolute or relative path to the directory where to move
+     *               the source into. If this directory does not exist, it is
+     *               created.
+     * @return {@code true} on success; otherwise, {@code false} is returned.
+     *
+     * @throws NullPointerException source or target is {@code null}.
+     */
+    public boolean start(String source, String target) {
+        Objects.requireNonNull(source, "source");
+        return start(Collections.singletonList(source), target);
+    }
+
+    /**
+     * Moves the specified files or directories into the specified directory.
+     *
+     * @param sources The absolute or relative paths to the files or directories
+     *                to move.
+     * @param target  The absolute or relative path to the directory where to
+     *                move the sources into. If this directory does not exist,
+     *                it is created.
+     * @return {@code true} on success; otherwise, {@code false} is returned.
+     *
+     * @throws NullPointerException sources or target is {@code null}.
+     */
+    public boolean start(List<String> sources, String target) {
+        Objects.requireNonNull(sources, "sources");
+        Objects.requireNonNull(target, "target");
+
+        var sourceFiles = sources.stream().map(File::new).collect(Collectors.toList());
+        var targetFile = new File(target);
+
+        clearError();
+
+        fileOverwriteAction = defaultFileOverwriteAction;
+        dirOverwriteAction = defaultDirOverwriteAction;
+        ignoreAllErrors = false;
+        ignoredErrors.clear();
+        progress.entriesMoved = 0;
+
+        try {
+            verifyTargetType(targetFile);
+            verifyExistence(sourceFiles, targetFile);
+            verifyNonRecursive(sourceFiles, targetFile);
+
+            for (var source : sourceFiles) {
+                var sourceFile = source.getAbsoluteFile();
+                var entryTarget = new File(targetFile.getAbsoluteFile(), sourceFile.getName());
+
+                progress.rootSourcePath = sourceFile.getPath();
+                progress.rootTargetPath = entryTarget.getPath();
+
+                moveEntry(sourceFile, entryTarget);
+            }
+        } catch (ErrorInfo info) {
+            setErrorInfo(info.getError(), info.getErrorDescription());
+        }
+
+        reportFinished();
+
+        return getError() == FileError.NONE;
+    }
+
+    /**
+     * Disables the atomic rename, so that each entry is copied and deleted.
+     * This is used by the tests to simulate moving to another file system.
+     */
+    void setRenameDisabled(boolean renameDisabled) {
+        this.renameDisabled = renameDisabled;
+    }
+
+    private static class ErrorInfo extends RuntimeException {
+        private final boolean queryHandling;
+        private final FileError error;
+
+        public ErrorInfo(FileError error, String errorDescription, boolean queryHandling) {
+            super(errorDescription);
+
+            this.queryHandling = queryHandling;
+            this.error = error;
+        }
+
+        public boolean doNotQuery() {
+            return !queryHandling;
+        }
+
+        public FileError getError() {
+            return error;
+        }
+
+        public String getErrorDescription() {
+            return getMessage();
+        }
+    }
+
+    private void verifyTargetType(File targetFile) throws ErrorInfo {
+        if (targetFile.isFile())
+            throw new ErrorInfo(FileError.TARGET_TYPE, String.format(CoreMessages.get("invalidMoveTarget"), targetFile.getAbsolutePath()), true);
+    }
+
+    private void verifyExistence(List<File> sourceFiles, File targetFile) throws ErrorInfo {
+        for (var sourceFile : sourceFiles) {
+            if (!Files.exists(sourceFile.toPath(), LinkOption.NOFOLLOW_LINKS))
+                throw new ErrorInfo(FileError.SOURCE_NOT_EXIST, String.format(CoreMessages.get("sourceFileDoesNotExist"), sourceFile.getAbsolutePath()), true);
+        }
+
+        if (!targetFile.exists() && !targetFile.mkdirs())
+            throw new ErrorInfo(FileError.CREATE_DIR, String.format(CoreMessages.get("cannotCreateDir"), targetFile.getAbsolutePath()), true);
+    }
+
+    private void verifyNonRecursive(List<File> sourceFiles, File targetFile) throws ErrorInfo {
+        var targetPath = Path.of(targetFile.getAbsolutePath()).normalize();
+
+        for (var sourceFile : sourceFiles) {
+            var sourcePath = Path.of(sourceFile.getAbsolutePath()).normalize();
+
+            if (targetPath.startsWith(sourcePath))
+                throw new ErrorInfo(FileError.CREATE_DIR, String.format(CoreMessages.get("cannotMoveIntoItself"), sourceFile.getAbsolutePath()), true);
+        }
+    }
+
+    private void moveEntry(File source, File target) throws ErrorInfo {
+        if (!reportEntry(MoveProgressStatus.START_ENTRY, source, target))
+            return;
+
+        while (true) {
+            try {
+                if (!moveEntryNoQuery(source, target))
+                    return;
+
+                break;
+            } catch (ErrorInfo info) {
+                if (!handleError(info, source, target))
+                    return;
+            }
+        }
+
+        ++progress.entriesMoved;
+        reportEntry(MoveProgressStatus.FINISHED_ENTRY, source, target);
+    }
+
+    /**
+     * @return {@code false} if the entry is not moved because it shall not
+     * be overwritten.
+     */
+    private boolean moveEntryNoQuery(File source, File target) throws ErrorInfo {
+        Path sourcePath = source.toPath();
+        Path targetPath = target.toPath();
+
+        if (!Files.exists(targetPath, LinkOption.NOFOLLOW_LINKS)) {
+            if (!rename(sourcePath, targetPath))
+                copyAndDelete(source, target);
+
+            return true;
+        }
+
+        if (isSameFile(sourcePath, targetPath))
+            return true;
+
+        if (Files.isDirectory(sourcePath, LinkOption.NOFOLLOW_LINKS)) {
+            if (!canWriteDir(source, target))
+                return false;
+
+            for (var entry : listEntries(source))
+                moveEntry(entry, new File(target, entry.getName()));
+
+            // Entries that are skipped or not overwritten are kept:
+            if (isEmptyDir(source))
+                delete(source, target);
+
+            return true;
+        }
+
+        if (!canWriteFile(source, target))
+            return false;
+
+        if (!rename(sourcePath, targetPath))
+            copyAndDelete(source, target);
+
+        return true;
+    }
+
+    /**
+     * @return {@code false} if the source cannot be renamed because the target
+     * is located on another file system.
+     */
+    private boolean rename(Path source, Path target) throws ErrorInfo {
+        if (renameDisabled)
+            return false;
+
+        try {
+            Files.move(source, target, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (AtomicMoveNotSupportedException e) {
+            return false;
+        } catch (AccessDeniedException | SecurityException e) {
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), source), true);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.RENAME_FILE, String.format(CoreMessages.get("cannotRenameFile"), source), true);
+        }
+    }
+
+    private void copyAndDelete(File source, File target) throws ErrorInfo {
+        String sourcePath = progress.sourcePath;
+        String targetPath = progress.targetPath;
+
+        var copy = new FileCopy(info -> reportCopy(source, target, info), queryErrorAction, null);
+
+        // The overwrite decision is already made:
+        copy.setDefaultFileOverwriteAction(OverwriteAction.ALL);
+        copy.setDefaultDirOverwriteAction(OverwriteAction.ALL);
+        copy.start(source.getPath(), target.getParent(), true);
+
+        progress.copyProgress = null;
+        progress.sourcePath = sourcePath;
+        progress.targetPath = targetPath;
+
+        if (copy.getError() == FileError.CANCELED)
+            cancel();
+
+        // The errors of the copy are already queried:
+        if (copy.getError() != FileError.NONE)
+            throw new ErrorInfo(copy.getError(), copy.getErrorDescription(), false);
+
+        deleteSource(source, target);
+    }
+
+    private CopyProgressContinuation reportCopy(File source, File target, FileCopy.ProgressInfo info) {
+        // The final report of the copy is followed by the reports of the
+        // deletion:
+        if (info.getStatus() == CopyProgressStatus.FINISHED || progressFunction == null)
+            return CopyProgressContinuation.CONTINUE;
+
+        progress.status = MoveProgressStatus.COPYING;
+        progress.sourcePath = source.getPath();
+        progress.targetPath = target.getPath();
+        progress.copyProgress = info;
+
+        return progressFunction.report(progress);
+    }
+
+    private void deleteSource(File source, File target) throws ErrorInfo {
+        if (Files.isDirectory(source.toPath(), LinkOption.NOFOLLOW_LINKS)) {
+            for (var entry : listEntries(source))
+                deleteSource(entry, new File(target, entry.getName()));
+
+            if (isEmptyDir(source))
+                deleteWithQuery(source, target);
+        } else if (isCopied(source, target)) {
+            deleteWithQuery(source, target);
+        }
+    }
+
+    private void deleteWithQuery(File source, File target) throws ErrorInfo {
+        reportEntry(MoveProgressStatus.DELETE_SOURCE, source, target);
+
+        while (true) {
+            try {
+                delete(source, target);
+                break;
+            } catch (ErrorInfo info) {
+                if (!handleError(info, source, target))
+                    return;
+            }
+        }
+    }
+
+    private void delete(File source, File target) throws ErrorInfo {
+        try {
+            Files.delete(source.toPath());
+        } catch (AccessDeniedException | SecurityException e) {
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), source.getPath()), true);
+        } catch (IOException e) {
+            throw source.isDirectory()
+                    ? new ErrorInfo(FileError.DELETE_DIR, String.format(CoreMessages.get("cannotDeleteDir"), source.getPath()), true)
+                    : new ErrorInfo(FileError.DELETE_FILE, String.format(CoreMessages.get("cannotDeleteFile"), source.getPath()), true);
+        }
+    }
+
+    /**
+     * @return {@code true} if the error shall be retried and {@code false} if
+     * it shall be ignored.
+     */
+    private boolean handleError(ErrorInfo info, File source, File target) throws ErrorInfo {
+        if (queryErrorAction == null || info.doNotQuery())
+            throw info;
+
+        if (ignoreAllErrors || ignoredErrors.contains(info.getError()))
+            return false;
+
+        switch (queryErrorAction.query(info.getError(), info.getErrorDescription(), source, target)) {
+            case RETRY:
+                return true;
+
+            case IGNORE:
+                return false;
+
+            case IGNORE_ALL_THIS:
+                ignoredErrors.add(info.getError());
+                return false;
+
+            case IGNORE_ALL:
+                ignoreAllErrors = true;
+                return false;
+
+            default:
+                throw new ErrorInfo(info.getError(), info.getErrorDescription(), false);
+        }
+    }
+
+    private boolean isCopied(File source, File target) {
+        return target.isFile()
+                && target.length() == source.length()
+                && target.lastModified() == source.lastModified();
+    }
+
+    private boolean isSameFile(Path source, Path target) throws ErrorInfo {
+        try {
+            return Files.isSameFile(source, target);
+        } catch (IOException e) {
+            throw new ErrorInfo(FileError.READ_FILE, String.format(CoreMessages.get("cannotReadFile"), target), true);
+        }
+    }
+
+    private boolean isEmptyDir(File dir) throws ErrorInfo {
+        var entries = dir.list();
+
+        if (entries == null)
+            throw new ErrorInfo(FileError.READ_DIR, String.format(CoreMessages.get("cannotReadDir"), dir.getPath()), true);
+
+        return entries.length == 0;
+    }
+
+    private File[] listEntries(File dir) throws ErrorInfo {
+        try {
+            var entries = dir.listFiles();
+
+            if (entries == null)
+                throw new ErrorInfo(FileError.READ_DIR, String.format(CoreMessages.get("cannotReadDir"), dir.getPath()), true);
+
+            return entries;
+        } catch (SecurityException e) {
+            throw new ErrorInfo(FileError.ACCESS, String.format(CoreMessages.get("accessDenied"), dir.getPath()), true);
+        }
+    }
+
+    private boolean canWriteDir(File source, File target) throws ErrorInfo {
+        if (dirOverwriteAction == OverwriteAction.NONE)
+            return false;
+
+        if (!Files.isDirectory(target.toPath(), LinkOption.NOFOLLOW_LINKS))
+            throw new ErrorInfo(FileError.TARGET_SOURCE_TYPE, String.format(CoreMessages.get("cannotOverwriteFileWithDir"), target.getAbsolutePath()), true);
+
+        if (dirOverwriteAction == OverwriteAction.ALL)
+            return true;
+
+        if (queryOverwriteAction == null)
+            return false;
+
+        dirOverwriteAction = queryOverwriteAction.query(source, target);
+
+        if (dirOverwriteAction == null || dirOverwriteAction == OverwriteAction.CANCEL)
+            cancel();
+
+        return dirOverwriteAction == OverwriteAction.ALL || dirOverwriteAction == OverwriteAction.ONE;
+    }
+
+    private boolean canWriteFile(File source, File target) throws ErrorInfo {
+        if (fileOverwriteAction == OverwriteAction.NONE)
+            return false;
+
+        if (Files.isDirectory(target.toPath(), LinkOption.NOFOLLOW_LINKS))
+            throw new ErrorInfo(FileError.TARGET_SOURCE_TYPE, String.format(CoreMessages.get("cannotOverwriteDirWithFile"), target.getAbsolutePath()), true);
+
+        if (fileOverwriteAction == OverwriteAction.ALL)
+            return true;
+
+        if (queryOverwriteAction == null)
+            return false;
+
+        fileOverwriteAction = queryOverwriteAction.query(source, target);
+
+        if (fileOverwriteAction == null || fileOverwriteAction == OverwriteAction.CANCEL)
+            cancel();
+
+        return fileOverwriteAction == OverwriteAction.ALL || fileOverwriteAction == OverwriteAction.ONE;
+    }
+
+    /**
+     * @return {@code false} if the entry shall be skipped.
+     */
+    private boolean reportEntry(MoveProgressStatus status, File source, File target) throws ErrorInfo {
+        progress.status = status;
+        progress.sourcePath = source.getPath();
+        progress.targetPath = target.getPath();
+
+        if (progressFunction == null)
+            return true;
+
+        CopyProgressContinuation result = progressFunction.report(progress);
+
+        if (result == CopyProgressContinuation.CANCEL)
+            cancel();
+
+        return result != CopyProgressContinuation.SKIP;
+    }
+
+    private void reportFinished() {
+        progress.status = MoveProgressStatus.FINISHED;
+        progress.sourcePath = "";
+        progress.targetPath = "";
+        progress.rootSourcePath = "";
+        progress.rootTargetPath = "";
+
+        // The result is ignored because there is nothing left to cancel:
+        if (progressFunction != null)
+            progressFunction.report(progress);
+    }
+
+    private void cancel() throws ErrorInfo {
+        throw new ErrorInfo(FileError.CANCELED, CoreMessages.get("operationCanceled"), false);
+    }
+}
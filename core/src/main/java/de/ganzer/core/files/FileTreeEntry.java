@@ -0,0 +1,172 @@
+package de.ganzer.core.files;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A file or directory together with its attributes that are read only once
+ * when the entry is created.
+ * <p>
+ * A directory entry can keep the entries that are listed from it, so that a
+ * tree that is walked during the initialization does not need to be listed
+ * and queried again when it is worked.
+ */
+final class FileTreeEntry {
+    private static final boolean POSIX = FileSystems.getDefault().supportedFileAttributeViews().contains("posix");
+
+    private final File file;
+    private final String path;
+    private final String relativePath;
+    private final boolean directory;
+    private final long size;
+    private final long lastModified;
+    private final Boolean executable;
+    private List<FileTreeEntry> entries;
+
+    private FileTreeEntry(File file, String relativePath, BasicFileAttributes attributes) {
+        this.file = file;
+        this.path = file.getAbsolutePath();
+        this.relativePath = relativePath;
+        this.directory = attributes.isDirectory();
+        this.size = attributes.size();
+        this.lastModified = attributes.lastModifiedTime().toMillis();
+        this.executable = attributes instanceof PosixFileAttributes
+                ? ((PosixFileAttributes)attributes).permissions().contains(PosixFilePermission.OWNER_EXECUTE)
+                : null;
+    }
+
+    /**
+     * Creates an entry for the specified file or directory.
+     *
+     * @param file The file or directory to create the entry for.
+     * @return The created entry.
+     * @throws IOException The attributes of the file cannot be read.
+     */
+    static FileTreeEntry of(File file) throws IOException {
+        return new FileTreeEntry(file, "", readAttributes(file.toPath()));
+    }
+
+    private static BasicFileAttributes readAttributes(Path path) throws IOException {
+        Class<? extends BasicFileAttributes> type = POSIX
+                ? PosixFileAttributes.class
+                : BasicFileAttributes.class;
+
+        try {
+            return Files.readAttributes(path, type);
+        } catch (NoSuchFileException e) {
+            // A broken link is handled like a file:
+            return Files.readAttributes(path, type, LinkOption.NOFOLLOW_LINKS);
+        }
+    }
+
+    File getFile() {
+        return file;
+    }
+
+    String getPath() {
+        return path;
+    }
+
+    /**
+     * Gets the path of this entry relative to the entry that was created by
+     * {@link #of}. The segments are separated by {@code /}.
+     *
+     * @return The relative path; this is an empty string for the entry that
+     * was created by {@link #of}.
+     */
+    String getRelativePath() {
+        return relativePath;
+    }
+
+    boolean isDirectory() {
+        return directory;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    long getLastModified() {
+        return lastModified;
+    }
+
+    boolean canExecute() {
+        return executable != null
+                ? executable
+                : file.canExecute();
+    }
+
+    /**
+     * Gets the entries of this directory.
+     * <p>
+     * If the entries are already cached by {@link #cacheEntries}, the cached
+     * ones are returned; otherwise, the directory is listed but the result
+     * is not cached.
+     *
+     * @param filter     The filter to apply or {@code null} to get all
+     *                   entries. This is ignored if the entries are cached.
+     * @param pathFilter The path filter to apply or {@code null}. This is
+     *                   ignored if the entries are cached.
+     * @return The entries of this directory.
+     * @throws IOException The directory cannot be listed.
+     */
+    List<FileTreeEntry> getEntries(FilenameFilter filter, PathFilter pathFilter) throws IOException {
+        return entries != null
+                ? entries
+                : readEntries(filter, pathFilter);
+    }
+
+    /**
+     * Lists this directory and caches the result.
+     *
+     * @param filter     The filter to apply or {@code null} to get all
+     *                   entries.
+     * @param pathFilter The path filter to apply or {@code null}.
+     * @return The entries of this directory.
+     * @throws IOException The directory cannot be listed.
+     */
+    List<FileTreeEntry> cacheEntries(FilenameFilter filter, PathFilter pathFilter) throws IOException {
+        entries = readEntries(filter, pathFilter);
+        return entries;
+    }
+
+    /**
+     * Releases the cached entries.
+     */
+    void releaseEntries() {
+        entries = null;
+    }
+
+    private List<FileTreeEntry> readEntries(FilenameFilter filter, PathFilter pathFilter) throws IOException {
+        var result = new ArrayList<FileTreeEntry>();
+
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(file.toPath())) {
+            for (Path entry : stream) {
+                String name = entry.getFileName().toString();
+                String entryPath = relativePath.isEmpty() ? name : relativePath + "/" + name;
+
+                if (filter != null && !filter.accept(file, name))
+                    continue;
+
+                // Excluded entries are dropped before their attributes are
+                // read:
+                if (pathFilter != null && pathFilter.isExcluded(entryPath))
+                    continue;
+
+                var attributes = readAttributes(entry);
+
+                if (pathFilter == null || pathFilter.accept(entryPath, attributes.isDirectory()))
+                    result.add(new FileTreeEntry(new File(file, name), entryPath, attributes));
+            }
+        }
+
+        return result;
+    }
+}
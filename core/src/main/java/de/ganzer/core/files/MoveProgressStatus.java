@@ -0,0 +1,41 @@
+package de.ganzer.core.files;
+
+/**
+ * Defines the status of the progress when moving files with {@link FileMove}.
+ */
+public enum MoveProgressStatus {
+    /**
+     * Reports that a file or directory is going to be moved. The progress
+     * function is called once for each source and once for each entry of a
+     * directory that is moved into an already existing directory.
+     */
+    START_ENTRY,
+
+    /**
+     * Reports the progress of an entry that cannot be renamed because the
+     * target is located on another file system and is therefore copied.
+     * {@link FileMove.ProgressInfo#getCopyProgress()} contains the progress
+     * of the copy.
+     */
+    COPYING,
+
+    /**
+     * Reports that a source file or directory is going to be deleted after
+     * it is copied. The progress function is called once for each deleted
+     * file and directory.
+     */
+    DELETE_SOURCE,
+
+    /**
+     * Reports that a file or directory is moved. The progress function is
+     * called once for each entry that is reported by {@link #START_ENTRY}
+     * and not skipped.
+     */
+    FINISHED_ENTRY,
+
+    /**
+     * This status reports that all files are moved or that the operation is
+     * aborted either by the user or by an error.
+     */
+    FINISHED
+}
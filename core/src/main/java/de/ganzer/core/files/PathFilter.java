@@ -0,0 +1,433 @@
+package de.ganzer.core.files;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The PathFilter class selects the entries of a tree by compiled include and
+ * exclude patterns.
+ * <p>
+ * The patterns are matched against the path of an entry relative to the
+ * root of the tree, where the segments are separated by {@code /}. The
+ * patterns are globs with the following syntax:
+ * <ul>
+ *     <li>{@code *} matches any number of characters except {@code /}.</li>
+ *     <li>{@code ?} matches a single character except {@code /}.</li>
+ *     <li>{@code [abc]} and {@code [a-z]} match a single character of the
+ *     set; {@code [!abc]} matches a single character that is not in the
+ *     set.</li>
+ *     <li>{@code **} as a whole segment matches any number of segments.</li>
+ *     <li>{@code \} escapes the following character.</li>
+ * </ul>
+ * A pattern that contains no {@code /} (like {@code node_modules} or
+ * {@code *.tmp}) matches entries with this name at any depth. A pattern that
+ * contains a {@code /} is anchored at the root; a leading {@code /} can be
+ * used to anchor a pattern without other separators. Each pattern is also a
+ * path prefix: If it matches a directory, it matches all entries below it,
+ * too. A trailing {@code /} is ignored.
+ * <p>
+ * An entry is accepted if it matches no exclude pattern and if it matches an
+ * include pattern or no include patterns are given. A directory is also
+ * accepted if entries below it can match an include pattern. The engines do
+ * not list directories that are not accepted, so that excluded subtrees are
+ * pruned before they are read.
+ * <p>
+ * The patterns of each set are compiled into a single automaton whose
+ * deterministic states are built on demand and cached, so that matching a
+ * path needs a single pass over its characters. Instances of this class are
+ * immutable and thread-safe.
+ */
+@SuppressWarnings("unused")
+public final class PathFilter {
+    private static final int MAX_CACHED_STATES = 4096;
+
+    private final List<String> includes;
+    private final List<String> excludes;
+    private final Automaton includeAutomaton;
+    private final Automaton excludeAutomaton;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param includes The patterns of the entries to accept. If this is empty,
+     *                 all entries that are not excluded are accepted.
+     * @param excludes The patterns of the entries to reject.
+     * @throws NullPointerException     includes, excludes or one of their
+     *                                  elements is {@code null}.
+     * @throws IllegalArgumentException A pattern is empty or has an invalid
+     *                                  syntax.
+     */
+    public PathFilter(List<String> includes, List<String> excludes) {
+        Objects.requireNonNull(includes, "includes");
+        Objects.requireNonNull(excludes, "excludes");
+
+        this.includes = List.copyOf(includes);
+        this.excludes = List.copyOf(excludes);
+
+        includeAutomaton = this.includes.isEmpty() ? null : new Automaton(this.includes);
+        excludeAutomaton = this.excludes.isEmpty() ? null : new Automaton(this.excludes);
+    }
+
+    /**
+     * Creates a filter that rejects the entries that match the specified
+     * patterns.
+     *
+     * @param excludes The patterns of the entries to reject.
+     * @return The created filter.
+     * @throws NullPointerException     An element of excludes is {@code null}.
+     * @throws IllegalArgumentException A pattern is empty or has an invalid
+     *                                  syntax.
+     */
+    public static PathFilter excluding(String... excludes) {
+        return new PathFilter(Collections.emptyList(), List.of(excludes));
+    }
+
+    /**
+     * Gets the include patterns.
+     *
+     * @return The unmodifiable list of the include patterns.
+     */
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    /**
+     * Gets the exclude patterns.
+     *
+     * @return The unmodifiable list of the exclude patterns.
+     */
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * Determines whether the specified entry matches an exclude pattern.
+     *
+     * @param relativePath The path of the entry relative to the root of the
+     *                     tree. {@code \} is handled like {@code /}.
+     * @return {@code true} if the entry is excluded.
+     * @throws NullPointerException relativePath is {@code null}.
+     */
+    public boolean isExcluded(String relativePath) {
+        Objects.requireNonNull(relativePath, "relativePath");
+        return excludeAutomaton != null && excludeAutomaton.run(normalize(relativePath)).accept;
+    }
+
+    /**
+     * Determines whether the specified entry is accepted.
+     *
+     * @param relativePath The path of the entry relative to the root of the
+     *                     tree. {@code \} is handled like {@code /}.
+     * @param directory    {@code true} if the entry is a directory. A
+     *                     directory is accepted if entries below it can match
+     *                     an include pattern.
+     * @return {@code true} if the entry is accepted.
+     * @throws NullPointerException relativePath is {@code null}.
+     */
+    public boolean accept(String relativePath, boolean directory) {
+        Objects.requireNonNull(relativePath, "relativePath");
+
+        String path = normalize(relativePath);
+
+        if (excludeAutomaton != null && excludeAutomaton.run(path).accept)
+            return false;
+
+        if (includeAutomaton == null)
+            return true;
+
+        State state = includeAutomaton.run(path);
+
+        return state.accept || directory && includeAutomaton.step(state, '/').alive;
+    }
+
+    private static String normalize(String path) {
+        return trimSlashes(path.replace('\\', '/'));
+    }
+
+    private static String trimSlashes(String path) {
+        int start = 0;
+        int end = path.length();
+
+        while (start < end && path.charAt(start) == '/')
+            ++start;
+
+        while (end > start && path.charAt(end - 1) == '/')
+            --end;
+
+        return path.substring(start, end);
+    }
+
+    /**
+     * A deterministic state: The set of the active positions of the
+     * nondeterministic automaton.
+     */
+    private static final class State {
+        final BitSet positions;
+        final boolean accept;
+        final boolean alive;
+        final Map<Character, State> next = new ConcurrentHashMap<>();
+
+        State(BitSet positions, boolean accept) {
+            this.positions = positions;
+            this.accept = accept;
+            this.alive = !positions.isEmpty();
+        }
+    }
+
+    /**
+     * The nondeterministic automaton of a set of patterns with a lazily
+     * built cache of its deterministic states.
+     */
+    private static final class Automaton {
+        private static final int LITERAL = 0;
+        private static final int ANY = 1;
+        private static final int STAR = 2;
+        private static final int SEGMENTS = 3;
+        private static final int SKIPPED = 4;
+        private static final int REST = 5;
+        private static final int CLASS = 6;
+        private static final int ACCEPT = 7;
+
+        private final List<Integer> types = new ArrayList<>();
+        private final List<Object> operands = new ArrayList<>();
+        private final BitSet starts = new BitSet();
+        private final Map<BitSet, State> states = new ConcurrentHashMap<>();
+        private final State initial;
+
+        Automaton(List<String> patterns) {
+            for (String pattern : patterns) {
+                Objects.requireNonNull(pattern, "patterns");
+
+                String path = trimSlashes(pattern);
+                boolean anchored = pattern.startsWith("/") || path.indexOf('/') >= 0;
+
+                if (path.isEmpty())
+                    throw new IllegalArgumentException("patterns");
+
+                // The pattern itself and the entries below it:
+                compile(anchored ? path : "**/" + path);
+                compile((anchored ? path : "**/" + path) + "/**");
+            }
+
+            initial = intern(closure(starts));
+        }
+
+        State run(String path) {
+            State state = initial;
+
+            for (int i = 0; i < path.length() && state.alive; ++i)
+                state = step(state, path.charAt(i));
+
+            return state;
+        }
+
+        State step(State state, char c) {
+            State next = state.next.get(c);
+
+            if (next != null)
+                return next;
+
+            var positions = new BitSet();
+
+            for (int p = state.positions.nextSetBit(0); p >= 0; p = state.positions.nextSetBit(p + 1)) {
+                switch (types.get(p)) {
+                    case LITERAL:
+                        if ((Character)operands.get(p) == c)
+                            positions.set(p + 1);
+                        break;
+
+                    case ANY:
+                        if (c != '/')
+                            positions.set(p + 1);
+                        break;
+
+                    case STAR:
+                        if (c != '/')
+                            positions.set(p);
+                        break;
+
+                    case SEGMENTS:
+                        // A skipped segment starts; the pattern continues
+                        // only after its '/':
+                        positions.set(c == '/' ? p : p + 1);
+                        break;
+
+                    case SKIPPED:
+                        positions.set(c == '/' ? p - 1 : p);
+                        break;
+
+                    case REST:
+                        positions.set(p);
+                        break;
+
+                    case CLASS:
+                        if (c != '/' && ((CharClass)operands.get(p)).matches(c))
+                            positions.set(p + 1);
+                        break;
+
+                    default:
+                        break;
+                }
+            }
+
+            next = intern(closure(positions));
+
+            // The cache is limited for pathological patterns:
+            if (states.size() < MAX_CACHED_STATES)
+                state.next.put(c, next);
+
+            return next;
+        }
+
+        private State intern(BitSet positions) {
+            State state = states.get(positions);
+
+            if (state != null)
+                return state;
+
+            boolean accept = false;
+
+            for (int p = positions.nextSetBit(0); p >= 0; p = positions.nextSetBit(p + 1))
+                accept |= types.get(p) == ACCEPT;
+
+            state = new State(positions, accept);
+
+            if (states.size() >= MAX_CACHED_STATES)
+                return state;
+
+            State existing = states.putIfAbsent(positions, state);
+
+            return existing != null ? existing : state;
+        }
+
+        private BitSet closure(BitSet positions) {
+            var result = (BitSet)positions.clone();
+
+            // STAR, SEGMENTS and REST may match nothing. SEGMENTS is only
+            // active at the start of a segment, so that the pattern after
+            // it starts at a segment, too:
+            for (int p = result.nextSetBit(0); p >= 0; p = result.nextSetBit(p + 1)) {
+                int type = types.get(p);
+
+                if (type == STAR || type == REST)
+                    result.set(p + 1);
+                else if (type == SEGMENTS)
+                    result.set(p + 2);
+            }
+
+            return result;
+        }
+
+        private void compile(String pattern) {
+            starts.set(types.size());
+
+            String[] segments = pattern.split("/", -1);
+
+            for (int s = 0; s < segments.length; ++s) {
+                String segment = segments[s];
+                boolean last = s == segments.length - 1;
+
+                if (segment.isEmpty())
+                    throw new IllegalArgumentException("patterns");
+
+                if (segment.equals("**")) {
+                    // "**/" matches whole segments; a trailing "**" matches
+                    // everything:
+                    if (last) {
+                        add(REST, null);
+                    } else {
+                        add(SEGMENTS, null);
+                        add(SKIPPED, null);
+                    }
+
+                    continue;
+                }
+
+                compileSegment(segment);
+
+                if (!last)
+                    add(LITERAL, '/');
+            }
+
+            add(ACCEPT, null);
+        }
+
+        private void compileSegment(String segment) {
+            for (int i = 0; i < segment.length(); ++i) {
+                char c = segment.charAt(i);
+
+                switch (c) {
+                    case '*':
+                        while (i + 1 < segment.length() && segment.charAt(i + 1) == '*')
+                            ++i;
+
+                        add(STAR, null);
+                        break;
+
+                    case '?':
+                        add(ANY, null);
+                        break;
+
+                    case '[':
+                        int end = segment.indexOf(']', i + 2);
+
+                        if (end < 0)
+                            throw new IllegalArgumentException("patterns");
+
+                        add(CLASS, new CharClass(segment.substring(i + 1, end)));
+                        i = end;
+                        break;
+
+                    case '\\':
+                        if (++i == segment.length())
+                            throw new IllegalArgumentException("patterns");
+
+                        add(LITERAL, segment.charAt(i));
+                        break;
+
+                    default:
+                        add(LITERAL, c);
+                        break;
+                }
+            }
+        }
+
+        private void add(int type, Object operand) {
+            types.add(type);
+            operands.add(operand);
+        }
+    }
+
+    private static final class CharClass {
+        private final boolean negated;
+        private final String set;
+
+        CharClass(String definition) {
+            negated = definition.startsWith("!");
+            set = negated ? definition.substring(1) : definition;
+
+            if (set.isEmpty())
+                throw new IllegalArgumentException("patterns");
+        }
+
+        boolean matches(char c) {
+            boolean found = false;
+
+            for (int i = 0; i < set.length() && !found; ++i) {
+                if (i + 2 < set.length() && set.charAt(i + 1) == '-') {
+                    found = c >= set.charAt(i) && c <= set.charAt(i + 2);
+                    i += 2;
+                } else {
+                    found = c == set.charAt(i);
+                }
+            }
+
+            return found != negated;
+        }
+    }
+}
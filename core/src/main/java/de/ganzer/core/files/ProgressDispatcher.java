@@ -0,0 +1,155 @@
+package de.ganzer.core.files;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.function.Predicate;
+
+/**
+ * Delivers progress reports by a separate thread, so that the reporting
+ * engine does not wait for the progress function.
+ * <p>
+ * Reports are delivered in the order they are posted. A counter report that
+ * is still waiting is replaced by a newer counter report; reports of status
+ * transitions are never replaced. If {@link #MAX_PENDING} reports are
+ * waiting, posting a report that cannot replace a waiting one blocks until
+ * the listener has taken one, so that a slow listener cannot make the
+ * waiting reports grow with the number of files.
+ * <p>
+ * An exception that is thrown by the listener cancels the job; it is
+ * rethrown by {@link #close()}. The reports that are posted after the
+ * exception are not delivered.
+ *
+ * @param <T> The type of the delivered reports.
+ */
+final class ProgressDispatcher<T> {
+    /**
+     * The maximum number of reports that wait for their delivery.
+     */
+    static final int MAX_PENDING = 1024;
+
+    private final Predicate<T> listener;
+    private final Deque<T> pending = new ArrayDeque<>();
+    private final Thread thread;
+    private boolean lastCoalescible;
+    private boolean closed;
+    private boolean stopped;
+    private volatile boolean canceled;
+    private volatile RuntimeException failure;
+
+    /**
+     * Creates a new instance and starts its thread.
+     *
+     * @param name     The name of the thread.
+     * @param listener The function to deliver the reports to. It returns
+     *                 {@code true} to request cancellation.
+     */
+    ProgressDispatcher(String name, Predicate<T> listener) {
+        this.listener = listener;
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * Posts a report. This blocks while the maximum number of reports is
+     * waiting and the report cannot replace the last one.
+     *
+     * @param report      A snapshot of the report to deliver.
+     * @param coalescible {@code true} if the report may be replaced by a
+     *                    later one that is also coalescible.
+     */
+    synchronized void post(T report, boolean coalescible) {
+        boolean interrupted = false;
+
+        while (pending.size() >= MAX_PENDING && !stopped && !(coalescible && lastCoalescible)) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt();
+
+        if (coalescible && lastCoalescible && !pending.isEmpty())
+            pending.pollLast();
+
+        pending.addLast(report);
+        lastCoalescible = coalescible;
+
+        notifyAll();
+    }
+
+    /**
+     * Determines whether the listener has requested cancellation or has
+     * thrown an exception.
+     *
+     * @return {@code true} if the job shall be canceled.
+     */
+    boolean isCanceled() {
+        return canceled;
+    }
+
+    /**
+     * Delivers all pending reports and stops the thread.
+     *
+     * @throws RuntimeException The exception that was thrown by the
+     *                          listener.
+     */
+    void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (failure != null)
+            throw failure;
+    }
+
+    private void run() {
+        try {
+            while (true) {
+                T report;
+
+                synchronized (this) {
+                    while (pending.isEmpty() && !closed) {
+                        try {
+                            wait();
+                        } catch (InterruptedException e) {
+                            return;
+                        }
+                    }
+
+                    if (pending.isEmpty())
+                        return;
+
+                    report = pending.pollFirst();
+                    notifyAll();
+                }
+
+                if (failure != null)
+                    continue;
+
+                try {
+                    if (listener.test(report))
+                        canceled = true;
+                } catch (RuntimeException e) {
+                    failure = e;
+                    canceled = true;
+                }
+            }
+        } finally {
+            synchronized (this) {
+                stopped = true;
+                notifyAll();
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package de.ganzer.core.files;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * The ProgressPolicy class defines how often {@link FileCopy} and
+ * {@link FileDelete} call their progress functions.
+ * <p>
+ * Reports that only update counters (like {@link CopyProgressStatus#COPYING_FILE}
+ * or {@link DeleteProgressStatus#DELETE_FILE}) are delivered only if both
+ * the minimum interval has passed and the counter has grown by at least the
+ * minimum delta since the last delivered report. Skipped reports are not
+ * lost: The next delivered report contains the values of all skipped ones.
+ * Reports of status transitions (like {@link CopyProgressStatus#START_FILE}
+ * or {@link CopyProgressStatus#FINISHED}) are always delivered.
+ * <p>
+ * Instances of this class are immutable and may be shared.
+ */
+@SuppressWarnings("unused")
+public class ProgressPolicy {
+    /**
+     * The policy that delivers each report on the thread that copies or
+     * deletes. This is the default policy of the engines.
+     */
+    public static final ProgressPolicy EACH = new ProgressPolicy(Duration.ZERO, 0, false);
+
+    private final Duration minInterval;
+    private final long minDelta;
+    private final boolean asynchronous;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param minInterval  The minimum time between two delivered counter
+     *                     reports.
+     * @param minDelta     The minimum growth of the counter between two
+     *                     delivered counter reports. This are bytes for
+     *                     {@link FileCopy} and entries for {@link FileDelete}.
+     * @param asynchronous {@code true} to deliver the reports by a separate
+     *                     thread. In this case the engine waits for the
+     *                     progress function only if many reports are not
+     *                     yet delivered, but a returned
+     *                     {@link CopyProgressContinuation#SKIP} is ignored and
+     *                     a returned cancel request takes effect with the next
+     *                     report of the engine. An exception thrown by the
+     *                     progress function cancels the job and is rethrown
+     *                     when the job has finished.
+     * @throws NullPointerException     minInterval is {@code null}.
+     * @throws IllegalArgumentException minInterval or minDelta is negative.
+     */
+    public ProgressPolicy(Duration minInterval, long minDelta, boolean asynchronous) {
+        Objects.requireNonNull(minInterval, "minInterval");
+
+        if (minInterval.isNegative())
+            throw new IllegalArgumentException("minInterval");
+
+        if (minDelta < 0)
+            throw new IllegalArgumentException("minDelta");
+
+        this.minInterval = minInterval;
+        this.minDelta = minDelta;
+        this.asynchronous = asynchronous;
+    }
+
+    /**
+     * Gets the minimum time between two delivered counter reports.
+     *
+     * @return The minimum interval.
+     */
+    public Duration getMinInterval() {
+        return minInterval;
+    }
+
+    /**
+     * Gets the minimum growth of the counter between two delivered counter
+     * reports.
+     *
+     * @return The minimum delta.
+     */
+    public long getMinDelta() {
+        return minDelta;
+    }
+
+    /**
+     * Gets a value indicating whether the reports are delivered by a
+     * separate thread.
+     *
+     * @return {@code true} if the reports are delivered asynchronously.
+     */
+    public boolean isAsynchronous() {
+        return asynchronous;
+    }
+}
@@ -0,0 +1,41 @@
+package de.ganzer.core.files;
+
+/**
+ * Decides whether a counter report is delivered according to a
+ * {@link ProgressPolicy}. An instance is shared by all workers of a job.
+ */
+final class ProgressThrottle {
+    private final long minIntervalNanos;
+    private final long minDelta;
+    private boolean delivered;
+    private long lastNanos;
+    private long lastValue;
+
+    ProgressThrottle(ProgressPolicy policy) {
+        this.minIntervalNanos = policy.getMinInterval().toNanos();
+        this.minDelta = policy.getMinDelta();
+    }
+
+    /**
+     * Determines whether a counter report is due. The first report is
+     * always due.
+     *
+     * @param value The current value of the counter.
+     * @return {@code true} if the report shall be delivered.
+     */
+    synchronized boolean isDue(long value) {
+        if (minIntervalNanos == 0 && minDelta == 0)
+            return true;
+
+        long now = System.nanoTime();
+
+        if (delivered && (now - lastNanos < minIntervalNanos || Math.abs(value - lastValue) < minDelta))
+            return false;
+
+        delivered = true;
+        lastNanos = now;
+        lastValue = value;
+
+        return true;
+    }
+}
@@ -0,0 +1,165 @@
+package de.ganzer.core.files;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The RateLimiter class limits the throughput of one or more copy jobs by a
+ * token bucket.
+ * <p>
+ * The limiter can restrict both the number of bytes and the number of
+ * operations per second. A job takes the bytes and the operation after each
+ * buffer it has copied; if the bucket is exhausted, the job waits until the
+ * bucket is refilled. A limiter can be shared by several instances of
+ * {@link FileCopy} (even by jobs that run at the same time), so that all of
+ * them draw from the same budget. The limits can be changed while jobs are
+ * running; the change takes effect with the next buffer.
+ * <p>
+ * The bucket holds the tokens of 100 ms, so that short bursts above the limit
+ * are possible after an idle time.
+ * <p>
+ * All methods of this class are thread-safe.
+ */
+@SuppressWarnings("unused")
+public class RateLimiter {
+    private static final long BURST_NANOS = 100_000_000L;
+    private static final long MAX_SLEEP_NANOS = 100_000_000L;
+
+    private long bytesPerSecond;
+    private long operationsPerSecond;
+    private double byteTokens;
+    private double operationTokens;
+    private long lastRefillNanos = System.nanoTime();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param bytesPerSecond      The maximum number of bytes per second or 0
+     *                            if the bytes are not limited.
+     * @param operationsPerSecond The maximum number of operations per second
+     *                            or 0 if the operations are not limited.
+     * @throws IllegalArgumentException bytesPerSecond or operationsPerSecond
+     *                                  is negative.
+     */
+    public RateLimiter(long bytesPerSecond, long operationsPerSecond) {
+        setBytesPerSecond(bytesPerSecond);
+        setOperationsPerSecond(operationsPerSecond);
+    }
+
+    /**
+     * Gets the maximum number of bytes per second.
+     *
+     * @return The limit of the bytes or 0 if the bytes are not limited.
+     */
+    public synchronized long getBytesPerSecond() {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Sets the maximum number of bytes per second.
+     *
+     * @param bytesPerSecond The limit to set or 0 if the bytes shall not be
+     *                       limited.
+     * @throws IllegalArgumentException bytesPerSecond is negative.
+     */
+    public synchronized void setBytesPerSecond(long bytesPerSecond) {
+        if (bytesPerSecond < 0)
+            throw new IllegalArgumentException("bytesPerSecond");
+
+        refill(System.nanoTime());
+
+        this.bytesPerSecond = bytesPerSecond;
+        byteTokens = Math.min(byteTokens, getCapacity(bytesPerSecond));
+        notifyAll();
+    }
+
+    /**
+     * Gets the maximum number of operations per second.
+     *
+     * @return The limit of the operations or 0 if the operations are not
+     * limited.
+     */
+    public synchronized long getOperationsPerSecond() {
+        return operationsPerSecond;
+    }
+
+    /**
+     * Sets the maximum number of operations per second.
+     *
+     * @param operationsPerSecond The limit to set or 0 if the operations
+     *                            shall not be limited.
+     * @throws IllegalArgumentException operationsPerSecond is negative.
+     */
+    public synchronized void setOperationsPerSecond(long operationsPerSecond) {
+        if (operationsPerSecond < 0)
+            throw new IllegalArgumentException("operationsPerSecond");
+
+        refill(System.nanoTime());
+
+        this.operationsPerSecond = operationsPerSecond;
+        operationTokens = Math.min(operationTokens, getCapacity(operationsPerSecond));
+        notifyAll();
+    }
+
+    /**
+     * Takes the specified number of bytes and one operation from the bucket
+     * and waits until the bucket is no longer exhausted.
+     * <p>
+     * The tokens are taken before waiting, so that a request that is larger
+     * than the bucket is possible: The following requests wait until the
+     * debt is paid off.
+     *
+     * @param bytes The number of bytes to take.
+     * @throws InterruptedException     The waiting thread is interrupted.
+     * @throws IllegalArgumentException bytes is negative.
+     */
+    public synchronized void acquire(long bytes) throws InterruptedException {
+        if (bytes < 0)
+            throw new IllegalArgumentException("bytes");
+
+        refill(System.nanoTime());
+
+        if (bytesPerSecond > 0)
+            byteTokens -= bytes;
+
+        if (operationsPerSecond > 0)
+            operationTokens -= 1;
+
+        while (true) {
+            long waitNanos = Math.max(
+                    getWaitNanos(byteTokens, bytesPerSecond),
+                    getWaitNanos(operationTokens, operationsPerSecond));
+
+            if (waitNanos <= 0)
+                return;
+
+            // The wait is limited, so that a changed limit takes effect
+            // soon even if no one is notified:
+            TimeUnit.NANOSECONDS.timedWait(this, Math.min(waitNanos, MAX_SLEEP_NANOS));
+            refill(System.nanoTime());
+        }
+    }
+
+    private void refill(long now) {
+        double seconds = (now - lastRefillNanos) / 1e9;
+
+        lastRefillNanos = now;
+
+        byteTokens = bytesPerSecond > 0
+                ? Math.min(getCapacity(bytesPerSecond), byteTokens + seconds * bytesPerSecond)
+                : 0;
+
+        operationTokens = operationsPerSecond > 0
+                ? Math.min(getCapacity(operationsPerSecond), operationTokens + seconds * operationsPerSecond)
+                : 0;
+    }
+
+    private static double getCapacity(long perSecond) {
+        return Math.max(1, perSecond * (BURST_NANOS / 1e9));
+    }
+
+    private static long getWaitNanos(double tokens, long perSecond) {
+        return tokens >= 0 || perSecond == 0
+                ? 0
+                : (long)Math.ceil(-tokens / perSecond * 1e9);
+    }
+}
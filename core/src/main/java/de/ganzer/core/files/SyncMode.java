@@ -0,0 +1,30 @@
+package de.ganzer.core.files;
+
+/**
+ * Defines how {@link FileCopy} decides whether an already existing target
+ * file needs to be copied again.
+ */
+public enum SyncMode {
+    /**
+     * Existing targets are handled by the overwrite actions of
+     * {@link FileCopy}.
+     */
+    NONE,
+
+    /**
+     * An existing target file is not copied again if its size and its time
+     * of last modification are the same as the ones of the source file. All
+     * other targets are overwritten without asking.
+     */
+    SIZE_AND_TIME,
+
+    /**
+     * An existing target file is not copied again if its content is the
+     * same as the content of the source file. All other targets are
+     * overwritten without asking.
+     * <p>
+     * This needs to read both files if they have the same size, but it also
+     * detects changes that do not change the time of last modification.
+     */
+    CONTENT
+}
@@ -0,0 +1,206 @@
+package de.ganzer.core.files;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The TrashReclaimer class deletes the tombstones of a trash directory in the
+ * background.
+ * <p>
+ * A tombstone is a file or directory that was moved into the trash directory
+ * by {@link FileDelete#setTrashDirectory} instead of being deleted. The
+ * reclaimer deletes the tombstones one after the other by a single daemon
+ * thread with the lowest thread priority; the thread is terminated if there
+ * is nothing to do. Java provides no way to lower the I/O priority of a
+ * thread, so the number of deleted entries per second can additionally be
+ * limited by {@link #setRateLimiter}.
+ * <p>
+ * There is one reclaimer for each trash directory. When it is created, it
+ * reclaims all tombstones that are left in the trash directory, for example
+ * by a process that was terminated before its reclaimer was done. Tombstones
+ * that cannot be deleted are kept and reclaimed again by the next instance.
+ * <p>
+ * All methods of this class are thread-safe.
+ */
+@SuppressWarnings("unused")
+public class TrashReclaimer {
+    private static final Map<File, TrashReclaimer> reclaimers = new ConcurrentHashMap<>();
+
+    private final File trashDirectory;
+    private final Set<String> pending = new HashSet<>();
+    private final ThreadPoolExecutor executor;
+    private volatile RateLimiter rateLimiter;
+
+    private TrashReclaimer(File trashDirectory) {
+        this.trashDirectory = trashDirectory;
+
+        executor = new ThreadPoolExecutor(1, 1, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            var thread = new Thread(runnable, "TrashReclaimer " + trashDirectory.getName());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+
+            return thread;
+        });
+
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Gets the reclaimer of the specified trash directory. If the reclaimer
+     * does not exist yet, it is created and reclaims the tombstones that
+     * are left in the directory.
+     *
+     * @param trashDirectory The trash directory.
+     * @return The reclaimer of the directory.
+     * @throws NullPointerException trashDirectory is {@code null}.
+     */
+    public static TrashReclaimer of(File trashDirectory) {
+        Objects.requireNonNull(trashDirectory, "trashDirectory");
+
+        File key = canonicalFile(trashDirectory);
+        TrashReclaimer reclaimer = reclaimers.get(key);
+
+        if (reclaimer != null)
+            return reclaimer;
+
+        var created = new TrashReclaimer(key);
+        reclaimer = reclaimers.putIfAbsent(key, created);
+
+        if (reclaimer != null)
+            return reclaimer;
+
+        created.reclaimLeftovers();
+
+        return created;
+    }
+
+    /**
+     * Gets the trash directory.
+     *
+     * @return The canonical trash directory.
+     */
+    public File getTrashDirectory() {
+        return trashDirectory;
+    }
+
+    /**
+     * Gets the limiter that limits the number of deleted entries.
+     *
+     * @return The used limiter or {@code null} if the deletion is not
+     * limited.
+     */
+    public RateLimiter getRateLimiter() {
+        return rateLimiter;
+    }
+
+    /**
+     * Sets the limiter that limits the number of deleted entries. Each
+     * deleted entry is taken as an operation without bytes.
+     *
+     * @param rateLimiter The limiter to use or {@code null} to delete without
+     *                    limit.
+     */
+    public void setRateLimiter(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * Gets the number of tombstones that are not yet deleted.
+     *
+     * @return The number of waiting tombstones including the one that is
+     * currently deleted.
+     */
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Waits until all tombstones are deleted.
+     *
+     * @param timeout The maximum time to wait.
+     * @param unit    The unit of timeout.
+     * @return {@code true} if all tombstones are deleted; {@code false} if
+     * the timeout elapsed before.
+     * @throws InterruptedException The waiting thread is interrupted.
+     */
+    public synchronized boolean awaitIdle(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+        while (!pending.isEmpty()) {
+            long remaining = deadline - System.nanoTime();
+
+            if (remaining <= 0)
+                return false;
+
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+
+        return true;
+    }
+
+    /**
+     * Schedules the deletion of the specified tombstone.
+     *
+     * @param tombstone The file or directory in the trash directory to delete.
+     */
+    void submit(File tombstone) {
+        synchronized (this) {
+            if (!pending.add(tombstone.getName()))
+                return;
+        }
+
+        executor.execute(() -> reclaim(tombstone));
+    }
+
+    private void reclaimLeftovers() {
+        var leftovers = trashDirectory.listFiles();
+
+        if (leftovers == null)
+            return;
+
+        for (var tombstone : leftovers)
+            submit(tombstone);
+    }
+
+    private void reclaim(File tombstone) {
+        var delete = new FileDelete(info -> {
+            RateLimiter limiter = rateLimiter;
+
+            if (limiter == null || info.getStatus() == DeleteProgressStatus.FINISHED)
+                return DeleteProgressContinuation.CONTINUE;
+
+            try {
+                limiter.acquire(0);
+                return DeleteProgressContinuation.CONTINUE;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return DeleteProgressContinuation.CANCEL;
+            }
+        }, (error, description, file) -> DeleteErrorAction.IGNORE);
+
+        try {
+            delete.start(tombstone.getPath(), true);
+        } finally {
+            synchronized (this) {
+                pending.remove(tombstone.getName());
+                notifyAll();
+            }
+        }
+    }
+
+    private static File canonicalFile(File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file.getAbsoluteFile();
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package de.ganzer.core.files;
+
+/**
+ * Defines how {@link FileCopy} verifies the copied files.
+ * <p>
+ * If files are verified, a checksum of the data is computed while the data
+ * is copied (see {@link FileCopy#setChecksumAlgorithm}), so that the source
+ * is read only once.
+ */
+public enum VerifyMode {
+    /**
+     * The copied files are not verified and no checksums are computed.
+     */
+    NONE,
+
+    /**
+     * The checksum of each file is computed while the file is copied, and
+     * the target is forced to the storage device before it is renamed. The
+     * written data is trusted and not read again.
+     */
+    TRUST_WRITE,
+
+    /**
+     * Like {@link #TRUST_WRITE}, but the target is read again after it is
+     * written and its checksum is compared with the one of the source. A
+     * mismatch is reported by {@link FileError#CHECKSUM_MISMATCH}.
+     * <p>
+     * The target is read by the operating system, which may deliver the
+     * data from its cache.
+     */
+    REREAD_TARGET
+}
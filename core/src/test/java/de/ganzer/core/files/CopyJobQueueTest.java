@@ -0,0 +1,192 @@
+package de.ganzer.core.files;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CopyJobQueueTest {
+    @TempDir
+    Path tempDir;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private Path createSource(String name) throws IOException {
+        Path source = tempDir.resolve(name);
+        Files.write(source, new byte[1000]);
+
+        return source;
+    }
+
+    private static FileCopy createCopy(String name, List<String> started, CountDownLatch release) {
+        return new FileCopy(info -> {
+            if (info.getStatus() == CopyProgressStatus.START_FILE) {
+                started.add(name);
+
+                try {
+                    if (release != null)
+                        release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+    }
+
+    @Test
+    void jobsOfAStoreAreLimitedAndStartedByPriority() throws Exception {
+        Path target = Files.createDirectories(tempDir.resolve("target"));
+        var started = Collections.synchronizedList(new ArrayList<String>());
+        var release = new CountDownLatch(1);
+        var queue = new CopyJobQueue(executor);
+
+        queue.setMaxJobsPerStore(1);
+
+        var first = queue.submit(createCopy("first", started, release), createSource("first").toString(), target.toString(), false, 0);
+        var low = queue.submit(createCopy("low", started, null), createSource("low").toString(), target.toString(), false, 0);
+        var high = queue.submit(createCopy("high", started, null), createSource("high").toString(), target.toString(), false, 5);
+        var canceled = queue.submit(createCopy("canceled", started, null), createSource("canceled").toString(), target.toString(), false, 9);
+
+        canceled.cancel();
+
+        assertEquals(3, queue.getQueueDepth());
+        assertEquals(1, queue.getRunningJobs());
+
+        release.countDown();
+
+        assertEquals(FileError.NONE, first.getResult().get(10, TimeUnit.SECONDS));
+        assertEquals(FileError.NONE, low.getResult().get(10, TimeUnit.SECONDS));
+        assertEquals(FileError.NONE, high.getResult().get(10, TimeUnit.SECONDS));
+        assertEquals(FileError.CANCELED, canceled.getResult().get(10, TimeUnit.SECONDS));
+        assertEquals(List.of("first", "high", "low"), started);
+        assertTrue(Files.exists(target.resolve("low")));
+        assertFalse(Files.exists(target.resolve("canceled")));
+
+        // The jobs are released after their results are completed:
+        for (int i = 0; i < 100 && queue.getRunningJobs() > 0; ++i)
+            Thread.sleep(10);
+
+        var metrics = queue.getStoreMetrics();
+
+        assertEquals(0, queue.getQueueDepth());
+        assertEquals(1, metrics.size());
+        assertEquals(3, metrics.get(0).getCompletedJobs());
+        assertEquals(3000, metrics.get(0).getBytesCopied());
+        assertEquals(0, metrics.get(0).getRunningJobs());
+    }
+
+    @Test
+    void largeJobsShareAnIdleStore() throws Exception {
+        Path target = Files.createDirectories(tempDir.resolve("target"));
+        var started = Collections.synchronizedList(new ArrayList<String>());
+        var release = new CountDownLatch(1);
+        var queue = new CopyJobQueue(executor);
+
+        queue.setMaxJobsPerStore(2);
+        queue.setLargeFileSize(500);
+
+        var large1 = queue.submit(createCopy("large1", started, release), createSource("large1").toString(), target.toString(), false, 0);
+        var large2 = queue.submit(createCopy("large2", started, release), createSource("large2").toString(), target.toString(), false, 0);
+
+        // No small job waits, so the last job of the store is not kept:
+        assertEquals(2, queue.getRunningJobs());
+        assertEquals(0, queue.getQueueDepth());
+
+        release.countDown();
+
+        assertEquals(FileError.NONE, large1.getResult().get(10, TimeUnit.SECONDS));
+        assertEquals(FileError.NONE, large2.getResult().get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void lastJobOfAStoreIsKeptForAWaitingKind() throws Exception {
+        Path target = Files.createDirectories(tempDir.resolve("target"));
+        var started = Collections.synchronizedList(new ArrayList<String>());
+        var release = new CountDownLatch(1);
+        var queue = new CopyJobQueue(executor);
+
+        queue.setMaxJobsPerStore(1);
+        queue.setLargeFileSize(500);
+
+        var large1 = queue.submit(createCopy("large1", started, release), createSource("large1").toString(), target.toString(), false, 0);
+        var large2 = queue.submit(createCopy("large2", started, release), createSource("large2").toString(), target.toString(), false, 5);
+        queue.setLargeFileSize(5000);
+        var small = queue.submit(createCopy("small", started, release), createSource("small").toString(), target.toString(), false, 0);
+
+        // The second large job has the higher priority, but the small job
+        // waits for the store, too:
+        queue.setMaxJobsPerStore(2);
+
+        assertEquals(2, queue.getRunningJobs());
+        assertEquals(1, queue.getQueueDepth());
+
+        for (int i = 0; i < 1000 && started.size() < 2; ++i)
+            Thread.sleep(10);
+
+        assertFalse(started.contains("large2"));
+        release.countDown();
+
+        assertEquals(FileError.NONE, large1.getResult().get(10, TimeUnit.SECONDS));
+        assertEquals(FileError.NONE, large2.getResult().get(10, TimeUnit.SECONDS));
+        assertEquals(FileError.NONE, small.getResult().get(10, TimeUnit.SECONDS));
+        assertEquals("large2", started.get(2));
+    }
+
+    @Test
+    void directoriesAreScannedByTheExecutor() throws Exception {
+        Path target = Files.createDirectories(tempDir.resolve("target"));
+        Path source = Files.createDirectories(tempDir.resolve("dir"));
+        var scanning = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var queue = new CopyJobQueue(executor);
+
+        Files.write(source.resolve("file"), new byte[1000]);
+
+        queue.setDirectoryStats(new DirectoryStats() {
+            @Override
+            public Summary scan(File root) throws IOException {
+                scanning.countDown();
+
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+
+                return super.scan(root);
+            }
+        });
+
+        var job = queue.submit(new FileCopy(null), source.toString(), target.toString(), false, 0);
+
+        // The job is not started before its kind is known:
+        assertTrue(scanning.await(10, TimeUnit.SECONDS));
+        assertEquals(1, queue.getQueueDepth());
+        assertEquals(0, queue.getRunningJobs());
+
+        release.countDown();
+
+        assertEquals(FileError.NONE, job.getResult().get(10, TimeUnit.SECONDS));
+        assertTrue(Files.exists(target.resolve("dir/file")));
+    }
+}
@@ -0,0 +1,76 @@
+package de.ganzer.core.files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DirectoryStatsTest {
+    @TempDir
+    Path tempDir;
+
+    private Path createTree() throws IOException {
+        Path root = TestTrees.createTree(tempDir);
+
+        // Directories that were modified just now are not cached:
+        setOld(root);
+
+        return root;
+    }
+
+    private static void setOld(Path root) throws IOException {
+        var time = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+
+        try (Stream<Path> dirs = Files.walk(root)) {
+            for (var dir : (Iterable<Path>)dirs.filter(Files::isDirectory)::iterator)
+                Files.setLastModifiedTime(dir, time);
+        }
+    }
+
+    @Test
+    void scanCachesUnchangedDirectories() throws IOException {
+        Path root = createTree();
+        var stats = new DirectoryStats();
+
+        var summary = stats.scan(root.toFile());
+
+        assertEquals(6, summary.getSize());
+        assertEquals(3, summary.getFileCount());
+        assertEquals(4, summary.getDirectoryCount());
+        assertEquals(4, stats.getCachedDirectoryCount());
+
+        // A file that is added changes the modification time of its directory:
+        Files.write(root.resolve("a/b/f4"), new byte[4]);
+        summary = stats.scan(root.toFile());
+
+        assertEquals(10, summary.getSize());
+        assertEquals(4, summary.getFileCount());
+        assertEquals(3, stats.getCachedDirectoryCount());
+    }
+
+    @Test
+    void deleteCountsWithScanner() throws IOException {
+        Path root = createTree();
+        long[] avail = {0};
+
+        FileDelete delete = new FileDelete(info -> {
+            avail[0] = info.getEntriesAvail();
+            return DeleteProgressContinuation.CONTINUE;
+        });
+
+        delete.setDirectoryStats(new DirectoryStats());
+        delete.start(root.toString(), false);
+
+        assertEquals(FileError.NONE, delete.getError());
+        assertEquals(7, avail[0]);
+        assertFalse(Files.exists(root));
+    }
+}
@@ -0,0 +1,123 @@
+package de.ganzer.core.files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DuplicateFinderTest {
+    @TempDir
+    Path tempDir;
+
+    private Path createTree() throws IOException {
+        Path root = tempDir.resolve("root");
+        byte[] large = TestTrees.createData(20_000);
+
+        Files.createDirectories(root.resolve("a"));
+        Files.createDirectories(root.resolve("b"));
+        Files.createDirectories(root.resolve("skip"));
+        Files.write(root.resolve("a/x.bin"), large);
+        Files.write(root.resolve("b/y.bin"), large);
+        Files.write(root.resolve("skip/z.bin"), large);
+
+        // Same size, but different in the middle, at the head or at the tail:
+        large[10_000] ^= 1;
+        Files.write(root.resolve("a/middle.bin"), large);
+        large[10_000] ^= 1;
+        large[0] ^= 1;
+        Files.write(root.resolve("a/head.bin"), large);
+        large[0] ^= 1;
+        large[19_999] ^= 1;
+        Files.write(root.resolve("a/tail.bin"), large);
+
+        Files.write(root.resolve("a/small1"), TestTrees.createData(100));
+        Files.write(root.resolve("b/small2"), TestTrees.createData(100));
+        Files.write(root.resolve("b/unique"), TestTrees.createData(123));
+        Files.write(root.resolve("a/empty1"), new byte[0]);
+        Files.write(root.resolve("b/empty2"), new byte[0]);
+
+        return root;
+    }
+
+    private static List<String> names(DuplicateFinder.DuplicateGroup group) {
+        return group.getFiles().stream().map(File::getName).collect(Collectors.toList());
+    }
+
+    @Test
+    void duplicatesAreGroupedByContent() throws IOException {
+        Path root = createTree();
+        long[] fullHashed = {0};
+
+        var finder = new DuplicateFinder(info -> {
+            if (info.getStatus() == DuplicateProgressStatus.FULL_HASH)
+                fullHashed[0] = info.getFilesHashed();
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        finder.setPartialSize(1024);
+        finder.setPathFilter(PathFilter.excluding("skip"));
+
+        assertTrue(finder.start(root.toString()));
+
+        var duplicates = finder.getDuplicates();
+
+        assertEquals(2, duplicates.size());
+        assertEquals(List.of("x.bin", "y.bin"), names(duplicates.get(0)));
+        assertEquals(20_000, duplicates.get(0).getWastedBytes());
+        assertEquals(List.of("small1", "small2"), names(duplicates.get(1)));
+
+        // The files with a different head or tail are not hashed completely:
+        assertEquals(3, fullHashed[0]);
+    }
+
+    @Test
+    void duplicatesAreReplacedByHardLinks() throws IOException {
+        Path root = createTree();
+        var finder = new DuplicateFinder(null);
+
+        finder.setHardLinking(true);
+
+        assertTrue(finder.start(List.of(root.resolve("a").toString(), root.resolve("b").toString())));
+        assertTrue(Files.isSameFile(root.resolve("a/x.bin"), root.resolve("b/y.bin")));
+        assertTrue(Files.isSameFile(root.resolve("a/small1"), root.resolve("b/small2")));
+        assertArrayEquals(TestTrees.createData(20_000), Files.readAllBytes(root.resolve("b/y.bin")));
+        assertFalse(Files.exists(root.resolve("b/y.bin~")));
+
+        // Linked files are found again but not linked again:
+        assertTrue(finder.start(root.toString()));
+        assertEquals(List.of("x.bin", "y.bin", "z.bin"), names(finder.getDuplicates().get(0)));
+        assertTrue(Files.isSameFile(root.resolve("a/x.bin"), root.resolve("skip/z.bin")));
+    }
+
+    @Test
+    void existingTemporaryFileIsNotOverwritten() throws IOException {
+        Path root = createTree();
+        Path backup = root.resolve("b/y.bin~");
+        var finder = new DuplicateFinder(null);
+
+        Files.write(backup, TestTrees.createData(7));
+        finder.setHardLinking(true);
+        finder.setPathFilter(PathFilter.excluding("skip"));
+
+        assertFalse(finder.start(root.toString()));
+        assertEquals(FileError.CREATE_FILE, finder.getError());
+        assertArrayEquals(TestTrees.createData(7), Files.readAllBytes(backup));
+        assertFalse(Files.isSameFile(root.resolve("a/x.bin"), root.resolve("b/y.bin")));
+    }
+
+    @Test
+    void missingRootIsAnError() {
+        var finder = new DuplicateFinder(null);
+
+        assertFalse(finder.start(tempDir.resolve("missing").toString()));
+        assertEquals(FileError.SOURCE_NOT_EXIST, finder.getError());
+    }
+}
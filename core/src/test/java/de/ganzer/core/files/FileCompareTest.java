@@ -0,0 +1,126 @@
+package de.ganzer.core.files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileCompareTest {
+    @TempDir
+    Path tempDir;
+
+    private static List<String> describe(List<FileDifference> differences) {
+        return differences.stream()
+                .map(d -> d.getType() + " " + d.getRelativePath())
+                .collect(Collectors.toList());
+    }
+
+    @Test
+    void compareTreesReportsDifferences() throws IOException {
+        Path source = tempDir.resolve("source");
+        Path target = tempDir.resolve("target");
+
+        for (Path root : List.of(source, target)) {
+            Files.createDirectories(root.resolve("sub"));
+            Files.write(root.resolve("same.bin"), TestTrees.createData(1000));
+            Files.write(root.resolve("sub/same.bin"), TestTrees.createData(10));
+        }
+
+        Files.write(source.resolve("added.bin"), TestTrees.createData(1));
+        Files.createDirectories(source.resolve("addedDir/x"));
+        Files.write(target.resolve("removed.bin"), TestTrees.createData(1));
+        Files.write(source.resolve("sub/size.bin"), TestTrees.createData(10));
+        Files.write(target.resolve("sub/size.bin"), TestTrees.createData(11));
+        Files.write(source.resolve("sub/content.bin"), TestTrees.createData(10));
+        Files.write(target.resolve("sub/content.bin"), new byte[10]);
+        Files.createDirectories(source.resolve("type"));
+        Files.write(target.resolve("type"), TestTrees.createData(1));
+
+        var statuses = new ArrayList<CompareProgressStatus>();
+        var compare = new FileCompare(info -> {
+            statuses.add(info.getStatus());
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        assertTrue(compare.start(source.toString(), target.toString()));
+        assertEquals(FileError.NONE, compare.getError());
+        assertEquals(List.of(
+                "ADDED added.bin",
+                "ADDED addedDir",
+                "REMOVED removed.bin",
+                "CHANGED sub/content.bin",
+                "CHANGED sub/size.bin",
+                "TYPE_CHANGED type"), describe(compare.getDifferences()));
+        assertEquals(6, statuses.stream().filter(s -> s == CompareProgressStatus.DIFFERENCE).count());
+        assertEquals(CompareProgressStatus.FINISHED, statuses.get(statuses.size() - 1));
+    }
+
+    @Test
+    void largeFilesAreComparedInChunks() throws IOException {
+        Path source = tempDir.resolve("source.bin");
+        Path target = tempDir.resolve("target.bin");
+        byte[] data = TestTrees.createData(100_000);
+
+        Files.write(source, data);
+        Files.write(target, data);
+
+        long[] compared = {0};
+        var compare = new FileCompare(info -> {
+            if (info.getStatus() == CompareProgressStatus.COMPARING_FILE)
+                compared[0] = info.getFileBytesCompared();
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        compare.setParallelThreshold(10_000);
+        compare.setChunkSize(8192);
+        compare.setParallelism(3);
+
+        assertTrue(compare.start(source.toString(), target.toString()));
+        assertTrue(compare.getDifferences().isEmpty());
+        assertEquals(100_000, compared[0]);
+
+        data[99_999] ^= 1;
+        Files.write(target, data);
+
+        assertTrue(compare.start(source.toString(), target.toString()));
+        assertEquals(List.of("CHANGED "), describe(compare.getDifferences()));
+    }
+
+    @Test
+    void attributesAreComparedWithoutContent() throws IOException {
+        Path source = tempDir.resolve("source.bin");
+        Path target = tempDir.resolve("target.bin");
+
+        Files.write(source, TestTrees.createData(10));
+        Files.write(target, new byte[10]);
+        Files.setLastModifiedTime(target, Files.getLastModifiedTime(source));
+
+        var compare = new FileCompare(null);
+        compare.setContentCompared(false);
+
+        assertTrue(compare.start(source.toString(), target.toString()));
+        assertTrue(compare.getDifferences().isEmpty());
+
+        Files.setLastModifiedTime(target, FileTime.fromMillis(0));
+
+        assertTrue(compare.start(source.toString(), target.toString()));
+        assertEquals(1, compare.getDifferences().size());
+    }
+
+    @Test
+    void missingSourceIsAnError() {
+        var compare = new FileCompare(null);
+
+        assertFalse(compare.start(tempDir.resolve("missing").toString(), tempDir.toString()));
+        assertEquals(FileError.SOURCE_NOT_EXIST, compare.getError());
+    }
+}
@@ -0,0 +1,748 @@
+package de.ganzer.core.files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileCopyTest {
+    @TempDir
+    Path tempDir;
+
+    private static byte[] createData(int size) {
+        byte[] data = new byte[size];
+        new Random(size).nextBytes(data);
+
+        return data;
+    }
+
+    private Path createSourceTree() throws IOException {
+        Path source = tempDir.resolve("source");
+
+        Files.createDirectories(source.resolve("sub"));
+        Files.write(source.resolve("a.bin"), createData(100_000));
+        Files.write(source.resolve("sub/b.bin"), createData(12_345));
+        Files.write(source.resolve("sub/empty.bin"), new byte[0]);
+
+        return source;
+    }
+
+    private static void assertSameContent(Path expected, Path actual) throws IOException {
+        assertArrayEquals(Files.readAllBytes(expected), Files.readAllBytes(actual));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CopyMethod.class)
+    void copyTree(CopyMethod method) throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+
+        FileCopy copy = new FileCopy(null);
+        copy.setCopyMethod(method);
+        copy.setTransferChunkSize(4096);
+        copy.start(source.toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertSameContent(source.resolve("a.bin"), target.resolve("source/a.bin"));
+        assertSameContent(source.resolve("sub/b.bin"), target.resolve("source/sub/b.bin"));
+        assertSameContent(source.resolve("sub/empty.bin"), target.resolve("source/sub/empty.bin"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CopyMethod.class)
+    void overwriteFile(CopyMethod method) throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+
+        Files.createDirectories(target);
+        Files.write(target.resolve("a.bin"), createData(7));
+
+        FileCopy copy = new FileCopy(null);
+        copy.setCopyMethod(method);
+        copy.setDefaultFileOverwriteAction(OverwriteAction.ALL);
+        copy.start(source.resolve("a.bin").toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertSameContent(source.resolve("a.bin"), target.resolve("a.bin"));
+        assertFalse(Files.exists(target.resolve("a.bin~")));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CopyMethod.class)
+    void reportProgress(CopyMethod method) throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+        long[] lastTotal = {0};
+
+        FileCopy copy = new FileCopy(info -> {
+            if (info.getStatus() == CopyProgressStatus.FINISHED_FILE)
+                lastTotal[0] = info.getTotalBytesCopied();
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        copy.setCopyMethod(method);
+        copy.setCopyBufferSize(1000);
+        copy.setTransferChunkSize(1000);
+        copy.start(source.toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertEquals(100_000 + 12_345, lastTotal[0]);
+        assertThrows(IllegalArgumentException.class, () -> copy.setTransferChunkSize(0));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CopyMethod.class)
+    void cancelRemovesPartialFile(CopyMethod method) throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+
+        FileCopy copy = new FileCopy(info -> info.getStatus() == CopyProgressStatus.COPYING_FILE
+                ? CopyProgressContinuation.CANCEL
+                : CopyProgressContinuation.CONTINUE);
+
+        copy.setCopyMethod(method);
+        copy.setCopyBufferSize(1000);
+        copy.setTransferChunkSize(1000);
+        copy.start(source.resolve("a.bin").toString(), target.toString(), true);
+
+        assertEquals(FileError.CANCELED, copy.getError());
+        assertFalse(Files.exists(target.resolve("a.bin")));
+    }
+
+    @Test
+    void copyTreeInParallel() throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+
+        for (int i = 0; i < 20; ++i)
+            Files.write(source.resolve("sub/f" + i + ".bin"), createData(1000 + i));
+
+        AtomicInteger concurrentCalls = new AtomicInteger();
+        boolean[] overlapped = {false};
+
+        FileCopy copy = new FileCopy(info -> {
+            if (concurrentCalls.incrementAndGet() > 1)
+                overlapped[0] = true;
+
+            concurrentCalls.decrementAndGet();
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        copy.setParallelism(4);
+        copy.setCopyBufferSize(100);
+        copy.start(source.toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertFalse(overlapped[0]);
+
+        for (int i = 0; i < 20; ++i)
+            assertSameContent(source.resolve("sub/f" + i + ".bin"), target.resolve("source/sub/f" + i + ".bin"));
+
+        assertEquals(Files.getLastModifiedTime(source.resolve("sub")).toMillis(), Files.getLastModifiedTime(target.resolve("source/sub")).toMillis());
+    }
+
+    @Test
+    void canceledParallelCopyDoesNotReportAfterFinished() throws IOException, InterruptedException {
+        Path source = tempDir.resolve("source");
+        Path target = tempDir.resolve("target");
+
+        for (int i = 0; i < 8; ++i) {
+            Files.createDirectories(source.resolve("d" + i));
+
+            for (int j = 0; j < 5; ++j)
+                Files.write(source.resolve("d" + i + "/f" + j + ".bin"), createData(10_000 + j));
+        }
+
+        AtomicBoolean finished = new AtomicBoolean();
+        AtomicBoolean delayed = new AtomicBoolean();
+        AtomicInteger lateReports = new AtomicInteger();
+
+        FileCopy copy = new FileCopy(info -> {
+            if (finished.get())
+                lateReports.incrementAndGet();
+
+            if (info.getStatus() == CopyProgressStatus.FINISHED)
+                finished.set(true);
+
+            return info.getStatus() == CopyProgressStatus.COPYING_FILE && info.getSourcePath().contains("d0")
+                    ? CopyProgressContinuation.CANCEL
+                    : CopyProgressContinuation.CONTINUE;
+        });
+
+        // Keeps a worker busy while the job is canceled by another one:
+        copy.setFilenameFilter((dir, name) -> {
+            if (dir.getName().equals("d1") && !delayed.getAndSet(true)) {
+                try {
+                    Thread.sleep(300);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+
+            return true;
+        });
+
+        copy.setParallelism(4);
+        copy.setCopyBufferSize(100);
+        copy.start(source.toString(), target.toString(), true);
+
+        assertEquals(FileError.CANCELED, copy.getError());
+        assertTrue(finished.get());
+
+        Thread.sleep(500);
+
+        assertEquals(0, lateReports.get());
+    }
+
+    @Test
+    void copySmallFilesConcurrently() throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+        long expectedTotal = 100_000 + 12_345;
+
+        for (int i = 0; i < 50; ++i) {
+            Files.write(source.resolve("sub/s" + i + ".bin"), createData(100 + i));
+            expectedTotal += 100 + i;
+        }
+
+        long[] total = {0};
+
+        FileCopy copy = new FileCopy(info -> {
+            if (info.getStatus() == CopyProgressStatus.FINISHED)
+                total[0] = info.getTotalBytesCopied();
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        copy.setSmallFileThreshold(20_000);
+        copy.setSmallFileConcurrency(8);
+        copy.start(source.toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertEquals(expectedTotal, total[0]);
+        assertSameContent(source.resolve("a.bin"), target.resolve("source/a.bin"));
+        assertSameContent(source.resolve("sub/b.bin"), target.resolve("source/sub/b.bin"));
+
+        for (int i = 0; i < 50; ++i)
+            assertSameContent(source.resolve("sub/s" + i + ".bin"), target.resolve("source/sub/s" + i + ".bin"));
+
+        assertEquals(Files.getLastModifiedTime(source.resolve("sub")).toMillis(), Files.getLastModifiedTime(target.resolve("source/sub")).toMillis());
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = SyncMode.class, names = {"SIZE_AND_TIME", "CONTENT"})
+    void syncSkipsUnchangedFiles(SyncMode mode) throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+
+        FileCopy copy = new FileCopy(null);
+        copy.start(source.toString(), target.toString(), false);
+
+        Files.write(source.resolve("sub/b.bin"), createData(12_346));
+        Files.write(target.resolve("source/orphan.bin"), createData(10));
+
+        long[] skipped = {0, 0};
+
+        copy = new FileCopy(info -> {
+            if (info.getStatus() == CopyProgressStatus.FINISHED) {
+                skipped[0] = info.getFilesSkipped();
+                skipped[1] = info.getTotalBytesSkipped();
+                assertEquals(100.0, info.getTotalPercentage());
+            }
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        copy.setSyncMode(mode);
+        copy.setDeleteOrphans(true);
+        copy.start(source.toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertEquals(2, skipped[0]);
+        assertEquals(100_000, skipped[1]);
+        assertSameContent(source.resolve("sub/b.bin"), target.resolve("source/sub/b.bin"));
+        assertFalse(Files.exists(target.resolve("source/orphan.bin")));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void sparseCopySkipsZeroBlocks(boolean trailingHole) throws IOException {
+        Path source = tempDir.resolve("source.bin");
+        Path target = tempDir.resolve("target");
+        byte[] data = new byte[1_000_000];
+        byte[] head = createData(5000);
+
+        System.arraycopy(head, 0, data, 0, head.length);
+
+        if (!trailingHole)
+            System.arraycopy(head, 0, data, data.length - head.length, head.length);
+
+        Files.write(source, data);
+
+        long[] written = {0};
+
+        FileCopy copy = new FileCopy(info -> {
+            if (info.getStatus() == CopyProgressStatus.FINISHED)
+                written[0] = info.getTotalBytesWritten();
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        copy.setCopyMethod(CopyMethod.CHANNEL);
+        copy.setCopyBufferSize(64 * 1024);
+        copy.setSparse(true);
+        copy.start(source.toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertSameContent(source, target.resolve("source.bin"));
+        assertTrue(written[0] <= 5 * 4096, "written: " + written[0]);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = VerifyMode.class, names = {"TRUST_WRITE", "REREAD_TARGET"})
+    void verifyReportsFileDigests(VerifyMode mode) throws Exception {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+        var digests = new HashMap<String, byte[]>();
+
+        FileCopy copy = new FileCopy(info -> {
+            if (info.getStatus() == CopyProgressStatus.FINISHED_FILE)
+                digests.put(info.getSourcePath(), info.getFileDigest());
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        copy.setCopyMethod(CopyMethod.CHANNEL);
+        copy.setCopyBufferSize(1000);
+        copy.setVerifyMode(mode);
+        copy.setChecksumAlgorithm("SHA-256");
+        copy.start(source.toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertEquals(3, digests.size());
+        assertSameContent(source.resolve("a.bin"), target.resolve("source/a.bin"));
+
+        for (var file : Arrays.asList("a.bin", "sub/b.bin", "sub/empty.bin")) {
+            Path path = source.resolve(file);
+            byte[] expected = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(path));
+
+            assertArrayEquals(expected, digests.get(path.toString()));
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> copy.setChecksumAlgorithm("NO-SUCH-ALGORITHM"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = DurabilityPolicy.class, names = {"PER_FILE", "BATCHED"})
+    void durabilityPolicyRenamesForcedFiles(DurabilityPolicy policy) throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+
+        FileCopy copy = new FileCopy(null);
+        copy.setDurabilityPolicy(policy);
+        copy.setSyncBatchSize(50_000);
+        copy.start(source.toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertSameContent(source.resolve("a.bin"), target.resolve("source/a.bin"));
+        assertSameContent(source.resolve("sub/b.bin"), target.resolve("source/sub/b.bin"));
+        assertFalse(Files.exists(target.resolve("source/a.bin~")));
+        assertFalse(Files.exists(target.resolve("source/sub/b.bin~")));
+
+        // The files are renamed before the time of their directory is set:
+        assertEquals(Files.getLastModifiedTime(source.resolve("sub")).toMillis(), Files.getLastModifiedTime(target.resolve("source/sub")).toMillis());
+    }
+
+    @Test
+    void deltaCopyWritesChangedBlocksOnly() throws IOException {
+        Path source = tempDir.resolve("source.bin");
+        Path target = tempDir.resolve("target");
+        byte[] data = createData(100_000);
+
+        Files.createDirectories(target);
+        Files.write(target.resolve("source.bin"), data);
+
+        data[50_000] ^= 1;
+        Files.write(source, Arrays.copyOf(data, 90_000));
+
+        long[] written = {0};
+
+        FileCopy copy = new FileCopy(info -> {
+            if (info.getStatus() == CopyProgressStatus.FINISHED)
+                written[0] = info.getTotalBytesWritten();
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        copy.setDefaultFileOverwriteAction(OverwriteAction.ALL);
+        copy.setDeltaCopyThreshold(1);
+        copy.setDeltaBlockSize(10_000);
+        copy.start(source.toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertSameContent(source, target.resolve("source.bin"));
+        assertEquals(10_000, written[0]);
+        assertThrows(IllegalArgumentException.class, () -> copy.setDeltaBlockSize((1 << 30) + 1));
+        assertThrows(IllegalArgumentException.class, () -> copy.setDeltaCopyThreshold(-1));
+    }
+
+    @Test
+    void adaptiveBufferSizeReusesPooledBuffers() throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+        BufferPool pool = new BufferPool(1024 * 1024);
+
+        FileCopy copy = new FileCopy(null);
+        copy.setAdaptiveBufferSize(true);
+        copy.setBufferPool(pool);
+        copy.start(source.toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertSameContent(source.resolve("a.bin"), target.resolve("source/a.bin"));
+        assertSameContent(source.resolve("sub/b.bin"), target.resolve("source/sub/b.bin"));
+        assertTrue(pool.getRetainedBytes() > 0);
+        assertTrue(pool.getRetainedBytes() <= pool.getMaxRetainedBytes());
+        assertThrows(IllegalArgumentException.class, () -> copy.setCopyBufferSize((1 << 30) + 1));
+    }
+
+    @ParameterizedTest
+    @EnumSource(CopyMethod.class)
+    void resumeContinuesInterruptedJob(CopyMethod method) throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+        var sources = Arrays.asList(source.resolve("sub/b.bin").toString(), source.resolve("a.bin").toString());
+        var journal = new CopyJournal(tempDir.resolve("journal").toFile());
+
+        journal.setFlushInterval(Duration.ZERO);
+
+        FileCopy copy = new FileCopy(info -> info.getStatus() == CopyProgressStatus.COPYING_FILE && info.getFileBytesCopied() >= 50_000
+                ? CopyProgressContinuation.CANCEL
+                : CopyProgressContinuation.CONTINUE);
+
+        copy.setCopyMethod(method);
+        copy.setCopyBufferSize(1000);
+        copy.setTransferChunkSize(1000);
+        copy.setJournal(journal);
+        copy.start(sources, target.toString(), false);
+
+        assertEquals(FileError.CANCELED, copy.getError());
+        assertTrue(journal.exists());
+        assertFalse(Files.exists(target.resolve("a.bin")));
+        assertTrue(Files.exists(target.resolve("a.bin~")));
+
+        long[] skipped = {0, 0};
+
+        copy = new FileCopy(info -> {
+            if (info.getStatus() == CopyProgressStatus.FINISHED) {
+                skipped[0] = info.getFilesSkipped();
+                skipped[1] = info.getTotalBytesSkipped();
+            }
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        copy.setCopyMethod(method);
+
+        assertTrue(copy.resume(journal));
+        assertEquals(FileError.NONE, copy.getError());
+        assertFalse(journal.exists());
+        assertSameContent(source.resolve("a.bin"), target.resolve("a.bin"));
+        assertSameContent(source.resolve("sub/b.bin"), target.resolve("b.bin"));
+        assertFalse(Files.exists(target.resolve("a.bin~")));
+        assertEquals(1, skipped[0]);
+        assertEquals(12_345 + 50_000, skipped[1]);
+    }
+
+    @ParameterizedTest
+    @EnumSource(CopyMethod.class)
+    void skipRollsBackTotalsOfResumedFile(CopyMethod method) throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+        var sources = Arrays.asList(source.resolve("sub/b.bin").toString(), source.resolve("a.bin").toString());
+        var journal = new CopyJournal(tempDir.resolve("journal").toFile());
+
+        FileCopy copy = new FileCopy(info -> info.getStatus() == CopyProgressStatus.COPYING_FILE && info.getFileBytesCopied() >= 50_000
+                ? CopyProgressContinuation.CANCEL
+                : CopyProgressContinuation.CONTINUE);
+
+        copy.setCopyBufferSize(1000);
+        copy.setTransferChunkSize(1000);
+        copy.setJournal(journal);
+        copy.start(sources, target.toString(), false);
+
+        assertEquals(FileError.CANCELED, copy.getError());
+
+        long[] totals = {0, 0, 0};
+
+        copy = new FileCopy(info -> {
+            if (info.getStatus() == CopyProgressStatus.FINISHED) {
+                totals[0] = info.getTotalBytesCopied();
+                totals[1] = info.getTotalBytesWritten();
+                totals[2] = info.getTotalBytesSkipped();
+            }
+
+            return info.getStatus() == CopyProgressStatus.COPYING_FILE
+                    ? CopyProgressContinuation.SKIP
+                    : CopyProgressContinuation.CONTINUE;
+        });
+
+        copy.setCopyMethod(method);
+        copy.setCopyBufferSize(1000);
+        copy.setTransferChunkSize(1000);
+
+        assertTrue(copy.resume(journal));
+        assertFalse(Files.exists(target.resolve("a.bin")));
+        assertEquals(12_345, totals[0]);
+        assertEquals(0, totals[1]);
+        assertEquals(12_345, totals[2]);
+    }
+
+    @Test
+    void resumeReplacesTemporaryFileWithoutCheckpoint() throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+        var sources = Arrays.asList(source.resolve("sub/b.bin").toString(), source.resolve("a.bin").toString());
+        var journal = new CopyJournal(tempDir.resolve("journal").toFile());
+
+        FileCopy copy = new FileCopy(info -> info.getStatus() == CopyProgressStatus.COPYING_FILE && info.getFileBytesCopied() >= 50_000
+                ? CopyProgressContinuation.CANCEL
+                : CopyProgressContinuation.CONTINUE);
+
+        copy.setCopyBufferSize(1000);
+        copy.setJournal(journal);
+        copy.start(sources, target.toString(), false);
+
+        assertEquals(FileError.CANCELED, copy.getError());
+        assertTrue(Files.exists(target.resolve("a.bin~")));
+
+        // The JVM died before the checkpoint of a.bin was written:
+        Path journalPath = journal.getFile().toPath();
+        var records = new ArrayList<>(Files.readAllLines(journalPath));
+
+        records.removeIf(record -> record.startsWith("P\t"));
+        Files.write(journalPath, records);
+
+        copy = new FileCopy(null);
+
+        assertTrue(copy.resume(journal));
+        assertEquals(FileError.NONE, copy.getError());
+        assertSameContent(source.resolve("a.bin"), target.resolve("a.bin"));
+        assertSameContent(source.resolve("sub/b.bin"), target.resolve("b.bin"));
+        assertFalse(Files.exists(target.resolve("a.bin~")));
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void startAsyncPausesAndResumes(boolean cancel) throws Exception {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+        var handle = new CompletableFuture<FileJob<FileCopy.ProgressInfo>>();
+        var paused = new CountDownLatch(1);
+        var copied = new AtomicLong();
+
+        FileCopy copy = new FileCopy(info -> {
+            copied.set(info.getTotalBytesCopied());
+
+            if (info.getStatus() == CopyProgressStatus.COPYING_FILE && paused.getCount() > 0) {
+                handle.join().pause();
+                paused.countDown();
+            }
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        copy.setCopyBufferSize(1000);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        var statuses = Collections.synchronizedList(new ArrayList<CopyProgressStatus>());
+        var closed = new CountDownLatch(1);
+
+        try {
+            var job = copy.startAsync(source.toString(), target.toString(), false, executor);
+            handle.complete(job);
+
+            job.getProgressPublisher().subscribe(new Flow.Subscriber<>() {
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(FileCopy.ProgressInfo item) {
+                    statuses.add(item.getStatus());
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    closed.countDown();
+                }
+
+                @Override
+                public void onComplete() {
+                    closed.countDown();
+                }
+            });
+
+            assertTrue(paused.await(10, TimeUnit.SECONDS));
+
+            long copiedWhenPaused = copied.get();
+            Thread.sleep(100);
+
+            assertFalse(job.isDone());
+            assertEquals(copiedWhenPaused, copied.get());
+
+            if (cancel)
+                job.cancel();
+            else
+                job.resume();
+
+            assertEquals(cancel ? FileError.CANCELED : FileError.NONE, job.getResult().get(10, TimeUnit.SECONDS));
+            assertTrue(closed.await(10, TimeUnit.SECONDS));
+            assertEquals(CopyProgressStatus.FINISHED, statuses.get(statuses.size() - 1));
+
+            if (!cancel)
+                assertSameContent(source.resolve("a.bin"), target.resolve("source/a.bin"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void statisticsSummarizeJob() throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+        CopyStatistics[] reported = {null};
+
+        FileCopy copy = new FileCopy(info -> {
+            if (info.getStatus() == CopyProgressStatus.FINISHED)
+                reported[0] = info.getStatistics();
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        assertNull(copy.getStatistics());
+
+        copy.start(source.toString(), target.toString(), false);
+
+        CopyStatistics statistics = copy.getStatistics();
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertSame(statistics, reported[0]);
+        assertEquals(3, statistics.getFilesCopied());
+        assertEquals(100_000 + 12_345, statistics.getBytesCopied());
+        assertEquals(3, Arrays.stream(statistics.getLatencyHistogram()).sum());
+        assertEquals(Duration.ZERO, statistics.getRemainingTime());
+        assertTrue(statistics.getBytesPerSecond() > 0);
+        assertNotNull(statistics.getLatencyPercentile(99));
+    }
+
+    @Test
+    void rateLimiterThrottlesCopy() throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+
+        FileCopy copy = new FileCopy(null);
+        copy.setCopyBufferSize(10_000);
+        copy.setRateLimiter(new RateLimiter(400_000, 0));
+
+        long start = System.nanoTime();
+        copy.start(source.toString(), target.toString(), true);
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertSameContent(source.resolve("a.bin"), target.resolve("source/a.bin"));
+        assertTrue(elapsedMillis >= 200, "elapsed: " + elapsedMillis);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void progressPolicyCoalescesReports(boolean asynchronous) throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+        var statuses = Collections.synchronizedList(new ArrayList<CopyProgressStatus>());
+
+        FileCopy copy = new FileCopy(info -> {
+            statuses.add(info.getStatus());
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        copy.setCopyBufferSize(100);
+        copy.setProgressPolicy(new ProgressPolicy(Duration.ZERO, 50_000, asynchronous));
+        copy.start(source.toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertEquals(CopyProgressStatus.FINISHED, statuses.get(statuses.size() - 1));
+        assertEquals(3, statuses.stream().filter(s -> s == CopyProgressStatus.START_FILE).count());
+        assertEquals(3, statuses.stream().filter(s -> s == CopyProgressStatus.FINISHED_FILE).count());
+        assertTrue(statuses.stream().filter(s -> s == CopyProgressStatus.COPYING_FILE).count() <= 3);
+    }
+
+    @Test
+    void asynchronousProgressRethrowsListenerException() throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+        var failure = new IllegalStateException();
+
+        FileCopy copy = new FileCopy(info -> {
+            if (info.getStatus() == CopyProgressStatus.START_FILE)
+                throw failure;
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        copy.setProgressPolicy(new ProgressPolicy(Duration.ZERO, 0, true));
+
+        assertSame(failure, assertThrows(IllegalStateException.class, () -> copy.start(source.toString(), target.toString(), false)));
+    }
+
+    @Test
+    void rangeCopySplitsLargeFiles() throws IOException {
+        Path source = createSourceTree();
+        Path target = tempDir.resolve("target");
+        long[] copied = {0};
+
+        FileCopy copy = new FileCopy(info -> {
+            if (info.getStatus() == CopyProgressStatus.COPYING_FILE && info.getSourcePath().endsWith("a.bin"))
+                copied[0] = info.getFileBytesCopied();
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        copy.setRangeCopyThreshold(50_000);
+        copy.setRangeSize(7_000);
+        copy.setRangeConcurrency(3);
+        copy.setCopyBufferSize(3_000);
+        copy.start(source.toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertEquals(100_000, copied[0]);
+        assertSameContent(source.resolve("a.bin"), target.resolve("source/a.bin"));
+        assertSameContent(source.resolve("sub/b.bin"), target.resolve("source/sub/b.bin"));
+        assertFalse(Files.exists(target.resolve("source/a.bin~")));
+    }
+}
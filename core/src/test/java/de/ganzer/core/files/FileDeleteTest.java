@@ -0,0 +1,176 @@
+package de.ganzer.core.files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileDeleteTest {
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void deleteTree(boolean suppressInit) throws IOException {
+        Path root = TestTrees.createTree(tempDir);
+        long[] counts = {0, 0};
+
+        FileDelete delete = new FileDelete(info -> {
+            if (info.getStatus() == DeleteProgressStatus.FINISHED) {
+                counts[0] = info.getEntriesAvail();
+                counts[1] = info.getEntriesDeleted();
+            }
+
+            return DeleteProgressContinuation.CONTINUE;
+        });
+
+        delete.start(root.toString(), suppressInit);
+
+        assertEquals(FileError.NONE, delete.getError());
+        assertFalse(Files.exists(root));
+        assertEquals(suppressInit ? 0 : 7, counts[0]);
+        assertEquals(7, counts[1]);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void deleteFiltered(boolean suppressInit) throws IOException {
+        Path root = TestTrees.createTree(tempDir);
+
+        FileDelete delete = new FileDelete(null, (error, description, file) -> DeleteErrorAction.IGNORE);
+        delete.setFilenameFilter((dir, name) -> !name.equals("b"));
+        delete.start(root.toString(), suppressInit);
+
+        assertTrue(Files.exists(root.resolve("a/b/f3")));
+        assertFalse(Files.exists(root.resolve("a/f2")));
+        assertFalse(Files.exists(root.resolve("c")));
+    }
+
+    @Test
+    void throttledProgressDeliversStatusChanges() throws IOException {
+        Path root = TestTrees.createTree(tempDir);
+        var statuses = EnumSet.noneOf(DeleteProgressStatus.class);
+
+        FileDelete delete = new FileDelete(info -> {
+            statuses.add(info.getStatus());
+            return DeleteProgressContinuation.CONTINUE;
+        });
+
+        delete.setProgressPolicy(new ProgressPolicy(Duration.ZERO, 1000, false));
+        delete.start(root.toString(), false);
+
+        assertEquals(FileError.NONE, delete.getError());
+        assertEquals(EnumSet.allOf(DeleteProgressStatus.class), statuses);
+    }
+
+    @Test
+    void deleteTreeInParallel() throws IOException {
+        Path root = tempDir.resolve("root");
+
+        for (int i = 0; i < 20; ++i) {
+            Path dir = root.resolve("d" + i + "/sub");
+            Files.createDirectories(dir);
+
+            for (int j = 0; j < 10; ++j)
+                Files.write(dir.resolve("f" + j), new byte[10]);
+        }
+
+        long[] deleted = {0};
+
+        FileDelete delete = new FileDelete(info -> {
+            // The count never decreases although the workers report it:
+            assertTrue(info.getEntriesDeleted() >= deleted[0]);
+            deleted[0] = info.getEntriesDeleted();
+
+            return DeleteProgressContinuation.CONTINUE;
+        });
+
+        delete.setParallelism(4);
+        delete.start(root.toString(), true);
+
+        assertEquals(FileError.NONE, delete.getError());
+        assertFalse(Files.exists(root));
+        assertEquals(1 + 20 * 12, deleted[0]);
+    }
+
+    @Test
+    void canceledParallelDeleteWaitsForWorkers() throws IOException {
+        Path root = tempDir.resolve("root");
+
+        for (int i = 0; i < 8; ++i) {
+            Files.createDirectories(root.resolve("d" + i));
+
+            for (int j = 0; j < 5; ++j)
+                Files.write(root.resolve("d" + i + "/f" + j), new byte[10]);
+        }
+
+        AtomicBoolean delayed = new AtomicBoolean();
+        AtomicBoolean delayEnded = new AtomicBoolean();
+
+        FileDelete delete = new FileDelete(info -> info.getStatus() == DeleteProgressStatus.DELETE_FILE && info.getPath().contains("d0")
+                ? DeleteProgressContinuation.CANCEL
+                : DeleteProgressContinuation.CONTINUE);
+
+        // Keeps a worker busy while the job is canceled by another one:
+        delete.setFilenameFilter((dir, name) -> {
+            if (dir.getName().equals("d1") && !delayed.getAndSet(true)) {
+                // The pool interrupts its workers when it is shut down:
+                long end = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(300);
+
+                while (System.nanoTime() < end)
+                    Thread.onSpinWait();
+
+                delayEnded.set(true);
+            }
+
+            return true;
+        });
+
+        delete.setParallelism(4);
+        delete.start(root.toString(), true);
+
+        assertEquals(FileError.CANCELED, delete.getError());
+        assertTrue(delayEnded.get());
+        assertTrue(Files.exists(root.resolve("d1")));
+    }
+
+    @Test
+    void deleteIntoTrash() throws IOException, InterruptedException {
+        Path root = TestTrees.createTree(tempDir);
+        Path trash = tempDir.resolve(".trash");
+
+        // A tombstone that is left by a previous process:
+        Files.createDirectories(trash.resolve("leftover/sub"));
+        Files.write(trash.resolve("leftover/sub/f"), new byte[10]);
+
+        long[] deleted = {0};
+
+        FileDelete delete = new FileDelete(info -> {
+            deleted[0] = info.getEntriesDeleted();
+            return DeleteProgressContinuation.CONTINUE;
+        });
+
+        delete.setTrashDirectory(trash.toFile());
+        delete.start(root.toString(), false);
+
+        assertEquals(FileError.NONE, delete.getError());
+        assertFalse(Files.exists(root));
+        assertEquals(1, deleted[0]);
+
+        assertTrue(TrashReclaimer.of(trash.toFile()).awaitIdle(10, TimeUnit.SECONDS));
+
+        try (var entries = Files.list(trash)) {
+            assertEquals(0, entries.count());
+        }
+    }
+}
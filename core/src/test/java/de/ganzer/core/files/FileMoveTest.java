@@ -0,0 +1,86 @@
+package de.ganzer.core.files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FileMoveTest {
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void moveTree(boolean renameDisabled) throws IOException {
+        Path root = TestTrees.createTree(tempDir);
+        Path target = tempDir.resolve("target");
+        List<MoveProgressStatus> states = new ArrayList<>();
+
+        FileMove move = new FileMove(info -> {
+            if (states.isEmpty() || states.get(states.size() - 1) != info.getStatus())
+                states.add(info.getStatus());
+
+            return CopyProgressContinuation.CONTINUE;
+        });
+
+        move.setRenameDisabled(renameDisabled);
+
+        assertTrue(move.start(root.toString(), target.toString()));
+        assertEquals(FileError.NONE, move.getError());
+        assertFalse(Files.exists(root));
+        TestTrees.assertTree(target.resolve("root"));
+
+        if (renameDisabled)
+            assertEquals(List.of(MoveProgressStatus.START_ENTRY, MoveProgressStatus.COPYING, MoveProgressStatus.DELETE_SOURCE,
+                    MoveProgressStatus.FINISHED_ENTRY, MoveProgressStatus.FINISHED), states);
+        else
+            assertEquals(List.of(MoveProgressStatus.START_ENTRY, MoveProgressStatus.FINISHED_ENTRY, MoveProgressStatus.FINISHED), states);
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {false, true})
+    void mergeIntoExistingDir(boolean overwrite) throws IOException {
+        Path root = TestTrees.createTree(tempDir);
+        Path target = tempDir.resolve("target");
+
+        Files.createDirectories(target.resolve("root/a"));
+        Files.write(target.resolve("root/a/f2"), new byte[]{9});
+        Files.write(target.resolve("root/f4"), new byte[]{4});
+
+        FileMove move = new FileMove(null, null, (source, file) ->
+                overwrite || file.isDirectory() ? OverwriteAction.ONE : OverwriteAction.NOT);
+
+        assertTrue(move.start(root.toString(), target.toString()));
+        assertArrayEquals(new byte[]{3, 3, 3}, Files.readAllBytes(target.resolve("root/a/b/f3")));
+        assertArrayEquals(new byte[]{4}, Files.readAllBytes(target.resolve("root/f4")));
+
+        if (overwrite) {
+            TestTrees.assertTree(target.resolve("root"));
+            assertFalse(Files.exists(root));
+        } else {
+            // The skipped file and its parents are kept:
+            assertArrayEquals(new byte[]{9}, Files.readAllBytes(target.resolve("root/a/f2")));
+            assertTrue(Files.exists(root.resolve("a/f2")));
+            assertFalse(Files.exists(root.resolve("a/b")));
+            assertFalse(Files.exists(root.resolve("f1")));
+        }
+    }
+
+    @Test
+    void moveIntoItselfFails() throws IOException {
+        Path root = TestTrees.createTree(tempDir);
+        FileMove move = new FileMove(null);
+
+        assertFalse(move.start(root.toString(), root.resolve("a").toString()));
+        assertEquals(FileError.CREATE_DIR, move.getError());
+        TestTrees.assertTree(root);
+    }
+}
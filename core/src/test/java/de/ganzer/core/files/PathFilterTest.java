@@ -0,0 +1,93 @@
+package de.ganzer.core.files;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PathFilterTest {
+    @TempDir
+    Path tempDir;
+
+    @ParameterizedTest
+    @CsvSource({
+            "node_modules, node_modules, true",
+            "node_modules, a/b/node_modules, true",
+            "node_modules, a/node_modules/x/y.js, true",
+            "node_modules, a/node_modules2, false",
+            "node_modules, xnode_modules, false",
+            "node_modules, a/barnode_modules, false",
+            "node_modules, a/barnode_modules/x, false",
+            "*.tmp, a/b.tmp, true",
+            "*.tmp, a/b.tmp/c, true",
+            "*.tmp, a/b.tmpx, false",
+            "/build, build/out, true",
+            "/build, a/build, false",
+            "src/*/gen, src/main/gen/A.java, true",
+            "src/*/gen, src/main/x/gen, false",
+            "src/**/gen, src/main/x/gen, true",
+            "src/**/gen, src/gen, true",
+            "src/**/gen, src/xgen, false",
+            "src/**/gen, src/main/xgen, false",
+            "a/**/b, a/xb, false",
+            "a/**/b, a/x/b, true",
+            "*.tmp, a.x/b.tmpx, false",
+            "f?[0-9][!a], f12b, true",
+            "f?[0-9][!a], f12a, false",
+            "\\*, *, true",
+            "\\*, a, false",
+    })
+    void excludesMatch(String pattern, String path, boolean expected) {
+        assertEquals(expected, PathFilter.excluding(pattern).isExcluded(path));
+    }
+
+    @Test
+    void includesAcceptDirectoriesThatCanContainMatches() {
+        var filter = new PathFilter(List.of("src/main/**/*.java"), List.of("generated"));
+
+        assertTrue(filter.accept("src", true));
+        assertTrue(filter.accept("src/main/a", true));
+        assertTrue(filter.accept("src/main/a/B.java", false));
+        assertFalse(filter.accept("src/main/a/B.txt", false));
+        assertFalse(filter.accept("src/test", true));
+        assertFalse(filter.accept("docs", true));
+        assertFalse(filter.accept("src/main/generated", true));
+        assertFalse(filter.accept("src/mainx", true));
+        assertTrue(filter.accept("src/main/ungenerated/B.java", false));
+    }
+
+    @Test
+    void invalidPatternsAreRejected() {
+        assertThrows(IllegalArgumentException.class, () -> PathFilter.excluding(""));
+        assertThrows(IllegalArgumentException.class, () -> PathFilter.excluding("a//b"));
+        assertThrows(IllegalArgumentException.class, () -> PathFilter.excluding("[ab"));
+    }
+
+    @Test
+    void copyPrunesExcludedTrees() throws IOException {
+        Path source = tempDir.resolve("source");
+        Path target = tempDir.resolve("target");
+
+        Files.createDirectories(source.resolve("node_modules/lib"));
+        Files.createDirectories(source.resolve("src"));
+        Files.write(source.resolve("node_modules/lib/x.js"), new byte[10]);
+        Files.write(source.resolve("src/a.js"), new byte[10]);
+        Files.write(source.resolve("src/a.tmp"), new byte[10]);
+
+        FileCopy copy = new FileCopy(null);
+        copy.setPathFilter(PathFilter.excluding("node_modules", "*.tmp"));
+        copy.start(source.toString(), target.toString(), false);
+
+        assertEquals(FileError.NONE, copy.getError());
+        assertTrue(Files.exists(target.resolve("source/src/a.js")));
+        assertFalse(Files.exists(target.resolve("source/src/a.tmp")));
+        assertFalse(Files.exists(target.resolve("source/node_modules")));
+    }
+}
@@ -0,0 +1,47 @@
+package de.ganzer.core.files;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Creates and checks the small tree that is used by the tests of the
+ * engines: {@code root/a/b}, {@code root/c}, {@code root/f1},
+ * {@code root/a/f2} and {@code root/a/b/f3}. The file {@code fN} contains N
+ * bytes with the value N, so that the tree has 4 directories, 3 files and
+ * 6 bytes. Larger files are filled by {@link #createData(int)}.
+ */
+final class TestTrees {
+    private TestTrees() {
+    }
+
+    static byte[] createData(int size) {
+        var data = new byte[size];
+
+        for (int i = 0; i < size; ++i)
+            data[i] = (byte)(i * 31);
+
+        return data;
+    }
+
+    static Path createTree(Path dir) throws IOException {
+        Path root = dir.resolve("root");
+
+        Files.createDirectories(root.resolve("a/b"));
+        Files.createDirectories(root.resolve("c"));
+        Files.write(root.resolve("f1"), new byte[]{1});
+        Files.write(root.resolve("a/f2"), new byte[]{2, 2});
+        Files.write(root.resolve("a/b/f3"), new byte[]{3, 3, 3});
+
+        return root;
+    }
+
+    static void assertTree(Path root) throws IOException {
+        assertArrayEquals(new byte[]{1}, Files.readAllBytes(root.resolve("f1")));
+        assertArrayEquals(new byte[]{2, 2}, Files.readAllBytes(root.resolve("a/f2")));
+        assertArrayEquals(new byte[]{3, 3, 3}, Files.readAllBytes(root.resolve("a/b/f3")));
+        assertTrue(Files.isDirectory(root.resolve("c")));
+    }
+}